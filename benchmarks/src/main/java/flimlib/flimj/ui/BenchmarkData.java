@@ -0,0 +1,107 @@
+/*-
+ * #%L
+ * Fluorescence lifetime analysis in ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2025 Board of Regents of the University of Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package flimlib.flimj.ui;
+
+import net.imagej.ops.OpService;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.scijava.Context;
+import org.scijava.log.LogService;
+
+import flimlib.flimj.FitParams;
+import flimlib.flimj.ui.FitProcessor.FitType;
+
+import javafx.application.Platform;
+
+/**
+ * Generates the synthetic datasets the benchmarks run on, so that they need neither files nor a
+ * display. The data is deterministic for a given seed.
+ */
+public final class BenchmarkData {
+
+	/** The default random seed */
+	public static final long SEED = 0x5eedL;
+
+	/** The time span of a transient in ns */
+	private static final float SPAN = 12.5f;
+
+	/** The short and long lifetimes in ns */
+	private static final float TAU_SHORT = 0.5f, TAU_LONG = 2.5f;
+
+	/** The peak photon count of the brightest pixel */
+	private static final float PEAK = 500;
+
+	private BenchmarkData() {}
+
+	/**
+	 * Starts the JavaFX runtime if not already running. For headless runs, the JVM is started with
+	 * the Monocle headless platform (see {@link PreviewImageDisplayBenchmark}).
+	 */
+	public static synchronized void startFX() {
+		try {
+			Platform.startup(() -> {});
+		} catch (IllegalStateException e) {
+			// already started
+		}
+	}
+
+	/**
+	 * @return a context with the services {@link FitProcessor} needs
+	 */
+	public static Context makeContext() {
+		return new Context(OpService.class, LogService.class, FitSchedulerService.class);
+	}
+
+	/**
+	 * Generates a bi-exponential dataset with Poisson noise. The lifetimes vary along x and the
+	 * brightness along y, so that intensity thresholds cut through the image.
+	 *
+	 * @param width  the width
+	 * @param height the height
+	 * @param nTime  the number of time bins
+	 * @param seed   the random seed
+	 * @return the params with <code>transMap</code> (lifetime axis last) and <code>xInc</code> set
+	 */
+	public static FitParams<FloatType> makeParams(final int width, final int height,
+			final int nTime, final long seed) {
+		final SyntheticFLIMGenerator generator = SyntheticFLIMGenerator.builder()
+				.size(width, height).timeBins(nTime, SPAN / nTime).onset(SPAN / 10)
+				.taus(TAU_SHORT, TAU_LONG).photons(PEAK / height, PEAK).seed(seed).build();
+		return generator.makeParams(generator.generate());
+	}
+
+	/**
+	 * Creates a fit processor of an algorithm.
+	 *
+	 * @param ctx     the context
+	 * @param params  the params from {@link #makeParams}
+	 * @param fitType the algorithm
+	 * @return the processor
+	 */
+	public static FitProcessor makeFitProcessor(final Context ctx,
+			final FitParams<FloatType> params, final FitType fitType) {
+		final FitProcessor fp = new FitProcessor(ctx, params);
+		// Bayes only supports one component
+		fp.setAlgo(fitType, fitType == FitType.Bayes ? 1 : 2);
+		return fp;
+	}
+}
@@ -0,0 +1,178 @@
+/*-
+ * #%L
+ * Fluorescence lifetime analysis in ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2025 Board of Regents of the University of Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package flimlib.flimj.ui;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.scijava.Context;
+
+import flimlib.flimj.ui.FitProcessor.FitType;
+
+/**
+ * Benchmarks of the per-pixel and per-dataset work of {@link FitProcessor}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+// NB: fits must not be served from the result cache
+@Fork(value = 1, jvmArgsAppend = "-Dflimj.cache.size=0")
+public class FitProcessorBenchmark {
+
+	/** A dataset and a processor of it */
+	@State(Scope.Benchmark)
+	public static class Dataset {
+
+		@Param({"64", "256"})
+		public int size;
+
+		@Param({"256"})
+		public int nTime;
+
+		Context ctx;
+
+		FitProcessor fp;
+
+		/** The buffer to fill */
+		float[] trans;
+
+		/** The flat index of the next pixel to read */
+		int next;
+
+		@Setup(Level.Trial)
+		public void setup() {
+			ctx = BenchmarkData.makeContext();
+			fp = BenchmarkData.makeFitProcessor(ctx,
+					BenchmarkData.makeParams(size, size, nTime, BenchmarkData.SEED), FitType.LMA);
+			trans = new float[nTime];
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			ctx.dispose();
+		}
+
+		/**
+		 * @return the flat index of a pixel, spread over the image from call to call
+		 */
+		int nextPixel() {
+			next = (next + 7919) % (size * size);
+			return next;
+		}
+	}
+
+	/** A bin radius for reading transients */
+	@State(Scope.Benchmark)
+	public static class Bin {
+
+		@Param({"0", "1", "3"})
+		public int binRadius;
+	}
+
+	/** A bin radius to switch to, from none before each call */
+	@State(Scope.Benchmark)
+	public static class Binning {
+
+		/** -1 is binning over the whole image */
+		@Param({"1", "3", "-1"})
+		public int binRadius;
+
+		@Setup(Level.Invocation)
+		public void reset(final Dataset dataset) {
+			dataset.fp.setBinning(0);
+		}
+	}
+
+	/** A dataset to fit in whole */
+	@State(Scope.Benchmark)
+	public static class FullFit {
+
+		@Param({"32", "64"})
+		public int size;
+
+		@Param({"256"})
+		public int nTime;
+
+		@Param({"LMA", "Global", "Bayes"})
+		public FitType fitType;
+
+		Context ctx;
+
+		FitProcessor fp;
+
+		@Setup(Level.Trial)
+		public void setup() {
+			ctx = BenchmarkData.makeContext();
+			fp = BenchmarkData.makeFitProcessor(ctx,
+					BenchmarkData.makeParams(size, size, nTime, BenchmarkData.SEED), fitType);
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			ctx.dispose();
+		}
+	}
+
+	@Benchmark
+	public float[] fillTrans(final Dataset dataset, final Bin bin) {
+		final int i = dataset.nextPixel();
+		FitProcessor.fillTrans(dataset.fp.getOrigTrans(), dataset.trans, i % dataset.size,
+				i / dataset.size, new int[] {0, 1, 2}, bin.binRadius);
+		return dataset.trans;
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public FitProcessor setBinning(final Dataset dataset, final Binning binning) {
+		dataset.fp.setBinning(binning.binRadius);
+		return dataset.fp;
+	}
+
+	@Benchmark
+	public FitProcessor updateGlobalTrans(final Dataset dataset) {
+		dataset.fp.invalidateGlobalTrans();
+		dataset.fp.updateGlobalTrans();
+		return dataset.fp;
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 1, time = 5)
+	@Measurement(iterations = 3, time = 5)
+	public FitProcessor fitDataset(final FullFit fit) {
+		fit.fp.fitDataset();
+		return fit.fp;
+	}
+}
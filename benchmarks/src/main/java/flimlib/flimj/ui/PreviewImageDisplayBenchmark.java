@@ -0,0 +1,106 @@
+/*-
+ * #%L
+ * Fluorescence lifetime analysis in ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2025 Board of Regents of the University of Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package flimlib.flimj.ui;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.imagej.display.ColorTables;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.converter.RealLUTConverter;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+import javafx.scene.Group;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.Pane;
+import javafx.scene.layout.StackPane;
+
+/**
+ * Benchmarks of coloring and resampling images in {@link PreviewImageDisplay}. The display is not
+ * attached to a scene, so it is driven from the benchmark thread.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Dglass.platform=Monocle", "-Dmonocle.platform=Headless",
+		"-Dprism.order=sw", "-Djava.awt.headless=true"})
+@State(Scope.Benchmark)
+public class PreviewImageDisplayBenchmark {
+
+	/** The size of the parent pane, which the view is fitted to */
+	private static final double VIEW_SIZE = 800;
+
+	@Param({"64", "256"})
+	public int size;
+
+	private PreviewImageDisplay display;
+
+	private RandomAccessibleInterval<FloatType> intensity;
+
+	private RealLUTConverter<FloatType> converter;
+
+	/** Alternates between two scales far enough apart to always resample */
+	private boolean zoomed;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		BenchmarkData.startFX();
+		final ImageView view = new ImageView();
+		final StackPane parent = new StackPane(view);
+		parent.resize(VIEW_SIZE, VIEW_SIZE);
+		display = new PreviewImageDisplay(new Pane(), new Group(), view);
+
+		// the intensity image of a synthetic dataset
+		intensity = Views.hyperSlice(
+				BenchmarkData.makeParams(size, size, 64, BenchmarkData.SEED).transMap, 2, 10);
+		converter = new RealLUTConverter<>(0, 500, ColorTables.FIRE);
+		display.setImage(intensity, converter, null);
+	}
+
+	@Benchmark
+	public PreviewImageDisplay setImage() {
+		display.setImage(intensity, converter, null);
+		return display;
+	}
+
+	@Benchmark
+	public PreviewImageDisplay reloadImageIfNecessary() {
+		zoomed = !zoomed;
+		display.setPixScale(VIEW_SIZE / size * (zoomed ? 1 : 0.5));
+		display.reloadImageIfNecessary();
+		return display;
+	}
+}
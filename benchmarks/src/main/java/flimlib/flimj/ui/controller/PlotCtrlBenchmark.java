@@ -0,0 +1,92 @@
+/*-
+ * #%L
+ * Fluorescence lifetime analysis in ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2025 Board of Regents of the University of Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package flimlib.flimj.ui.controller;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import flimlib.flimj.ui.BenchmarkData;
+
+/**
+ * Benchmarks of the preparation of curve data in {@link PlotCtrl} before it is drawn.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PlotCtrlBenchmark {
+
+	@Param({"256", "1024"})
+	public int nTime;
+
+	private float[] trans, yFit, residuals;
+
+	private float[] trnY, fitY, resY, prefixSum;
+
+	private int fitOffset;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		final SplittableRandom rng = new SplittableRandom(BenchmarkData.SEED);
+		fitOffset = nTime / 10;
+		trans = new float[nTime];
+		yFit = new float[nTime - fitOffset];
+		residuals = new float[yFit.length];
+		for (int i = 0; i < nTime; i++) {
+			final float mean = 500 * (float) Math.exp(-(i - fitOffset) / (nTime / 8.0));
+			trans[i] = Math.max(mean + (float) (rng.nextGaussian() * Math.sqrt(mean)), 0);
+			if (i >= fitOffset) {
+				yFit[i - fitOffset] = mean;
+				residuals[i - fitOffset] = trans[i] - mean;
+			}
+		}
+		trnY = new float[nTime];
+		fitY = new float[nTime];
+		resY = new float[nTime];
+		prefixSum = new float[nTime + 1];
+	}
+
+	@Benchmark
+	public float[] prepareCurves() {
+		PlotCtrl.sampleCurves(trans, yFit, residuals, fitOffset, trnY, fitY, resY, prefixSum);
+		final float[] range = PlotCtrl.emptyRange();
+		PlotCtrl.extendRange(range, trnY, 0, nTime);
+		PlotCtrl.extendRange(range, fitY, fitOffset, nTime);
+		PlotCtrl.extendRange(PlotCtrl.emptyRange(), resY, fitOffset, nTime);
+		return range;
+	}
+}
@@ -0,0 +1,100 @@
+/*-
+ * #%L
+ * Fluorescence lifetime analysis in ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2025 Board of Regents of the University of Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package flimlib.flimj.ui.controller;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.scijava.Context;
+
+import net.imagej.ops.OpService;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+import flimlib.flimj.FitResults;
+import flimlib.flimj.ui.BenchmarkData;
+
+/**
+ * Benchmarks of the percentile contrast computed for result maps in {@link PreviewCtrl}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PreviewCtrlBenchmark {
+
+	@Param({"64", "256"})
+	public int size;
+
+	/** Whether only successfully fitted pixels are considered */
+	@Param({"true", "false"})
+	public boolean masked;
+
+	private Context ctx;
+
+	private OpService ops;
+
+	private RandomAccessibleInterval<FloatType> result, fitStatus;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		ctx = BenchmarkData.makeContext();
+		ops = ctx.service(OpService.class);
+		result = Views.hyperSlice(
+				BenchmarkData.makeParams(size, size, 64, BenchmarkData.SEED).transMap, 2, 10);
+
+		// about a tenth of the pixels fail or are below threshold
+		final Img<FloatType> status = ArrayImgs.floats(size, size);
+		final SplittableRandom rng = new SplittableRandom(BenchmarkData.SEED);
+		for (FloatType s : status)
+			s.set(rng.nextInt(10) == 0 ? FitResults.RET_INTENSITY_BELOW_THRESH : 0);
+		fitStatus = masked ? status : null;
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		ctx.dispose();
+	}
+
+	@Benchmark
+	public double[] contrastRange() {
+		return PreviewCtrl.getContrastRange(ops, result, fitStatus);
+	}
+}
@@ -0,0 +1,109 @@
+/*-
+ * #%L
+ * Fluorescence lifetime analysis in ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2025 Board of Regents of the University of Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package flimlib.flimj.ui;
+
+/**
+ * Renders the "Composite Color" result preview: each LUT color of the result is multiplied
+ * channel-wise by the color of the intensity image at the same pixel. Both inputs are kept as
+ * packed ARGB arrays in flat (x-fastest) order and blended in 8-bit fixed point, so the intensity
+ * shading is set once per intensity image and reused whenever the shown result changes.
+ */
+public class CompositeRenderer {
+
+	/** The packed intensity colors multiplying the result */
+	private int[] shade;
+
+	/** The packed LUT colors of the result */
+	private int[] colors;
+
+	/** The blended output */
+	private int[] composite;
+
+	/**
+	 * Sets the intensity shading. The array is not copied and must not be modified while in use.
+	 *
+	 * @param shade the packed intensity colors
+	 */
+	public void setShade(final int[] shade) {
+		this.shade = shade;
+	}
+
+	/**
+	 * @param n the number of pixels of the result
+	 * @return <code>true</code> if the shading can be blended with a result of <code>n</code>
+	 *         pixels
+	 */
+	public boolean canBlend(final int n) {
+		return shade != null && shade.length == n;
+	}
+
+	/**
+	 * Returns the buffer into which the caller writes the result colors before {@link #blend()}.
+	 * The buffer is reused across calls.
+	 *
+	 * @param n the number of pixels of the result
+	 * @return the color buffer of length <code>n</code>
+	 */
+	public int[] getColors(final int n) {
+		if (colors == null || colors.length != n) {
+			colors = new int[n];
+			composite = new int[n];
+		}
+		return colors;
+	}
+
+	/**
+	 * Blends the colors written to {@link #getColors} with the shading. The returned buffer is reused
+	 * across calls.
+	 *
+	 * @return the blended colors
+	 */
+	public int[] blend() {
+		for (int i = 0; i < colors.length; i++)
+			composite[i] = multiply(colors[i], shade[i]);
+		return composite;
+	}
+
+	/**
+	 * Multiplies two packed ARGB colors channel by channel, treating 255 as 1.
+	 *
+	 * @param c1 the first color
+	 * @param c2 the second color
+	 * @return the product
+	 */
+	private static int multiply(final int c1, final int c2) {
+		return mul8(c1 >>> 24, c2 >>> 24) << 24 //
+				| mul8((c1 >> 16) & 0xff, (c2 >> 16) & 0xff) << 16 //
+				| mul8((c1 >> 8) & 0xff, (c2 >> 8) & 0xff) << 8 //
+				| mul8(c1 & 0xff, c2 & 0xff);
+	}
+
+	/**
+	 * @param a an 8-bit value
+	 * @param b another 8-bit value
+	 * @return <code>round(a * b / 255)</code>, computed without division
+	 */
+	private static int mul8(final int a, final int b) {
+		final int t = a * b + 128;
+		return (t + (t >> 8)) >> 8;
+	}
+}
@@ -0,0 +1,133 @@
+/*-
+ * #%L
+ * Fluorescence lifetime analysis in ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2025 Board of Regents of the University of Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package flimlib.flimj.ui;
+
+import java.util.Arrays;
+
+/**
+ * Shape-preserving min/max decimation of evenly spaced samples into pixel columns. Every column
+ * keeps the extrema of the samples falling into it (and the order they occur in), so that a
+ * polyline through them covers exactly the pixels the full-resolution polyline would. The minimal
+ * positive sample is kept as well for log-scale plots, where non-positive samples are not drawn.
+ */
+public class Decimator {
+
+	/** The extrema of each column, NaN if the column is empty */
+	private float[] min = new float[0], max = new float[0], minPositive = new float[0];
+
+	/** True if the minimum of the column occurs before the maximum */
+	private boolean[] minFirst = new boolean[0];
+
+	/** The number of columns */
+	private int nCols;
+
+	/**
+	 * Decimates samples <code>[beg, end)</code> of <code>y</code>, sample <code>i</code> being at
+	 * column <code>floor(col0 + i * colStep)</code>. Samples outside of the columns are ignored.
+	 *
+	 * @param y       the samples
+	 * @param beg     the first sample
+	 * @param end     one past the last sample
+	 * @param col0    the (fractional) column of sample 0
+	 * @param colStep the (fractional) column increment per sample
+	 * @param nCols   the number of columns
+	 */
+	public void decimate(final float[] y, final int beg, final int end, final double col0,
+			final double colStep, final int nCols) {
+		this.nCols = nCols;
+		if (min.length < nCols) {
+			min = new float[nCols];
+			max = new float[nCols];
+			minPositive = new float[nCols];
+			minFirst = new boolean[nCols];
+		}
+		Arrays.fill(min, 0, nCols, Float.NaN);
+		Arrays.fill(max, 0, nCols, Float.NaN);
+		Arrays.fill(minPositive, 0, nCols, Float.NaN);
+
+		for (int i = beg; i < end; i++) {
+			final int c = (int) Math.floor(col0 + i * colStep);
+			if (c < 0 || c >= nCols)
+				continue;
+			final float v = y[i];
+			if (Float.isNaN(min[c])) {
+				min[c] = max[c] = v;
+				minFirst[c] = true;
+			} else if (v < min[c]) {
+				min[c] = v;
+				minFirst[c] = false;
+			} else if (v > max[c]) {
+				max[c] = v;
+				minFirst[c] = true;
+			}
+			if (v > 0 && !(v >= minPositive[c]))
+				minPositive[c] = v;
+		}
+	}
+
+	/**
+	 * @return the number of columns
+	 */
+	public int getNCols() {
+		return nCols;
+	}
+
+	/**
+	 * @param col the column
+	 * @return true if no sample falls into the column
+	 */
+	public boolean isEmpty(final int col) {
+		return Float.isNaN(min[col]);
+	}
+
+	/**
+	 * @param col the column
+	 * @return the minimal sample in the column
+	 */
+	public float getMin(final int col) {
+		return min[col];
+	}
+
+	/**
+	 * @param col the column
+	 * @return the maximal sample in the column
+	 */
+	public float getMax(final int col) {
+		return max[col];
+	}
+
+	/**
+	 * @param col the column
+	 * @return the minimal positive sample in the column, NaN if there is none
+	 */
+	public float getMinPositive(final int col) {
+		return minPositive[col];
+	}
+
+	/**
+	 * @param col the column
+	 * @return true if the minimum occurs before the maximum in the column
+	 */
+	public boolean isMinFirst(final int col) {
+		return minFirst[col];
+	}
+}
@@ -0,0 +1,450 @@
+/*-
+ * #%L
+ * Fluorescence lifetime analysis in ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2025 Board of Regents of the University of Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package flimlib.flimj.ui;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.scijava.plugin.Plugin;
+import org.scijava.service.AbstractService;
+import org.scijava.service.Service;
+
+/**
+ * The default {@link FitSchedulerService}. The threads are started on first use and are daemons,
+ * so an unused scheduler costs nothing.
+ */
+@Plugin(type = Service.class)
+public class DefaultFitSchedulerService extends AbstractService implements FitSchedulerService {
+
+	/** Guards all of the state below */
+	private final ReentrantLock lock = new ReentrantLock();
+
+	/** Signaled when a task is queued or a session becomes idle */
+	private final Condition available = lock.newCondition();
+
+	/** The sessions with queued tasks of each priority, in round-robin order */
+	private final Map<Priority, ArrayDeque<DefaultSession>> ready = new EnumMap<>(Priority.class);
+
+	private final List<Thread> workers = new ArrayList<>();
+
+	/**
+	 * The innermost task each thread is running. A thread waiting in {@link Session#invokeAll}
+	 * runs other tasks nested in its own, see {@link Task#outer}.
+	 */
+	private final Map<Thread, Task<?>> innermost = new HashMap<>();
+
+	private int parallelism;
+
+	private boolean disposed;
+
+	@Override
+	public void initialize() {
+		for (Priority priority : Priority.values())
+			ready.put(priority, new ArrayDeque<>());
+		// the fits themselves are multithreaded, so a few concurrent tasks saturate the CPU
+		parallelism = Math.max(1, Runtime.getRuntime().availableProcessors() / 4);
+		final String prop = System.getProperty(THREADS_PROPERTY);
+		if (prop != null) {
+			try {
+				parallelism = Math.max(1, Integer.parseInt(prop.trim()));
+			} catch (NumberFormatException e) {
+				// keep the default
+			}
+		}
+	}
+
+	@Override
+	public Session openSession() {
+		return new DefaultSession(true);
+	}
+
+	@Override
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	@Override
+	public void dispose() {
+		lock.lock();
+		try {
+			disposed = true;
+			final Set<DefaultSession> sessions = new HashSet<>();
+			for (ArrayDeque<DefaultSession> queued : ready.values())
+				sessions.addAll(queued);
+			for (DefaultSession session : sessions)
+				session.cancelQueued();
+			available.signalAll();
+			for (Thread worker : workers)
+				worker.interrupt();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Starts the workers unless already started. Must hold {@link #lock}.
+	 */
+	private void startWorkers() {
+		if (!workers.isEmpty())
+			return;
+		for (int i = 0; i <= parallelism; i++) {
+			// the last one is reserved for interactive tasks
+			final boolean interactiveOnly = i == parallelism;
+			final Thread worker = new Thread(() -> work(interactiveOnly),
+					"flimj-scheduler-" + (interactiveOnly ? "interactive" : String.valueOf(i)));
+			worker.setDaemon(true);
+			workers.add(worker);
+			worker.start();
+		}
+	}
+
+	/**
+	 * The loop of a worker.
+	 *
+	 * @param interactiveOnly <code>true</code> if only {@link Priority#INTERACTIVE} tasks are taken
+	 */
+	private void work(final boolean interactiveOnly) {
+		while (true) {
+			DefaultSession session = null;
+			Task<?> task = null;
+			lock.lock();
+			try {
+				while (!disposed && (session = nextSession(interactiveOnly)) == null)
+					available.await();
+				if (disposed)
+					return;
+				task = session.start();
+			} catch (InterruptedException e) {
+				return;
+			} finally {
+				lock.unlock();
+			}
+
+			// exceptions end up in the future
+			task.run();
+			finished(session, task);
+		}
+	}
+
+	/**
+	 * Marks a task of a session done.
+	 *
+	 * @param session the session
+	 * @param task    the task
+	 */
+	private void finished(final DefaultSession session, final Task<?> task) {
+		lock.lock();
+		try {
+			session.finish(task);
+			task.finish();
+			available.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Runs the next task of any session on the calling thread, or waits for one, until a batch is
+	 * done. The calling thread thus counts as one more worker while it waits for the batch.
+	 *
+	 * @param batch the batch waited for
+	 * @return <code>false</code> once the batch is done
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	private boolean runNext(final DefaultSession batch) throws InterruptedException {
+		DefaultSession session = null;
+		Task<?> task;
+		lock.lock();
+		try {
+			while (!batch.isDone()) {
+				// a cancelled caller must not take the tasks of other sessions
+				if (Thread.interrupted())
+					throw new InterruptedException();
+				// after disposal, only wait for the parts still running
+				if (!disposed && (session = nextSession(false)) != null)
+					break;
+				available.await();
+			}
+			if (session == null)
+				return false;
+			task = session.start();
+		} finally {
+			lock.unlock();
+		}
+
+		task.run();
+		finished(session, task);
+		return true;
+	}
+
+	/**
+	 * Takes the next session to run a task of, i.e. the first session that can start a task in
+	 * the highest priority class with queued tasks. The session moves to the back of its class.
+	 * Must hold {@link #lock}.
+	 *
+	 * @param interactiveOnly <code>true</code> to only consider {@link Priority#INTERACTIVE}
+	 * @return the session, with {@link DefaultSession#next} set, or <code>null</code> if none
+	 */
+	private DefaultSession nextSession(final boolean interactiveOnly) {
+		for (Priority priority : Priority.values()) {
+			if (interactiveOnly && priority != Priority.INTERACTIVE)
+				break;
+			final ArrayDeque<DefaultSession> sessions = ready.get(priority);
+			final Iterator<DefaultSession> iter = sessions.iterator();
+			while (iter.hasNext()) {
+				final DefaultSession session = iter.next();
+				if (session.isBusy())
+					continue;
+				iter.remove();
+				session.next = priority;
+				return session;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * A task that interrupts its thread on cancellation only while it is the innermost task of the
+	 * thread. A cancelled task waiting in {@link Session#invokeAll} is thus only interrupted once
+	 * the task it runs meanwhile, possibly of another session, has finished.
+	 */
+	private final class Task<T> extends FutureTask<T> {
+
+		/** The thread running the task, if started and not finished. Guarded by {@link #lock}. */
+		private Thread runner;
+
+		/** The task the runner was running when it started this one. Guarded by {@link #lock}. */
+		private Task<?> outer;
+
+		/** <code>true</code> if cancelled while not innermost. Guarded by {@link #lock}. */
+		private boolean interruptPending;
+
+		Task(final Callable<T> callable) {
+			super(callable);
+		}
+
+		@Override
+		public boolean cancel(final boolean mayInterruptIfRunning) {
+			if (!super.cancel(false))
+				return false;
+			if (mayInterruptIfRunning) {
+				lock.lock();
+				try {
+					if (runner == null)
+						return true;
+					if (innermost.get(runner) == this)
+						runner.interrupt();
+					else
+						interruptPending = true;
+				} finally {
+					lock.unlock();
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Marks the task run by the calling thread. Must hold {@link #lock}.
+		 */
+		void start() {
+			runner = Thread.currentThread();
+			outer = innermost.put(runner, this);
+		}
+
+		/**
+		 * Marks the task finished by the calling thread and delivers the interrupts deferred for
+		 * the task it was nested in. Must hold {@link #lock}.
+		 */
+		void finish() {
+			if (outer == null)
+				innermost.remove(runner);
+			else
+				innermost.put(runner, outer);
+			runner = null;
+			// drop the interrupt of a cancelled task
+			if (isCancelled())
+				Thread.interrupted();
+			if (outer != null && outer.interruptPending) {
+				outer.interruptPending = false;
+				Thread.currentThread().interrupt();
+			}
+			outer = null;
+		}
+	}
+
+	private class DefaultSession implements Session {
+
+		private final Map<Priority, ArrayDeque<Task<?>>> queues =
+				new EnumMap<>(Priority.class);
+
+		/** <code>true</code> to run one task at a time, <code>false</code> for a batch */
+		private final boolean serial;
+
+		/** The running tasks */
+		private final Set<Task<?>> running = new HashSet<>();
+
+		/** The batches of {@link #invokeAll} in progress */
+		private final List<DefaultSession> batches = new ArrayList<>();
+
+		/** The priority class to take the next task from */
+		private Priority next;
+
+		private boolean closed;
+
+		DefaultSession(final boolean serial) {
+			this.serial = serial;
+			for (Priority priority : Priority.values())
+				queues.put(priority, new ArrayDeque<>());
+		}
+
+		@Override
+		public <T> Future<T> submit(final Priority priority, final Callable<T> task) {
+			final Task<T> future = new Task<>(task);
+			lock.lock();
+			try {
+				if (closed || disposed)
+					throw new RejectedExecutionException("FLIMJ scheduler session closed");
+				final ArrayDeque<Task<?>> queue = queues.get(priority);
+				if (queue.isEmpty())
+					ready.get(priority).addLast(this);
+				queue.addLast(future);
+				startWorkers();
+				available.signalAll();
+			} finally {
+				lock.unlock();
+			}
+			return future;
+		}
+
+		@Override
+		public <T> List<Future<T>> invokeAll(final Priority priority,
+				final Collection<? extends Callable<T>> tasks) throws InterruptedException {
+			final DefaultSession batch = new DefaultSession(false);
+			lock.lock();
+			try {
+				if (closed || disposed)
+					throw new RejectedExecutionException("FLIMJ scheduler session closed");
+				batches.add(batch);
+			} finally {
+				lock.unlock();
+			}
+			try {
+				final List<Future<T>> futures = new ArrayList<>(tasks.size());
+				for (Callable<T> task : tasks)
+					futures.add(batch.submit(priority, task));
+				// work like a worker meanwhile, e.g. if the only thread is running the caller
+				while (runNext(batch)) {
+					// the batch takes turns with the other sessions
+				}
+				return futures;
+			} finally {
+				lock.lock();
+				try {
+					batches.remove(batch);
+					batch.close();
+				} finally {
+					lock.unlock();
+				}
+			}
+		}
+
+		@Override
+		public void close() {
+			lock.lock();
+			try {
+				closed = true;
+				cancelQueued();
+				for (Task<?> task : running)
+					task.cancel(true);
+				for (DefaultSession batch : batches)
+					batch.close();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		/**
+		 * @return <code>true</code> if no task can start now. Must hold {@link #lock}.
+		 */
+		boolean isBusy() {
+			return serial && !running.isEmpty();
+		}
+
+		/**
+		 * Takes the next task. Must hold {@link #lock}.
+		 */
+		Task<?> start() {
+			final ArrayDeque<Task<?>> queue = queues.get(next);
+			final Task<?> task = queue.pollFirst();
+			running.add(task);
+			task.start();
+			if (!queue.isEmpty())
+				ready.get(next).addLast(this);
+			return task;
+		}
+
+		/**
+		 * @return <code>true</code> if no task is queued or running. Must hold {@link #lock}.
+		 */
+		boolean isDone() {
+			if (!running.isEmpty())
+				return false;
+			for (ArrayDeque<Task<?>> queue : queues.values())
+				if (!queue.isEmpty())
+					return false;
+			return true;
+		}
+
+		/**
+		 * Marks a running task done. Must hold {@link #lock}.
+		 */
+		void finish(final Task<?> task) {
+			running.remove(task);
+		}
+
+		/**
+		 * Cancels the queued tasks. Must hold {@link #lock}.
+		 */
+		void cancelQueued() {
+			for (Priority priority : Priority.values()) {
+				for (Task<?> task : queues.get(priority))
+					task.cancel(false);
+				queues.get(priority).clear();
+				ready.get(priority).remove(this);
+			}
+		}
+	}
+}
@@ -0,0 +1,116 @@
+/*-
+ * #%L
+ * Fluorescence lifetime analysis in ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2025 Board of Regents of the University of Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package flimlib.flimj.ui;
+
+import java.awt.GraphicsEnvironment;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
+import javafx.fxml.FXMLLoader;
+import javafx.util.Duration;
+
+import org.scijava.log.LogService;
+import org.scijava.plugin.Parameter;
+import org.scijava.plugin.Plugin;
+import org.scijava.service.AbstractService;
+import org.scijava.service.Service;
+
+import flimlib.flimj.ui.controller.AbstractCtrl;
+
+/**
+ * The default {@link SceneTemplateService}. Nothing is built until the first window takes its
+ * layout, so that contexts that never open FLIMJ neither start the JavaFX toolkit nor build the
+ * scene. From then on, a spare is kept ready for the next window.
+ */
+@Plugin(type = Service.class)
+public class DefaultSceneTemplateService extends AbstractService implements SceneTemplateService {
+
+	/** The time between taking a layout and building its replacement */
+	private static final Duration REFILL_DELAY = Duration.seconds(5);
+
+	@Parameter
+	private LogService logs;
+
+	/** The unused layouts by name, only accessed on the JavaFX application thread */
+	private final Map<String, FXMLLoader> spares = new HashMap<>();
+
+	/** True once the context is disposed */
+	private volatile boolean disposed;
+
+	@Override
+	public FXMLLoader take(String name) throws IOException {
+		FXMLLoader loader = spares.remove(name);
+		if (loader == null) {
+			loader = AbstractCtrl.getFXMLLoader(name);
+			loader.load();
+		}
+		// refill once the caller's window is up rather than delay it
+		if (isPrewarmEnabled()) {
+			PauseTransition refill = new PauseTransition(REFILL_DELAY);
+			refill.setOnFinished(event -> prepare(name));
+			refill.play();
+		}
+		return loader;
+	}
+
+	@Override
+	public void prepare(String name) {
+		if (disposed || !isPrewarmEnabled())
+			return;
+		if (!Platform.isFxApplicationThread()) {
+			Platform.runLater(() -> prepare(name));
+			return;
+		}
+		if (spares.containsKey(name))
+			return;
+		try {
+			FXMLLoader loader = AbstractCtrl.getFXMLLoader(name);
+			loader.load();
+			spares.put(name, loader);
+		} catch (IOException | RuntimeException e) {
+			logs.warn("FLIMJ: failed to prebuild " + name, e);
+		}
+	}
+
+	@Override
+	public void dispose() {
+		disposed = true;
+		// NB: spares only exist if a window has started the toolkit
+		if (isPrewarmEnabled() && !GraphicsEnvironment.isHeadless()) {
+			try {
+				Platform.runLater(spares::clear);
+			} catch (IllegalStateException e) {
+				// the toolkit never started
+			}
+		}
+	}
+
+	/**
+	 * @return false if {@value SceneTemplateService#PREWARM_PROPERTY} is set to false
+	 */
+	private static boolean isPrewarmEnabled() {
+		return Boolean.parseBoolean(System.getProperty(PREWARM_PROPERTY, "true"));
+	}
+}
@@ -0,0 +1,128 @@
+/*-
+ * #%L
+ * Fluorescence lifetime analysis in ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2025 Board of Regents of the University of Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package flimlib.flimj.ui;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.imagej.Dataset;
+import net.imglib2.Point;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.scijava.ItemIO;
+import org.scijava.command.Command;
+import org.scijava.log.LogService;
+import org.scijava.plugin.Parameter;
+import org.scijava.plugin.Plugin;
+import org.scijava.widget.FileWidget;
+
+import flimlib.flimj.FitParams;
+import flimlib.flimj.ui.FitProcessor.FitType;
+
+/**
+ * Fits a whole dataset and saves the result maps without showing the UI, e.g. from a script or a
+ * headless pipeline.
+ */
+@Plugin(type = Command.class, menuPath = "Analyze>Lifetime>FLIMJ Batch", headless = true)
+public class FLIMJBatchCommand implements Command {
+
+	/** The subscripts of component parameters */
+	private static final String[] SUBSCRIPTS = {"₁", "₂", "₃"};
+
+	@Parameter
+	private Dataset dataset;
+
+	@Parameter(label = "Fit config", required = false,
+			description = "A config file saved by FLIMJ, overriding the settings below")
+	private File config;
+
+	@Parameter(label = "Algorithm", choices = {"LMA", "Global", "Bayes"})
+	private String algo = "LMA";
+
+	@Parameter(label = "Components", min = "1", max = "3")
+	private int nComp = 1;
+
+	@Parameter(label = "Bin radius", min = "-1")
+	private int binRadius = 0;
+
+	@Parameter(label = "Intensity threshold", min = "0")
+	private float iThresh = 0;
+
+	@Parameter(label = "Output file", style = FileWidget.SAVE_STYLE)
+	private File output;
+
+	@Parameter(type = ItemIO.OUTPUT)
+	private String channels;
+
+	@Parameter
+	private LogService log;
+
+	@Override
+	public void run() {
+		final FitParams<FloatType> params = new FitParams<>();
+		// dimensions beyond XY and lifetime are sliced at 0
+		FitParamsPrompter.populate(params, dataset, new Point(dataset.numDimensions()), false);
+
+		final FitProcessor fp = new FitProcessor(dataset.context(), params);
+		try {
+			if (config != null)
+				fp.applyConfigJSON(new String(Files.readAllBytes(config.toPath())));
+			else {
+				fp.setAlgo(FitType.valueOf(algo), FitType.Bayes.name().equals(algo) ? 1 : nComp);
+				fp.setBinning(binRadius);
+				fp.setIThresh(iThresh);
+			}
+			fp.fitDataset();
+
+			final List<String> options = getResultOptions(fp.getParams().nComp);
+			options.addAll(fp.getResidualOptions());
+			final List<String> names =
+					new ResultExporter(fp).export(options, output.getPath(), p -> {});
+			channels = String.join(", ", names);
+		} catch (IOException e) {
+			log.error("FLIMJ batch fit failed", e);
+			throw new RuntimeException(e);
+		} finally {
+			fp.destroy();
+		}
+	}
+
+	/**
+	 * @param nComp the number of components
+	 * @return the result maps of a multi-exponential fit, named as in the UI
+	 */
+	private static List<String> getResultOptions(int nComp) {
+		final List<String> options = new ArrayList<>();
+		options.add("z");
+		for (int c = 0; c < Math.min(nComp, SUBSCRIPTS.length); c++) {
+			options.add("A" + SUBSCRIPTS[c]);
+			if (nComp > 1)
+				options.add("A" + SUBSCRIPTS[c] + " %");
+			options.add("τ" + SUBSCRIPTS[c]);
+		}
+		options.add("τₘ");
+		return options;
+	}
+}
@@ -43,14 +43,18 @@ import org.scijava.log.LogService;
 import org.scijava.log.Logger;
 import org.scijava.plugin.Parameter;
 import org.scijava.plugin.Plugin;
+import org.scijava.thread.ThreadService;
 
 import flimlib.flimj.FitParams;
-import flimlib.flimj.ui.controller.AbstractCtrl;
+import flimlib.flimj.ui.FitSchedulerService.Priority;
 import flimlib.flimj.ui.controller.MainCtrl;
+import flimlib.flimj.ui.controller.MainCtrl.Readiness;
 import javafx.application.Platform;
 import javafx.embed.swing.JFXPanel;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
+import javafx.scene.control.Alert;
+import javafx.scene.control.Alert.AlertType;
 
 @Plugin(type = Command.class, menuPath = "Analyze>Lifetime>FLIMJ")
 public class FLIMJCommand implements Command {
@@ -64,7 +68,21 @@ public class FLIMJCommand implements Command {
 	@Parameter
 	private DatasetView datasetView;
 
-	private FitProcessor fp;
+	@Parameter
+	private ThreadService threadService;
+
+	@Parameter
+	private SceneTemplateService templates;
+
+	/** Set in the background once the dataset is loaded */
+	private volatile FitProcessor fp;
+
+	private MainCtrl mainCtrl;
+
+	private JFrame frame;
+
+	/** Set when the window closes, possibly before the loading finishes */
+	private volatile boolean closed;
 
 	@Override
 	public void run() {
@@ -72,10 +90,11 @@ public class FLIMJCommand implements Command {
 
 		// this setting keeps JFX services alive so that we can launch the app again
 		Platform.setImplicitExit(false);
+		final FitParams<FloatType> params = new FitParams<>();
 		final boolean[] initSuccessful = {false};
 		runAndWait(() -> {
 			try {
-				initSuccessful[0] = initFX(fxPanel);
+				initSuccessful[0] = initFX(fxPanel, params);
 			} catch (UIException e) {
 				log().error(e);
 			} catch (Exception e) {
@@ -83,13 +102,16 @@ public class FLIMJCommand implements Command {
 				throw new RuntimeException(e);
 			}
 		});
-		if (initSuccessful[0])
-			EventQueue.invokeLater(() -> {
-				initSwing(fxPanel);
-			});
-
-		if (!initSuccessful[0])
+		if (!initSuccessful[0]) {
 			log().warn("FLIMJ: UI init failed or aborted by user. Exiting.");
+			return;
+		}
+
+		// show the window right away and load the dataset behind the progress overlay
+		EventQueue.invokeLater(() -> {
+			initSwing(fxPanel);
+		});
+		threadService.run(() -> initFit(params));
 	}
 
 	/**
@@ -143,29 +165,90 @@ public class FLIMJCommand implements Command {
 	 *      "https://docs.oracle.com/javase/8/javafx/interoperability-tutorial/swing-fx-interoperability.htm">oracle
 	 *      doc</a>
 	 */
-	private boolean initFX(final JFXPanel fxPanel) throws IOException {
+	private boolean initFX(final JFXPanel fxPanel, final FitParams<FloatType> params)
+			throws IOException {
 		// load scene
-		final FXMLLoader loader = AbstractCtrl.getFXMLLoader("plugin-layout");
-		final Scene scene = loader.<Scene>load();
+		final FXMLLoader loader = templates.take("plugin-layout");
+		final Scene scene = loader.<Scene>getRoot();
 		fxPanel.setScene(scene);
+		mainCtrl = loader.<MainCtrl>getController();
+		mainCtrl.setReady(Readiness.LOADING);
+		mainCtrl.setProgress(-1.0, "Reading dataset...");
 
-		// init fitting worker
-		final FitParams<FloatType> params = new FitParams<>();
-		if (!FitParamsPrompter.populate(params, datasetView.getData(), datasetView)) return false;
-		fp = new FitProcessor(datasetView.context(), params);
+		// only the lifetime axis and time bin, the data is loaded by initFit()
+		return FitParamsPrompter.prompt(params, datasetView.getData(), true);
+	}
 
-		// init controllers
-		final MainCtrl mainCtrl = loader.<MainCtrl>getController();
-		mainCtrl.setFitProcessor(fp);
+	/**
+	 * Loads the dataset and estimates the initial parameters in the background. The intensity
+	 * image and the tabs that only need it are shown as soon as it is ready, the other tabs are
+	 * enabled after the first preview fit.
+	 *
+	 * @param params the params with the lifetime axis and time bin set by {@link #initFX}
+	 */
+	private void initFit(final FitParams<FloatType> params) {
+		// closing the window drops the field
+		final DatasetView view = datasetView;
+		final MainCtrl ctrl = mainCtrl;
+		final Logger log = log();
+		try {
+			FitParamsPrompter.load(params, view.getData(), view);
+			if (closed)
+				return;
+			Platform.runLater(() -> ctrl.setProgress(-1.0, "Estimating parameters..."));
+			final FitProcessor fitProcessor = new FitProcessor(view.context(), params);
+			fp = fitProcessor;
+			if (closed) {
+				fitProcessor.destroy();
+				return;
+			}
 
-		fp.refreshControllers();
-		fp.updateFit();
+			// show the intensity image while the preview fit runs
+			runAndWait(() -> {
+				ctrl.setFitProcessor(fitProcessor);
+				fitProcessor.notifyListeners();
+				ctrl.setProgress(null);
+				ctrl.setReady(Readiness.INTENSITY);
+			});
+			// in turn with the other tasks of the window, notifies the controllers when done
+			fitProcessor.submitBackground(Priority.INTERACTIVE, () -> {
+				try {
+					fitProcessor.updateFit();
+				} catch (RuntimeException e) {
+					fail(e, log);
+					return;
+				}
+				Platform.runLater(() -> {
+					if (closed)
+						return;
+					ctrl.setReady(Readiness.FITTED);
+				});
+			});
+		} catch (Exception e) {
+			fail(e, log);
+		}
+	}
 
-		return true;
+	/**
+	 * Reports that loading the dataset failed and closes the window.
+	 *
+	 * @param e   the failure
+	 * @param log the log
+	 */
+	private void fail(final Exception e, final Logger log) {
+		log.error(e);
+		if (closed)
+			return;
+		Platform.runLater(() -> {
+			Alert a = new Alert(AlertType.ERROR);
+			a.setContentText("FLIMJ failed to load the dataset: " + e.getMessage());
+			a.show();
+		});
+		EventQueue.invokeLater(() -> frame.dispose());
 	}
 
 	private void initSwing(final JFXPanel fxPanel) {
-		final JFrame frame = new JFrame(TITLE);
+		frame = new JFrame(TITLE);
 		frame.add(fxPanel);
 		frame.setDefaultCloseOperation(WindowConstants.DISPOSE_ON_CLOSE);
 
@@ -181,11 +264,20 @@ public class FLIMJCommand implements Command {
 		// release resources when done
 		frame.addWindowListener(new WindowAdapter() {
 			@Override
-			public void windowClosing(WindowEvent e) {
-				// TODO there is still a lot of memory leaks caused by listeners,
-				// remove them from each controller
-				fp.destroy();
+			public void windowClosed(WindowEvent e) {
+				closed = true;
+				final FitProcessor fitProcessor = fp;
+				final MainCtrl ctrl = mainCtrl;
+				fp = null;
+				mainCtrl = null;
 				datasetView = null;
+				// the controllers release UI state, which lives on the FX thread
+				Platform.runLater(() -> {
+					if (fitProcessor != null)
+						fitProcessor.destroy();
+					ctrl.destroy();
+					fxPanel.setScene(null);
+				});
 			}
 		});
 	}
@@ -0,0 +1,50 @@
+/*-
+ * #%L
+ * Fluorescence lifetime analysis in ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2025 Board of Regents of the University of Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package flimlib.flimj.ui;
+
+/**
+ * Receives notifications from a {@link FitProcessor}. The JavaFX controllers are one kind of
+ * listener; scripts and batch pipelines may register their own.
+ */
+public interface FitListener {
+
+	/**
+	 * Called by the {@link FitProcessor} when an operation (e.g. a fit, binning or switching the
+	 * IRF) has changed its state, and by {@link FitProcessor#notifyListeners()}. What changed can
+	 * be told by comparing {@link FitProcessor#getVersion} with the versions seen before. Runs on
+	 * the thread of the operation, which may be a scheduler thread.
+	 */
+	void requestRefresh();
+
+	/**
+	 * Called by {@link FitProcessor#fitDataset()} as the fit progresses, at most once per percent.
+	 * Runs on the fitting threads.
+	 *
+	 * @param progress the fraction of pixels fitted, 1 when done
+	 */
+	default void fitProgress(double progress) {}
+
+	/**
+	 * Called by {@link FitProcessor#destroy()} so that the listener can release its resources.
+	 */
+	default void destroy() {}
+}
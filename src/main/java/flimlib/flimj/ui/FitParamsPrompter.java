@@ -71,13 +71,45 @@ public final class FitParamsPrompter {
 		final FitParams<FloatType> params, final Dataset dataset,
 		final Localizable position)
 	{
-		final OpService ops = dataset.context().service(OpService.class);
+		return populate(params, dataset, position, true);
+	}
 
-		// discern the X and Y axes
-		final int xAxis = dataset.dimensionIndex(Axes.X);
-		if (xAxis < 0) throw new IllegalArgumentException("Dataset has no X axis");
-		final int yAxis = dataset.dimensionIndex(Axes.Y);
-		if (yAxis < 0) throw new IllegalArgumentException("Dataset has no Y axis");
+	/**
+	 * Computes reasonable default values for the given {@link Dataset} at the
+	 * specified {@link Localizable position}, optionally confirming them with the
+	 * user.
+	 * 
+	 * @param params The {@link FitParams} object to populate.
+	 * @param dataset The {@link Dataset} from which to infer default values.
+	 * @param position The position at which to slice the dataset, if
+	 *          dimensionality is greater than 3D.
+	 * @param interactive Whether to confirm the values with a dialog box.
+	 * @param <T> Dataset data type
+	 * @return <code>true</code> if the operation succeeds
+	 */
+	public static <T extends RealType<T>> boolean populate(
+		final FitParams<FloatType> params, final Dataset dataset,
+		final Localizable position, final boolean interactive)
+	{
+		if (!prompt(params, dataset, interactive)) return false;
+		load(params, dataset, position);
+		return true;
+	}
+
+	/**
+	 * The cheap half of {@link #populate}: infers the lifetime axis and time bin
+	 * of the given {@link Dataset}, optionally confirming them with the user. If
+	 * interactive, this must be called on the JavaFX application thread.
+	 * 
+	 * @param params The {@link FitParams} object to populate.
+	 * @param dataset The {@link Dataset} from which to infer default values.
+	 * @param interactive Whether to confirm the values with a dialog box.
+	 * @return <code>true</code> if the operation succeeds
+	 */
+	public static boolean prompt(final FitParams<FloatType> params,
+		final Dataset dataset, final boolean interactive)
+	{
+		checkXY(dataset);
 		final int nD = dataset.numDimensions();
 		if (nD < 3) throw new IllegalArgumentException("Dataset must have 3 or more dimensions");
 
@@ -118,6 +150,77 @@ public final class FitParamsPrompter {
 		if (timeBin < 0) timeBin = dataset.axis(ltAxis).calibratedValue(dataset.dimension(ltAxis));
 		if (timeBin < 0) timeBin = 10d;
 
+		if (interactive) {
+			if (!confirm(params, dataset, ltAxis, timeBin)) return false;
+		}
+		else {
+			params.ltAxis = ltAxis;
+			params.xInc = (float) (timeBin / dataset.dimension(ltAxis));
+		}
+		return true;
+	}
+
+	/**
+	 * The expensive half of {@link #populate}: slices the given {@link Dataset}
+	 * to 3D at the specified {@link Localizable position} and converts it to
+	 * float32 as the transient map. {@link #prompt} must have set the lifetime
+	 * axis. This can be called from any thread.
+	 * 
+	 * @param params The {@link FitParams} object to populate.
+	 * @param dataset The {@link Dataset} to load.
+	 * @param position The position at which to slice the dataset, if
+	 *          dimensionality is greater than 3D.
+	 * @param <T> Dataset data type
+	 */
+	public static <T extends RealType<T>> void load(
+		final FitParams<FloatType> params, final Dataset dataset,
+		final Localizable position)
+	{
+		final OpService ops = dataset.context().service(OpService.class);
+		final int[] xy = checkXY(dataset);
+		final int xAxis = xy[0], yAxis = xy[1];
+
+		// Slice down to 3D, fixing positions of irrelevant dimensions.
+		@SuppressWarnings("unchecked")
+		ImgPlus<T> imp = (ImgPlus<T>) dataset.getImgPlus();
+		RandomAccessibleInterval<T> img = imp;
+		for (int d = imp.numDimensions() - 1; d >= 0; --d) {
+			if (d == xAxis || d == yAxis || d == params.ltAxis) continue;
+			img = Views.hyperSlice(img, d, position.getLongPosition(d));
+			if (d < params.ltAxis) params.ltAxis--;
+		}
+		if (img.numDimensions() != 3) {
+			throw new RuntimeException("Unexpected FLIM image dimensionality: " +
+				img.numDimensions());
+		}
+		// Convert sliced FLIM data to float32 data type.
+		params.transMap = ops.convert().float32(Views.iterable(img));
+	}
+
+	/**
+	 * Discerns the X and Y axes of the given {@link Dataset}.
+	 *
+	 * @return the indices of the X and Y axes
+	 */
+	private static int[] checkXY(final Dataset dataset) {
+		final int xAxis = dataset.dimensionIndex(Axes.X);
+		if (xAxis < 0) throw new IllegalArgumentException("Dataset has no X axis");
+		final int yAxis = dataset.dimensionIndex(Axes.Y);
+		if (yAxis < 0) throw new IllegalArgumentException("Dataset has no Y axis");
+		return new int[] { xAxis, yAxis };
+	}
+
+	/**
+	 * Asks the user to confirm the lifetime axis and time bin, and sets them in
+	 * the {@link FitParams}.
+	 *
+	 * @return <code>false</code> if the dialog was closed by the user
+	 */
+	private static boolean confirm(final FitParams<FloatType> params,
+		final Dataset dataset, final int ltAxis, final double timeBin)
+	{
+		final int nD = dataset.numDimensions();
+
 		// Ask the user to confirm the details.
 
 		final Stage dialog = new Stage();
@@ -178,23 +281,6 @@ public final class FitParamsPrompter {
 
 		params.ltAxis = ltAxisBox.getSelectionModel().getSelectedIndex();
 		params.xInc = timeBinBox.getNumberProperty().get().floatValue();
-
-		// Slice down to 3D, fixing positions of irrelevant dimensions.
-		@SuppressWarnings("unchecked")
-		ImgPlus<T> imp = (ImgPlus<T>) dataset.getImgPlus();
-		RandomAccessibleInterval<T> img = imp;
-		for (int d = imp.numDimensions() - 1; d >= 0; --d) {
-			if (d == xAxis || d == yAxis || d == params.ltAxis) continue;
-			img = Views.hyperSlice(img, d, position.getLongPosition(d));
-			if (d < params.ltAxis) params.ltAxis--;
-		}
-		if (img.numDimensions() != 3) {
-			throw new RuntimeException("Unexpected FLIM image dimensionality: " +
-				img.numDimensions());
-		}
-		// Convert sliced FLIM data to float32 data type.
-		params.transMap = ops.convert().float32(Views.iterable(img));
-
 		return true;
 	}
 }
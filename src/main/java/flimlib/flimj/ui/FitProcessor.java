@@ -21,28 +21,53 @@
  */
 package flimlib.flimj.ui;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.function.BiFunction;
+import java.util.function.DoubleConsumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import net.imagej.ops.OpService;
 import net.imglib2.Cursor;
+import net.imglib2.Interval;
 import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.cache.img.CellLoader;
+import net.imglib2.cache.img.DiskCachedCellImgFactory;
+import net.imglib2.cache.img.DiskCachedCellImgOptions;
+import net.imglib2.cache.img.ReadOnlyCachedCellImgFactory;
+import net.imglib2.cache.img.ReadOnlyCachedCellImgOptions;
+import net.imglib2.cache.img.optional.CacheOptions.CacheType;
 import net.imglib2.img.Img;
 import net.imglib2.img.array.ArrayImgs;
 import net.imglib2.outofbounds.OutOfBoundsPeriodicFactory;
+import net.imglib2.type.Type;
+import net.imglib2.type.numeric.integer.IntType;
 import net.imglib2.type.numeric.real.DoubleType;
 import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Intervals;
 import net.imglib2.view.Views;
 
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
 import org.scijava.Context;
+import org.scijava.log.LogService;
 import org.scijava.service.Service;
 
 import flimlib.flimj.FitParams;
@@ -50,7 +75,8 @@ import flimlib.flimj.FitResults;
 import flimlib.flimj.FlimOps;
 import flimlib.flimj.ParamEstimator;
 import flimlib.flimj.fitworker.FitWorker.FitEventHandler;
-import flimlib.flimj.ui.controller.AbstractCtrl;
+import flimlib.flimj.ui.FitSchedulerService.Priority;
+import flimlib.flimj.ui.PerfMonitor.Stage;
 
 /**
  * ProcessingService
@@ -63,6 +89,167 @@ public class FitProcessor {
 		/** Phasor */
 	}
 
+	/** The kinds of state change tracked by {@link #getVersion} */
+	public static enum Change {
+		/** The previewed pixel moved */
+		CURSOR,
+		/** The previewed pixel was refitted */
+		PIXEL_FIT,
+		/** The dataset was refitted */
+		DATASET_FIT,
+		/** The binning kernel (and hence the intensity image) changed */
+		BINNING,
+		/** The intensity threshold changed */
+		THRESHOLD,
+		/** The IRF, its range or the IRF picking state changed */
+		IRF,
+		/** The list of preview options changed */
+		PREVIEW_OPTIONS,
+		/** A pixel was pinned or unpinned */
+		PINS
+	}
+
+	/** The decay and fitted curve of a pinned pixel or region */
+	public static class PinnedFit {
+
+		private final int x, y, width, height;
+
+		private final float[] trans, fitted;
+
+		private PinnedFit(int[] pin, float[] trans, float[] fitted) {
+			this.x = pin[0];
+			this.y = pin[1];
+			this.width = pin[2] - pin[0] + 1;
+			this.height = pin[3] - pin[1] + 1;
+			this.trans = trans;
+			this.fitted = fitted;
+		}
+
+		/**
+		 * @return the x coordinate of the pixel, or of the top left pixel of the region
+		 */
+		public int getX() {
+			return x;
+		}
+
+		/**
+		 * @return the y coordinate of the pixel, or of the top left pixel of the region
+		 */
+		public int getY() {
+			return y;
+		}
+
+		/**
+		 * @return the width of the region, 1 for a pixel
+		 */
+		public int getWidth() {
+			return width;
+		}
+
+		/**
+		 * @return the height of the region, 1 for a pixel
+		 */
+		public int getHeight() {
+			return height;
+		}
+
+		/**
+		 * @return the (binned) decay of a pixel, or the mean decay of a region
+		 */
+		public float[] getTrans() {
+			return trans;
+		}
+
+		/**
+		 * @return the fitted curve, laid out like {@link FitResults#fitted}
+		 */
+		public float[] getFitted() {
+			return fitted;
+		}
+	}
+
+	/**
+	 * What {@link FitProcessor#fitPins} reads, copied by {@link FitProcessor#copyPinSettings} on the
+	 * thread that changes it
+	 */
+	public static class PinSettings {
+
+		private final FitParams<FloatType> params;
+
+		private final String algo;
+
+		private final int[][] pins;
+
+		private final int binRadius;
+
+		/** The decay of all pixels if binned together, otherwise <code>null</code> */
+		private final float[] global;
+
+		private final TransientStore store;
+
+		private final RandomAccessibleInterval<FloatType> trans;
+
+		private final int[] axisOrder;
+
+		private PinSettings(FitParams<FloatType> params, String algo, int[][] pins, int binRadius,
+				float[] global, TransientStore store, RandomAccessibleInterval<FloatType> trans,
+				int[] axisOrder) {
+			this.params = params;
+			this.algo = algo;
+			this.pins = pins;
+			this.binRadius = binRadius;
+			this.global = global;
+			this.store = store;
+			this.trans = trans;
+			this.axisOrder = axisOrder;
+		}
+	}
+
+	/** A session file read into memory, see {@link FitProcessor#readSession} */
+	public static class StoredSession {
+
+		private final JsonObject meta;
+
+		private final Img<FloatType> intensity;
+
+		private final StoredResults results;
+
+		private StoredSession(JsonObject meta, Img<FloatType> intensity, StoredResults results) {
+			this.meta = meta;
+			this.intensity = intensity;
+			this.results = results;
+		}
+	}
+
+	/** The dataset fit result maps of a session file, see {@link FitProcessor#readResults} */
+	private static class StoredResults {
+
+		private final Img<FloatType> params, status;
+
+		/** The residual quality maps, <code>null</code> if not stored */
+		private final float[] chiSqR, runsZ, acf;
+
+		/** The size of the residual quality maps */
+		private final int width, height;
+
+		private StoredResults(Img<FloatType> params, Img<FloatType> status, float[] chiSqR,
+				float[] runsZ, float[] acf, int width, int height) {
+			this.params = params;
+			this.status = status;
+			this.chiSqR = chiSqR;
+			this.runsZ = runsZ;
+			this.acf = acf;
+			this.width = width;
+			this.height = height;
+		}
+	}
+
+	/** The maximum number of pinned pixels */
+	public static final int MAX_PINS = 8;
+
+	/** The number of pixels per task of a dataset fit, see {@link #fitInBlocks} */
+	private static final long FIT_BLOCK_PIXELS = 1 << 14;
+
 	private final Context ctx;
 
 	private final OpService ops;
@@ -71,6 +258,9 @@ public class FitProcessor {
 
 	private FitParams<FloatType> params, irfInfoParams;
 
+	/** The cached IRF dataset in use, <code>null</code> if none */
+	private IRFCache.Entry irfEntry;
+
 	private FitResults results;
 
 	private FitEventHandler<FloatType> FitEventHandler;
@@ -83,6 +273,29 @@ public class FitProcessor {
 
 	private Img<FloatType> dispParams, irfIntensity, fitStatus;
 
+	/** The preview options of the residual quality maps computed along with a dataset fit */
+	public static final List<String> RESIDUAL_OPTIONS = List.of("χ²ᵣ", "Runs Z", "Residual ACF₁");
+
+	/** Per-pixel reduced χ², runs test z and lag-1 autocorrelation of the last dataset fit */
+	private float[] chiSqRMap, runsZMap, acfMap;
+
+	/** The size of the residual quality maps */
+	private int resMapWidth, resMapHeight;
+
+	private IntensityIndex intensityIndex;
+
+	/** The pixel-major copy of <code>origTrans</code> for hover inspection, once built */
+	private volatile TransientStore transientStore;
+
+	/** True once building {@link #transientStore} has been requested (or ruled out) */
+	private boolean transientStoreRequested;
+
+	/** Reads {@link #dispParamsRASource} for hover inspection */
+	private RandomAccess<FloatType> dispParamsRA;
+
+	/** The image {@link #dispParamsRA} was made from */
+	private Img<FloatType> dispParamsRASource;
+
 	private String fitType;
 
 	private List<String> contextualPreviewOptions, persistentPreviewOptions;
@@ -97,9 +310,46 @@ public class FitProcessor {
 
 	private float[] globalTrans;
 
-	private AbstractCtrl[] controllers;
+	private final List<FitListener> listeners = new CopyOnWriteArrayList<>();
 
-	private final ExecutorService executor;
+	/**
+	 * The (min x, min y, max x, max y) of pinned regions, in pinning order. A pinned pixel is a
+	 * region of one pixel.
+	 */
+	private final List<int[]> pins = new ArrayList<>();
+
+	/** The fits of {@link #pins} as of the last {@link #fitPins} */
+	private volatile List<PinnedFit> pinnedFits = List.of();
+
+	/** The version stamp of the last change of each {@link Change} kind */
+	private final long[] versions = new long[Change.values().length];
+
+	/** The source of version stamps */
+	private long clock;
+
+	/** The value of {@link #clock} when the listeners were last notified */
+	private long notifiedClock;
+
+	/** The queue of this processor on the shared scheduler */
+	private final FitSchedulerService.Session fitQueue;
+
+	/** The queue building {@link #transientStore}, independent of {@link #fitQueue} */
+	private final FitSchedulerService.Session storeQueue;
+
+	/** The timing of the pipeline stages */
+	private final PerfMonitor perf = new PerfMonitor();
+
+	/** The estimates of the memory taken by large operations */
+	private final MemoryPlanner memoryPlanner = MemoryPlanner.fromSystemProperties();
+
+	/** The store of previous dataset fits, <code>null</code> if disabled */
+	private final ResultCache resultCache;
+
+	/** The hash of {@link #origTrans}, computed on the first dataset fit */
+	private Long dataHash;
+
+	/** True once {@link #destroy()} has been called */
+	private volatile boolean destroyed;
 
 	static {
 		// z + sum[a_i * exp(-t / tau_i)]
@@ -120,14 +370,16 @@ public class FitProcessor {
 		this.DEFAULT_IRF_INFO = new FitParams<>();
 		this.irfInfoParams = DEFAULT_IRF_INFO;
 		this.results = new FitResults();
-		this.executor = Executors.newFixedThreadPool(1);
+		this.fitQueue = getService(FitSchedulerService.class).openSession();
+		this.storeQueue = getService(FitSchedulerService.class).openSession();
+		this.resultCache = ResultCache.fromSystemProperties();
 		// trigger setBinning() at start
 		this.binRadius = -1;
 		init();
 
 		setBinning(0);
 
-		setPreviewPos(0, 0, false);
+		setPreviewPos(0, 0);
 	}
 
 	private void init() {
@@ -160,19 +412,100 @@ public class FitProcessor {
 		params.getReturnCodeMap = true;
 	}
 
-	public void setControllers(AbstractCtrl... controllers) {
-		this.controllers = controllers;
+	/**
+	 * @param listener the listener to notify of changes, e.g. a controller
+	 */
+	public void addListener(FitListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * @param listener the listener to stop notifying
+	 */
+	public void removeListener(FitListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Notifies all listeners of changes. The operations of this processor do so themselves when
+	 * done; this is for changes made to the params directly. Listeners are called on the calling
+	 * thread.
+	 */
+	public void notifyListeners() {
+		synchronized (this) {
+			notifiedClock = clock;
+		}
+		for (FitListener listener : listeners) {
+			listener.requestRefresh();
+		}
+	}
+
+	/**
+	 * Notifies the listeners if anything changed since they were last notified. Called at the end
+	 * of each operation, on the thread that ran it.
+	 */
+	private void fireChanged() {
+		synchronized (this) {
+			if (clock == notifiedClock)
+				return;
+		}
+		notifyListeners();
 	}
 
 	/**
-	 * Refreshes all controllers. Must be called from UI thread.
+	 * Reports the progress of a dataset fit to the listeners.
+	 *
+	 * @param progress the fraction of pixels fitted
 	 */
-	public void refreshControllers() {
-		for (AbstractCtrl controller : controllers) {
-			controller.requestRefresh();
+	private void fireProgress(double progress) {
+		for (FitListener listener : listeners) {
+			listener.fitProgress(progress);
 		}
 	}
 
+	/**
+	 * Records a change so that controllers can tell what to redo on their next refresh.
+	 *
+	 * @param change the kind of change
+	 */
+	private synchronized void markChanged(Change change) {
+		versions[change.ordinal()] = ++clock;
+	}
+
+	/**
+	 * @param change the kind of change
+	 * @return the version stamp of the last change of that kind; stamps increase monotonically
+	 *         across all kinds
+	 */
+	public synchronized long getVersion(Change change) {
+		return versions[change.ordinal()];
+	}
+
+	/**
+	 * @return the timing of the pipeline stages
+	 */
+	public PerfMonitor getPerfMonitor() {
+		return perf;
+	}
+
+	/**
+	 * @return the estimates of the memory taken by large operations
+	 */
+	public MemoryPlanner getMemoryPlanner() {
+		return memoryPlanner;
+	}
+
+	/**
+	 * Plans the next {@link #fitDataset} with the current settings.
+	 *
+	 * @return the plan
+	 */
+	public MemoryPlanner.Plan planDatasetFit() {
+		return memoryPlanner.planFit(origTrans.dimension(axisOrder[0]),
+				origTrans.dimension(axisOrder[1]), origTrans.dimension(params.ltAxis), nParam,
+				binRadius, binnedTrans != null, "Global".equals(fitType));
+	}
+
 	/**
 	 * @return the params
 	 */
@@ -187,6 +520,8 @@ public class FitProcessor {
 		newParams.trans = params.trans;
 		newParams.transMap = params.transMap;
 		this.params = newParams;
+		invalidateGlobalTrans();
+		markChanged(Change.THRESHOLD);
 	}
 
 	/**
@@ -231,6 +566,14 @@ public class FitProcessor {
 	}
 
 	public void updateFit(boolean preview) {
+		try (PerfMonitor.Span span =
+				perf.begin(preview ? Stage.PREVIEW_FIT : Stage.DATASET_FIT)) {
+			fit(preview);
+		}
+		fireChanged();
+	}
+
+	private void fit(boolean preview) {
 		// global estimate of taus
 		float[] globalParams = null;
 		if ("Global".equals(fitType) && preview) {
@@ -271,14 +614,173 @@ public class FitProcessor {
 		FitResults fr;
 		if ("Global".equals(fitType) && preview)
 			fr = (FitResults) ops.run("flim.fitLMA", params);
+		else if (!preview && !"Global".equals(fitType))
+			// a global fit ties all pixels together, the others can be split
+			fr = fitInBlocks();
 		else
 			fr = (FitResults) ops.run("flim.fit" + fitType, params, null, null, FitEventHandler);
 
 		fr.intensityMap = this.results.intensityMap;
 		this.results = fr;
+		markChanged(Change.PIXEL_FIT);
+	}
+
+	/**
+	 * Fits <code>params.transMap</code> in blocks of rows, each a task on the scheduler, so that
+	 * the work of other windows runs between blocks. The results of the blocks are copied into
+	 * whole maps.
+	 *
+	 * @return the results, with the maps set and the fields of single pixels cleared
+	 */
+	private FitResults fitInBlocks() {
+		final RandomAccessibleInterval<FloatType> transMap = Views.zeroMin(params.transMap);
+		final int Y = axisOrder[1];
+		final long width = transMap.dimension(axisOrder[0]);
+		final long height = transMap.dimension(Y);
+		final long blockRows = Math.max(1, FIT_BLOCK_PIXELS / Math.max(width, 1));
+		final int ltAxis = params.ltAxis;
+		final int nParam = this.nParam;
+
+		final long[] dims = Intervals.dimensionsAsLongArray(transMap);
+		dims[ltAxis] = nParam;
+		final Img<FloatType> paramMap = ArrayImgs.floats(dims);
+		dims[ltAxis] = 1;
+		final Img<IntType> retCodeMap = ArrayImgs.ints(dims);
+
+		final String algo = fitType;
+		final FitEventHandler<FloatType> handler = FitEventHandler;
+		final List<Callable<FitResults>> blocks = new ArrayList<>();
+		for (long y0 = 0; y0 < height; y0 += blockRows) {
+			final long[] min = new long[dims.length];
+			final long[] max = Intervals.maxAsLongArray(transMap);
+			min[Y] = y0;
+			max[Y] = Math.min(height, y0 + blockRows) - 1;
+			final FitParams<FloatType> blockParams = params.copy();
+			blockParams.transMap = Views.zeroMin(Views.interval(transMap, min, max));
+			final FitEventHandler<FloatType> blockHandler =
+					handler != null ? offsetRows(handler, (int) y0) : null;
+			blocks.add(() -> {
+				FitResults fr = (FitResults) ops.run("flim.fit" + algo, blockParams, null, null,
+						blockHandler);
+				max[ltAxis] = nParam - 1;
+				copyBlock(fr.paramMap, Views.interval(paramMap, min, max));
+				max[ltAxis] = 0;
+				copyBlock(fr.retCodeMap, Views.interval(retCodeMap, min, max));
+				fr.paramMap = null;
+				fr.retCodeMap = null;
+				return fr;
+			});
+		}
+
+		final List<FitResults> blockResults = invokeAll(Priority.FULL_FIT, blocks);
+		final FitResults fr = blockResults.get(0);
+		fr.paramMap = paramMap;
+		fr.retCodeMap = retCodeMap;
+		// the optional maps, if requested
+		fr.chisqMap = stitchRows(blockResults, b -> b.chisqMap, blockRows, height);
+		fr.fittedMap = stitchRows(blockResults, b -> b.fittedMap, blockRows, height);
+		fr.residualsMap = stitchRows(blockResults, b -> b.residualsMap, blockRows, height);
+		// the fields of single pixels are those of some pixel of the first block only
+		fr.param = null;
+		fr.fitted = null;
+		fr.residuals = null;
+		fr.chisq = Float.NaN;
+		if (handler != null)
+			handler.onComplete(params, fr);
+		return fr;
+	}
+
+	/**
+	 * Stitches a map of the blocks of {@link #fitInBlocks} into a whole map.
+	 *
+	 * @param blocks    the results of the blocks, in order
+	 * @param map       the map of the results of a block
+	 * @param blockRows the number of rows of each block but the last
+	 * @param height    the number of rows of the whole map
+	 * @return the whole map, or <code>null</code> if the blocks have no such map
+	 */
+	private RandomAccessibleInterval<FloatType> stitchRows(final List<FitResults> blocks,
+			final Function<FitResults, RandomAccessibleInterval<FloatType>> map,
+			final long blockRows, final long height) {
+		if (map.apply(blocks.get(0)) == null)
+			return null;
+		final int Y = axisOrder[1];
+		final long[] dims = Intervals.dimensionsAsLongArray(map.apply(blocks.get(0)));
+		dims[Y] = height;
+		final Img<FloatType> whole = ArrayImgs.floats(dims);
+		for (int b = 0; b < blocks.size(); b++) {
+			final RandomAccessibleInterval<FloatType> block =
+					Views.zeroMin(map.apply(blocks.get(b)));
+			final long[] min = new long[dims.length];
+			final long[] max = Intervals.maxAsLongArray(whole);
+			min[Y] = b * blockRows;
+			max[Y] = min[Y] + block.dimension(Y) - 1;
+			copyBlock(block, Views.interval(whole, min, max));
+		}
+		return whole;
+	}
+
+	/**
+	 * Wraps the event handler of a dataset fit for the fit of a block of rows, whose pixel
+	 * positions start at row 0.
+	 *
+	 * @param handler the handler of the dataset fit
+	 * @param y0      the first row of the block
+	 * @return the handler of the block
+	 */
+	private FitEventHandler<FloatType> offsetRows(final FitEventHandler<FloatType> handler,
+			final int y0) {
+		// pos is with or without the lifetime axis, see recordResidualStats()
+		final int Y = axisOrder[1];
+		final int yWithLt = Math.max(axisOrder[0], Y);
+		return new FitEventHandler<FloatType>() {
+			@Override
+			public void onSingleComplete(int[] pos, FitParams<FloatType> params,
+					FitResults results) {
+				int[] datasetPos = pos;
+				if (pos != null && y0 != 0) {
+					datasetPos = pos.clone();
+					if (pos.length > yWithLt)
+						datasetPos[Y] += y0;
+					else if (pos.length == 2)
+						datasetPos[1] += y0;
+				}
+				handler.onSingleComplete(datasetPos, params, results);
+			}
+
+			@Override
+			public void onComplete(FitParams<FloatType> params, FitResults results) {
+				// the dataset fit completes once all blocks have
+			}
+		};
+	}
+
+	/**
+	 * Copies a block of results into the interval of a whole map.
+	 *
+	 * @param <T> the pixel type
+	 * @param src the block
+	 * @param dst the interval, of the dimensions of the block
+	 */
+	private static <T extends Type<T>> void copyBlock(RandomAccessibleInterval<T> src,
+			RandomAccessibleInterval<T> dst) {
+		final Cursor<T> in = Views.flatIterable(src).cursor();
+		final Cursor<T> out = Views.flatIterable(dst).cursor();
+		while (out.hasNext())
+			out.next().set(in.next());
 	}
 
 	public void setBinning(int size) {
+		bin(size);
+		fireChanged();
+	}
+
+	/**
+	 * Bins the intensity and reloads the previewed decay, without notifying the listeners.
+	 *
+	 * @param size the bin radius, -1 to bin the whole image
+	 */
+	private void bin(int size) {
 		allMask = false;
 		int kernelSize = size;
 		if (size == -1) {
@@ -295,19 +797,142 @@ public class FitProcessor {
 					* ((2 * size + 1) * (2 * size + 1)));
 			// invalidate cached
 			binnedTrans = null;
+			intensityIndex = null;
 			binRadius = size;
 			if (size > 0) {
+				MemoryPlanner.Plan plan = memoryPlanner.planBinning(
+						origIntensity.dimension(axisOrder[0]), origIntensity.dimension(axisOrder[1]),
+						kernelSize * 2 + 1, allMask);
+				if (!plan.fits())
+					getService(LogService.class).warn(plan.describe());
 				Img<DoubleType> kernel = FlimOps.makeSquareKernel(kernelSize * 2 + 1);
-				results.intensityMap = (Img<FloatType>) (allMask
-						? ops.filter().convolve(origIntensity, kernel,
-								new OutOfBoundsPeriodicFactory<>())
-						: ops.filter().convolve(origIntensity, kernel));
+				try (PerfMonitor.Span span = perf.begin(Stage.BINNING)) {
+					results.intensityMap = (Img<FloatType>) (allMask
+							? ops.filter().convolve(origIntensity, kernel,
+									new OutOfBoundsPeriodicFactory<>())
+							: ops.filter().convolve(origIntensity, kernel));
+				}
 			} else
 				results.intensityMap = (Img<FloatType>) origIntensity;
+			markChanged(Change.BINNING);
+			markChanged(Change.THRESHOLD);
 		}
 
 		// load trans after binning
-		setPreviewPos(previewX, previewY, false);
+		setPreviewPos(previewX, previewY);
+	}
+
+	/**
+	 * @return the sorted index of the (binned) intensity image, rebuilt only after binning changes
+	 */
+	public IntensityIndex getIntensityIndex() {
+		if (intensityIndex == null)
+			intensityIndex = new IntensityIndex(getPreviewImg("Intensity"));
+		return intensityIndex;
+	}
+
+	/**
+	 * Gets the pixel-major copy of the raw transients. The first call starts building it in the
+	 * background if it fits in the memory budget.
+	 *
+	 * @return the copy, or <code>null</code> if not (yet) built
+	 */
+	public TransientStore getTransientStore() {
+		synchronized (this) {
+			if (!transientStoreRequested) {
+				transientStoreRequested = true;
+				final long w = origTrans.dimension(axisOrder[0]);
+				final long h = origTrans.dimension(axisOrder[1]);
+				final long t = origTrans.dimension(axisOrder[2]);
+				final MemoryPlanner.Plan plan = memoryPlanner.planTransientStore(w, h, t);
+				if (plan.fits() && w * h * t <= TransientStore.MAX_SIZE) {
+					final RandomAccessibleInterval<FloatType> src = origTrans;
+					final int[] order = axisOrder;
+					// on a session of its own, so that e.g. binning does not wait for the copy
+					storeQueue.submit(Priority.EXPORT, () -> {
+						try {
+							TransientStore store = new TransientStore(src, order);
+							// NB: destroyed meanwhile
+							if (origTrans == src)
+								transientStore = store;
+						} catch (RuntimeException e) {
+							getService(LogService.class).error(e);
+						}
+					});
+				} else
+					getService(LogService.class)
+							.info("Hover inspection reads the dataset directly: " + plan.describe());
+			}
+		}
+		return transientStore;
+	}
+
+	/**
+	 * Reads the decay that the preview fit would see at a pixel, i.e. binned with the current
+	 * kernel. Does not move the preview cursor, and does not allocate once the
+	 * {@link #getTransientStore() store} is built.
+	 *
+	 * @param x   the x coordinate of the pixel
+	 * @param y   the y coordinate of the pixel
+	 * @param dst receives the decay, of length at least <code>params.trans.length</code>
+	 */
+	public void readPixelTrans(final int x, final int y, final float[] dst) {
+		final float[] global = allMask ? globalTrans : null;
+		readTrans(global, global == null ? getTransientStore() : null, origTrans, axisOrder,
+				binRadius, x, y, dst);
+	}
+
+	/**
+	 * Reads the decay of a pixel binned with a kernel, see {@link #readPixelTrans}.
+	 *
+	 * @param global    the decay of all pixels if binned together, otherwise <code>null</code>
+	 * @param store     the store of the dataset, or <code>null</code> if not built
+	 * @param trans     the dataset
+	 * @param axisOrder the x, y and lifetime axes of the dataset
+	 * @param binRadius the radius of the kernel
+	 * @param x         the x coordinate of the pixel
+	 * @param y         the y coordinate of the pixel
+	 * @param dst       receives the decay
+	 */
+	private static void readTrans(final float[] global, final TransientStore store,
+			final RandomAccessibleInterval<FloatType> trans, final int[] axisOrder,
+			final int binRadius, final int x, final int y, final float[] dst) {
+		if (global != null)
+			System.arraycopy(global, 0, dst, 0, global.length);
+		else if (store != null)
+			store.fill(x, y, Math.max(binRadius, 0), dst);
+		else
+			fillTrans(trans, dst, x, y, axisOrder, Math.max(binRadius, 0));
+	}
+
+	/**
+	 * Reads the parameters of a pixel from the last dataset fit.
+	 *
+	 * @param x   the x coordinate of the pixel
+	 * @param y   the y coordinate of the pixel
+	 * @param dst receives the parameters
+	 * @return the number of parameters read, 0 if the dataset has not been fitted or
+	 *         <code>(x, y)</code> is outside the parameter map
+	 */
+	public int readPixelParams(final int x, final int y, final float[] dst) {
+		final Img<FloatType> paramMap = dispParams;
+		if (paramMap == null)
+			return 0;
+		// NB: the map may be smaller than the preview (e.g. a session of another size)
+		if (x < 0 || x >= paramMap.dimension(axisOrder[0]) || y < 0
+				|| y >= paramMap.dimension(axisOrder[1]))
+			return 0;
+		if (paramMap != dispParamsRASource) {
+			dispParamsRA = paramMap.randomAccess();
+			dispParamsRASource = paramMap;
+		}
+		final int nRead = (int) Math.min(paramMap.dimension(params.ltAxis), dst.length);
+		dispParamsRA.setPosition(x, axisOrder[0]);
+		dispParamsRA.setPosition(y, axisOrder[1]);
+		dispParamsRA.setPosition(0, params.ltAxis);
+		for (int i = 0; i < nRead; i++, dispParamsRA.fwd(params.ltAxis))
+			dst[i] = dispParamsRA.get().get();
+		return nRead;
 	}
 
 	public String getAlgo(){
@@ -336,26 +961,76 @@ public class FitProcessor {
 		}
 	}
 
+	/**
+	 * Switches to an algorithm and number of components, resizing the initial and free parameter
+	 * arrays. Parameters added are free.
+	 *
+	 * @param algo  the algorithm
+	 * @param nComp the number of exponential components
+	 */
+	public void setAlgo(FitType algo, int nComp) {
+		params.nComp = nComp;
+		setAlgo(algo);
+
+		int fillStart = params.paramFree.length;
+		params.param = Arrays.copyOf(params.param, nParam);
+		params.paramMap = ArrayImgs.floats(params.param,
+				swapInLtAxis(new long[] {1, 1, nParam}, params.ltAxis));
+		params.paramFree = Arrays.copyOf(params.paramFree, nParam);
+		for (int i = fillStart; i < params.paramFree.length; i++)
+			params.paramFree[i] = true;
+	}
+
 	public void setIsPickingIRF(boolean isPickingIRF) {
 		this.isPickingIRF = isPickingIRF;
+		markChanged(Change.IRF);
+	}
+
+	/**
+	 * Sets the intensity threshold below which pixels are not fitted.
+	 *
+	 * @param iThresh the threshold
+	 */
+	public void setIThresh(float iThresh) {
+		if (params.iThresh == iThresh)
+			return;
+		params.iThresh = iThresh;
+		// recalculate global trans for pixels above threshold
+		invalidateGlobalTrans();
+		markChanged(Change.THRESHOLD);
 	}
 
 	public boolean isPickingIRF() {
 		return isPickingIRF;
 	}
 
-	public void setIRF(FitParams<FloatType> newIRF) {
+	/**
+	 * Switches to an IRF dataset. The intensity image and range are estimated on first use and
+	 * kept in the entry, so switching back is instant.
+	 *
+	 * @param newIRF the cached IRF dataset, or <code>null</code> for no IRF
+	 * @throws IOException if the IRF data has been evicted and cannot be reloaded, in which case
+	 *                     the current IRF is kept
+	 */
+	public void setIRF(IRFCache.Entry newIRF) throws IOException {
+		// reload before switching so that a failure leaves the current IRF in place
+		final RandomAccessibleInterval<FloatType> irfTransMap =
+				newIRF != null && newIRF.getIntensity() == null ? newIRF.getTransMap() : null;
+		irfEntry = newIRF;
 		if (newIRF != null) {
-			irfInfoParams = newIRF;
+			irfInfoParams = newIRF.getParams();
 
-			// allocate room for copying IRF into
-			if (irfInfoParams.trans == null)
-				irfInfoParams.trans =
-						new float[(int) irfInfoParams.transMap.dimension(irfInfoParams.ltAxis)];
+			if (newIRF.getIntensity() == null) {
+				// allocate room for copying IRF into
+				if (irfInfoParams.trans == null)
+					irfInfoParams.trans =
+							new float[(int) irfTransMap.dimension(irfInfoParams.ltAxis)];
 
-			ParamEstimator<FloatType> est = new ParamEstimator<>(irfInfoParams);
-			est.estimateStartEnd();
-			irfIntensity = est.getIntensityMap();
+				ParamEstimator<FloatType> est = new ParamEstimator<>(irfInfoParams);
+				est.estimateStartEnd();
+				newIRF.setIntensity(est.getIntensityMap());
+			}
+			irfIntensity = newIRF.getIntensity();
 
 			if (!persistentPreviewOptions.contains("IRF Intensity"))
 				persistentPreviewOptions.add("IRF Intensity");
@@ -368,6 +1043,9 @@ public class FitProcessor {
 			// if is currently in picking mode, exit immediately
 			isPickingIRF = false;
 		}
+		markChanged(Change.IRF);
+		markChanged(Change.PREVIEW_OPTIONS);
+		fireChanged();
 	}
 
 	public void updateIRFRange() {
@@ -375,6 +1053,7 @@ public class FitProcessor {
 		if (irfInfoParams.fitStart == -1 || irfInfoParams.fitEnd == -1)
 			return;
 		params.instr = getNormalizedIRF(irfInfoParams);
+		markChanged(Change.IRF);
 	}
 
 	private float[] getNormalizedIRF(FitParams<FloatType> irf) {
@@ -402,38 +1081,69 @@ public class FitProcessor {
 		return nParam;
 	}
 
-	public void setPreviewPos(final int x, final int y, final boolean irf) {
+	/**
+	 * Moves the preview cursor, or picks the IRF decay at a pixel of the current IRF.
+	 *
+	 * @param x   the x coordinate of the pixel
+	 * @param y   the y coordinate of the pixel
+	 * @param irf true to pick the IRF
+	 * @throws IOException if the IRF data has been evicted and cannot be reloaded
+	 */
+	public void setPreviewPos(final int x, final int y, final boolean irf) throws IOException {
 		if (irf) {
-			fillTrans(irfInfoParams.transMap, irfInfoParams.trans, x, y, axisOrder, 0);
+			fillTrans(irfEntry.getTransMap(), irfInfoParams.trans, x, y, axisOrder, 0);
 			updateIRFRange();
-		} else {
-			previewX = x;
-			previewY = y;
-			if (allMask) {
-				updateGlobalTrans();
-				for (int i = 0; i < params.trans.length; i++)
-					params.trans[i] = globalTrans[i];
-			} else
-				fillTrans(origTrans, params.trans, x, y, axisOrder, binRadius);
-		}
+			markChanged(Change.IRF);
+		} else
+			setPreviewPos(x, y);
+		fireChanged();
 	}
 
-	private static void fillTrans(RandomAccessibleInterval<FloatType> transMap, float[] transArr,
+	private void setPreviewPos(final int x, final int y) {
+		previewX = x;
+		previewY = y;
+		if (allMask) {
+			updateGlobalTrans();
+			for (int i = 0; i < params.trans.length; i++)
+				params.trans[i] = globalTrans[i];
+		} else
+			fillTrans(origTrans, params.trans, x, y, axisOrder, binRadius);
+		markChanged(Change.CURSOR);
+	}
+
+	static void fillTrans(RandomAccessibleInterval<FloatType> transMap, float[] transArr,
 			int x, int y, final int[] axisOrder, int binRadius) {
+		sumTrans(transMap, transArr, x - binRadius, y - binRadius, x + binRadius, y + binRadius,
+				axisOrder);
+	}
+
+	/**
+	 * Sums the decays in a rectangle of a transient map. Pixels outside of the map count as zero.
+	 *
+	 * @param transMap  the transient map
+	 * @param transArr  receives the summed decay
+	 * @param minX      the first column of the rectangle
+	 * @param minY      the first row of the rectangle
+	 * @param maxX      the last column of the rectangle
+	 * @param maxY      the last row of the rectangle
+	 * @param axisOrder the x, y and lifetime axes of the map
+	 */
+	static void sumTrans(RandomAccessibleInterval<FloatType> transMap, float[] transArr,
+			int minX, int minY, int maxX, int maxY, final int[] axisOrder) {
 
 		final RandomAccess<FloatType> ra = Views.extendZero(transMap).randomAccess();
 		final int[] coord = new int[3];
 		final int X = axisOrder[0];
 		final int Y = axisOrder[1];
-		coord[X] = x - binRadius;
-		coord[Y] = y - binRadius;
+		coord[X] = minX;
+		coord[Y] = minY;
 		ra.setPosition(coord);
 		for (int t = 0; t < transArr.length; t++)
 			transArr[t] = 0;
-		for (int i = 0; i < 2 * binRadius + 1; i++, ra.fwd(X)) {
+		for (int i = minX; i <= maxX; i++, ra.fwd(X)) {
 			// reset y
 			ra.setPosition(coord[Y], Y);
-			for (int j = 0; j < 2 * binRadius + 1; j++, ra.fwd(Y)) {
+			for (int j = minY; j <= maxY; j++, ra.fwd(Y)) {
 				// reset t
 				ra.setPosition(0, axisOrder[2]);
 				for (int t = 0; t < transArr.length; t++, ra.fwd(axisOrder[2]))
@@ -443,44 +1153,267 @@ public class FitProcessor {
 		}
 	}
 
+	/**
+	 * Pins a pixel for comparison, or unpins it if already pinned. At most {@link #MAX_PINS}
+	 * pixels or regions can be pinned, beyond which the earliest one is dropped.
+	 *
+	 * @param x the x coordinate of the pixel
+	 * @param y the y coordinate of the pixel
+	 */
+	public void togglePin(final int x, final int y) {
+		togglePin(x, y, x, y);
+	}
+
+	/**
+	 * Pins a rectangular region for comparison, or unpins it if already pinned. The region is
+	 * fitted to the mean of its decays, which are not binned. See {@link #togglePin(int, int)}.
+	 *
+	 * @param x0 the x coordinate of a corner of the region
+	 * @param y0 the y coordinate of a corner of the region
+	 * @param x1 the x coordinate of the opposite corner
+	 * @param y1 the y coordinate of the opposite corner
+	 */
+	public void togglePin(final int x0, final int y0, final int x1, final int y1) {
+		final int[] region = {Math.min(x0, x1), Math.min(y0, y1), Math.max(x0, x1),
+				Math.max(y0, y1)};
+		synchronized (pins) {
+			if (!pins.removeIf(pin -> Arrays.equals(pin, region))) {
+				if (pins.size() == MAX_PINS)
+					pins.remove(0);
+				pins.add(region);
+			}
+		}
+		markChanged(Change.PINS);
+		fireChanged();
+	}
+
+	/**
+	 * Unpins all pixels and regions.
+	 */
+	public void clearPins() {
+		synchronized (pins) {
+			pins.clear();
+		}
+		markChanged(Change.PINS);
+		fireChanged();
+	}
+
+	/**
+	 * @return the fits of the pinned pixels and regions as of the last {@link #fitPins}
+	 */
+	public List<PinnedFit> getPinnedFits() {
+		return pinnedFits;
+	}
+
+	/**
+	 * Copies the pins and everything they are fitted and binned with, so that the pins can be
+	 * fitted while the settings change. Call on the thread that fits the previewed pixel.
+	 *
+	 * @return the settings for {@link #fitPins}
+	 */
+	public PinSettings copyPinSettings() {
+		FitParams<FloatType> settings = params.copy();
+		settings.trans = Arrays.copyOf(params.trans, params.trans.length);
+		settings.param = Arrays.copyOf(params.param, params.param.length);
+		settings.paramFree = Arrays.copyOf(params.paramFree, params.paramFree.length);
+		if (params.instr != null)
+			settings.instr = Arrays.copyOf(params.instr, params.instr.length);
+		final int[][] pinned;
+		synchronized (pins) {
+			pinned = pins.toArray(new int[0][]);
+		}
+		final float[] global = allMask && globalTrans != null
+				? Arrays.copyOf(globalTrans, globalTrans.length)
+				: null;
+		return new PinSettings(settings, fitType, pinned, binRadius, global, getTransientStore(),
+				origTrans, axisOrder.clone());
+	}
+
+	/**
+	 * Fits all pinned pixels and regions. The decays are stacked into a <code>nPins × 1</code> map
+	 * and fitted in one call, so that the fit op can spread them over its workers. Pins are fitted
+	 * regardless of the intensity threshold. Does nothing once destroyed.
+	 *
+	 * @param pinSettings the settings from {@link #copyPinSettings}
+	 */
+	public void fitPins(final PinSettings pinSettings) {
+		if (destroyed)
+			return;
+		final FitParams<FloatType> settings = pinSettings.params;
+		final String algo = pinSettings.algo;
+		final int[] axisOrder = pinSettings.axisOrder;
+		final int[][] pinned = pinSettings.pins;
+		if (pinned.length == 0) {
+			pinnedFits = List.of();
+			return;
+		}
+
+		final int ltAxis = settings.ltAxis;
+		final int nTime = settings.trans.length;
+		final Img<FloatType> batchTrans =
+				ArrayImgs.floats(swapInLtAxis(new long[] {pinned.length, 1, nTime}, ltAxis));
+		final RandomAccess<FloatType> transRA = batchTrans.randomAccess();
+		final float[][] pinTrans = new float[pinned.length][nTime];
+		for (int p = 0; p < pinned.length; p++) {
+			readPin(pinSettings, pinned[p], pinTrans[p]);
+			transRA.setPosition(p, axisOrder[0]);
+			transRA.setPosition(0, axisOrder[1]);
+			transRA.setPosition(0, ltAxis);
+			for (int t = 0; t < nTime; t++, transRA.fwd(ltAxis))
+				transRA.get().set(pinTrans[p][t]);
+		}
+
+		FitParams<FloatType> batchParams = settings.copy();
+		batchParams.transMap = batchTrans;
+		// estimate free params of each pixel like the preview does
+		batchParams.paramMap = null;
+		batchParams.param = Arrays.copyOf(settings.param, settings.param.length);
+		for (int i = 0; i < batchParams.param.length; i++)
+			if (settings.paramFree[i])
+				batchParams.param[i] = Float.POSITIVE_INFINITY;
+		batchParams.iThresh = 0;
+		batchParams.getFittedMap = true;
+		// in global mode, the preview fit is an LMA fit with taus fixed to the global estimates
+		FitResults fr = (FitResults) ops.run("flim.fit" + ("Global".equals(algo) ? "LMA" : algo),
+				batchParams);
+
+		final List<PinnedFit> fits = new ArrayList<>(pinned.length);
+		final RandomAccess<FloatType> fittedRA = fr.fittedMap.randomAccess();
+		final int nFitted = (int) fr.fittedMap.dimension(ltAxis);
+		for (int p = 0; p < pinned.length; p++) {
+			final float[] fitted = new float[nFitted];
+			fittedRA.setPosition(p, axisOrder[0]);
+			fittedRA.setPosition(0, axisOrder[1]);
+			fittedRA.setPosition(0, ltAxis);
+			for (int t = 0; t < nFitted; t++, fittedRA.fwd(ltAxis))
+				fitted[t] = fittedRA.get().get();
+			fits.add(new PinnedFit(pinned[p], pinTrans[p], fitted));
+		}
+		pinnedFits = fits;
+	}
+
+	/**
+	 * Reads the decay of a pin: binned like the preview for a pixel, or the mean of the decays of
+	 * a region.
+	 *
+	 * @param pinSettings the settings from {@link #copyPinSettings}
+	 * @param pin         the pin
+	 * @param dst         receives the decay
+	 */
+	private static void readPin(final PinSettings pinSettings, final int[] pin, final float[] dst) {
+		final boolean pixel = pin[0] == pin[2] && pin[1] == pin[3];
+		if (pixel || pinSettings.global != null) {
+			readTrans(pinSettings.global, pinSettings.store, pinSettings.trans,
+					pinSettings.axisOrder, pinSettings.binRadius, pin[0], pin[1], dst);
+			return;
+		}
+		if (pinSettings.store != null)
+			pinSettings.store.sum(pin[0], pin[1], pin[2], pin[3], dst);
+		else
+			sumTrans(pinSettings.trans, dst, pin[0], pin[1], pin[2], pin[3],
+					pinSettings.axisOrder);
+		final float area = (float) (pin[2] - pin[0] + 1) * (pin[3] - pin[1] + 1);
+		for (int t = 0; t < dst.length; t++)
+			dst[t] /= area;
+	}
+
 	public void fitDataset() {
 		fitProgress = 0;
+		fireProgress(0);
+
+		// tirgger RLD for free parameters and global taus
+		for (int i = 0; i < params.param.length; i++) {
+			if (params.paramFree[i] || ("Global".equals(fitType) && (i - 1) % 2 == 1)) {
+				params.paramFree[i] = true;
+				params.param[i] = Float.POSITIVE_INFINITY;
+			}
+		}
+
+		// an identical request may have been fitted before
+		String cacheKey = null;
+		JsonObject cacheConfig = null;
+		if (resultCache != null) {
+			if (dataHash == null)
+				dataHash = ResultCache.hash(origTrans);
+			cacheConfig = getConfigJSON();
+			// per-pixel buffers are not part of the request, the IRF is only needed by value
+			for (String field : new String[] {"trans", "transMap", "paramMap", "instr"})
+				cacheConfig.remove(field);
+			cacheConfig.addProperty("irfHash", Long.toHexString(ResultCache.hash(params.instr)));
+			cacheKey = ResultCache.key(dataHash, cacheConfig);
+			try {
+				SessionFile cached = resultCache.get(cacheKey, cacheConfig);
+				if (cached != null && cached.hasBlock("params") && cached.hasBlock("status")) {
+					setResults(readResults(cached, progress -> {}));
+					fitProgress = 1;
+					fireProgress(1);
+					fireChanged();
+					return;
+				}
+			} catch (IOException e) {
+				getService(LogService.class).warn("Reading cached fit results failed", e);
+			}
+		}
 
 		// use cached trans if available
 		if (binnedTrans == null) {
-			binnedTrans = binRadius > 0
-					? ops.filter().convolve(origTrans, FlimOps.makeSquareKernel(binRadius * 2 + 1))
-					: origTrans;
+			MemoryPlanner.Plan plan = planDatasetFit();
+			if (!plan.fits())
+				getService(LogService.class).warn(plan.describe());
+			if (plan.getStrategy() != MemoryPlanner.Strategy.IN_MEMORY)
+				binnedTrans = binInBlocks(plan);
+			else {
+				try (PerfMonitor.Span span = perf.begin(Stage.BINNING)) {
+					binnedTrans = binRadius > 0
+							? ops.filter().convolve(origTrans,
+									FlimOps.makeSquareKernel(binRadius * 2 + 1))
+							: origTrans;
+				}
 
-			// convolve may spit out small negative values that causes problem in e.g. log() in
-			// GCI_marquardt_compute_fn()
-			for (FloatType f : Views.iterable(binnedTrans))
-				f.set(Math.max(f.get(), 0));
+				// convolve may spit out small negative values that causes problem in e.g. log()
+				// in GCI_marquardt_compute_fn()
+				for (FloatType f : Views.iterable(binnedTrans))
+					f.set(Math.max(f.get(), 0));
+			}
 		}
 		// temporarily save trans and param maps for preview
 		RandomAccessibleInterval<FloatType> previewTransMap, previewParamMap;
 		previewTransMap = params.transMap;
 		params.transMap = binnedTrans;
 		previewParamMap = params.paramMap;
-		// tirgger RLD for free parameters and global taus
 		params.paramMap = null;
-		for (int i = 0; i < params.param.length; i++) {
-			if (params.paramFree[i] || ("Global".equals(fitType) && (i - 1) % 2 == 1)) {
-				params.paramFree[i] = true;
-				params.param[i] = Float.POSITIVE_INFINITY;
-			}
-		}
 
 		long nTotalFits = params.transMap.dimension(axisOrder[0]) //
 				* params.transMap.dimension(axisOrder[1]);
 		long[] completed = new long[1];
+		// the last whole percentage reported to the listeners
+		int[] reported = new int[1];
+		resMapWidth = (int) params.transMap.dimension(axisOrder[0]);
+		resMapHeight = (int) params.transMap.dimension(axisOrder[1]);
+		final float[] chiSqR = new float[resMapWidth * resMapHeight];
+		final float[] runsZ = new float[chiSqR.length];
+		final float[] acf = new float[chiSqR.length];
+		// pixels that are not fitted (e.g. below threshold) stay NaN
+		Arrays.fill(chiSqR, Float.NaN);
+		Arrays.fill(runsZ, Float.NaN);
+		Arrays.fill(acf, Float.NaN);
 		FitEventHandler = new FitEventHandler<FloatType>() {
 			@Override
 			public void onSingleComplete(int[] pos, FitParams<FloatType> params, FitResults results) {
+				// each pixel is written once by whichever worker fits it
+				recordResidualStats(pos, params, results, chiSqR, runsZ, acf);
+				final double progress;
 				synchronized (this) {
 					completed[0]++;
 					fitProgress = (double) completed[0] / nTotalFits;
+					// report at most once per percent
+					final int percent = (int) (fitProgress * 100);
+					if (percent == reported[0])
+						return;
+					reported[0] = percent;
+					progress = fitProgress;
 				}
+				fireProgress(progress);
 			}
 
 			@Override
@@ -491,7 +1424,10 @@ public class FitProcessor {
 			}
 		};
 
-		updateFit(false);
+		// the listeners are notified once the maps below are set
+		try (PerfMonitor.Span span = perf.begin(Stage.DATASET_FIT)) {
+			fit(false);
+		}
 
 		FitEventHandler = null;
 
@@ -500,6 +1436,286 @@ public class FitProcessor {
 
 		dispParams = results.paramMap;
 		fitStatus = ops.convert().float32(results.retCodeMap);
+		chiSqRMap = chiSqR;
+		runsZMap = runsZ;
+		acfMap = acf;
+		markChanged(Change.DATASET_FIT);
+
+		fireProgress(1);
+		fireChanged();
+
+		if (cacheKey != null) {
+			try {
+				resultCache.put(cacheKey, cacheConfig, getResultBlocks());
+			} catch (IOException e) {
+				getService(LogService.class).warn("Caching fit results failed", e);
+			}
+		}
+	}
+
+	/**
+	 * Wraps the binned transients in an image whose blocks of rows are convolved on first access.
+	 * Each block is convolved from the rows it covers plus a halo of {@link #binRadius} (zero
+	 * outside the dataset, as when convolving the whole dataset), so that blocks match the
+	 * in-memory result.
+	 *
+	 * @param plan a tiled or disk-backed plan
+	 * @return the binned transients
+	 */
+	private RandomAccessibleInterval<FloatType> binInBlocks(MemoryPlanner.Plan plan) {
+		final long[] dims = Intervals.dimensionsAsLongArray(origTrans);
+		final int[] cellDims = new int[dims.length];
+		for (int d = 0; d < dims.length; d++)
+			cellDims[d] = d == axisOrder[1] ? plan.getBlockRows() : (int) dims[d];
+		final Img<DoubleType> kernel = FlimOps.makeSquareKernel(binRadius * 2 + 1);
+		final RandomAccessibleInterval<FloatType> src = origTrans;
+		final int r = binRadius;
+		final CellLoader<FloatType> loader = cell -> {
+			try (PerfMonitor.Span span = perf.begin(Stage.BINNING)) {
+				// NB: a halo along every axis is harmless and does not depend on the kernel layout
+				final Interval halo = Intervals.expand(cell, r);
+				final RandomAccessibleInterval<FloatType> binned = ops.filter().convolve(
+						Views.zeroMin(Views.interval(Views.extendZero(src), halo)), kernel);
+				final Cursor<FloatType> in = Views.flatIterable(Views.interval(
+						Views.translate(binned, Intervals.minAsLongArray(halo)), cell)).cursor();
+				final Cursor<FloatType> out = Views.flatIterable(cell).cursor();
+				while (out.hasNext())
+					out.next().set(Math.max(in.next().get(), 0));
+			}
+		};
+		if (plan.getStrategy() == MemoryPlanner.Strategy.DISK_BACKED)
+			// NB: mark every block dirty so that evicted blocks are written instead of recomputed
+			return new DiskCachedCellImgFactory<>(new FloatType(),
+					DiskCachedCellImgOptions.options().cellDimensions(cellDims)
+							.cacheType(CacheType.BOUNDED).maxCacheSize(plan.getCachedBlocks())
+							.dirtyAccesses(false)).create(dims, loader);
+		return new ReadOnlyCachedCellImgFactory(ReadOnlyCachedCellImgOptions.options()
+				.cellDimensions(cellDims).cacheType(CacheType.BOUNDED)
+				.maxCacheSize(plan.getCachedBlocks())).create(dims, new FloatType(), loader);
+	}
+
+	/**
+	 * @return the fit type, the bin radius and the params, in the layout of the config file saved
+	 *         by {@link flimlib.flimj.ui.controller.ConfigCtrl}
+	 */
+	public JsonObject getConfigJSON() {
+		JsonObject config = new JsonObject();
+		config.addProperty("fitType", fitType);
+		config.addProperty("binRadius", binRadius);
+		for (Map.Entry<String, JsonElement> field : JsonParser.parseString(params.toJSON())
+				.getAsJsonObject().entrySet())
+			config.add(field.getKey(), field.getValue());
+		return config;
+	}
+
+	/**
+	 * Applies a configuration in the layout of {@link #getConfigJSON}. A missing fit type defaults
+	 * to LMA and a missing bin radius to 0.
+	 *
+	 * @param json the configuration
+	 */
+	public void applyConfigJSON(String json) {
+		JsonObject config = JsonParser.parseString(json).getAsJsonObject();
+		JsonElement fitTypeField = config.get("fitType");
+		JsonElement binRadiusField = config.get("binRadius");
+		// bin first, the threshold in the file is for the binned intensity
+		bin(binRadiusField != null ? binRadiusField.getAsInt() : 0);
+		updateParamsFromFile(FitParams.fromJSON(json));
+		// after the params so that nParam follows nComp from the file
+		setAlgo(fitTypeField != null ? FitType.valueOf(fitTypeField.getAsString()) : FitType.LMA);
+		fireChanged();
+	}
+
+	/**
+	 * @return the dataset fit result maps by name
+	 */
+	private Map<String, RandomAccessibleInterval<FloatType>> getResultBlocks() {
+		Map<String, RandomAccessibleInterval<FloatType>> blocks = new LinkedHashMap<>();
+		blocks.put("params", dispParams);
+		blocks.put("status", fitStatus);
+		if (chiSqRMap != null) {
+			blocks.put("chisq_r", ArrayImgs.floats(chiSqRMap, resMapWidth, resMapHeight));
+			blocks.put("runs_z", ArrayImgs.floats(runsZMap, resMapWidth, resMapHeight));
+			blocks.put("acf_1", ArrayImgs.floats(acfMap, resMapWidth, resMapHeight));
+		}
+		return blocks;
+	}
+
+	/**
+	 * Reads the dataset fit result maps stored by {@link #getResultBlocks} into memory.
+	 *
+	 * @param stored   the stored maps
+	 * @param progress receives the fraction of maps read
+	 * @return the maps, for {@link #setResults}
+	 * @throws IOException if reading fails
+	 */
+	private static StoredResults readResults(SessionFile stored, DoubleConsumer progress)
+			throws IOException {
+		final int nBlocks = stored.hasBlock("chisq_r") ? 5 : 2;
+		Img<FloatType> paramsBlock = stored.getBlock("params");
+		progress.accept(1.0 / nBlocks);
+		Img<FloatType> statusBlock = stored.getBlock("status");
+		progress.accept(2.0 / nBlocks);
+		if (nBlocks == 2)
+			return new StoredResults(paramsBlock, statusBlock, null, null, null, 0, 0);
+
+		Img<FloatType> chiSqR = stored.getBlock("chisq_r");
+		progress.accept(3.0 / nBlocks);
+		float[] runsZ = toArray(stored.getBlock("runs_z"));
+		progress.accept(4.0 / nBlocks);
+		float[] acf = toArray(stored.getBlock("acf_1"));
+		progress.accept(1);
+		return new StoredResults(paramsBlock, statusBlock, toArray(chiSqR), runsZ, acf,
+				(int) chiSqR.dimension(0), (int) chiSqR.dimension(1));
+	}
+
+	/**
+	 * Sets the dataset fit result maps read by {@link #readResults}.
+	 *
+	 * @param stored the maps
+	 */
+	private void setResults(StoredResults stored) {
+		dispParams = stored.params;
+		fitStatus = stored.status;
+		chiSqRMap = stored.chiSqR;
+		runsZMap = stored.runsZ;
+		acfMap = stored.acf;
+		if (chiSqRMap != null) {
+			resMapWidth = stored.width;
+			resMapHeight = stored.height;
+		}
+		markChanged(Change.DATASET_FIT);
+	}
+
+	/**
+	 * Saves the dataset fit results with the settings that produced them, so that they can be
+	 * restored by {@link #readSession} without refitting. May take long, so is meant to run as a
+	 * task of this processor.
+	 *
+	 * @param path     the destination
+	 * @param progress receives the fraction written
+	 * @throws IOException if writing fails or the dataset has not been fitted
+	 */
+	public void saveSession(Path path, DoubleConsumer progress) throws IOException {
+		if (dispParams == null)
+			throw new IOException("The dataset has not been fitted.");
+
+		JsonObject meta = new JsonObject();
+		meta.add("params", JsonParser.parseString(params.toJSON()));
+		meta.addProperty("fitType", fitType);
+		meta.addProperty("binRadius", binRadius);
+		JsonArray options = new JsonArray();
+		for (String option : contextualPreviewOptions)
+			options.add(option);
+		meta.add("previewOptions", options);
+
+		Map<String, RandomAccessibleInterval<FloatType>> blocks = new LinkedHashMap<>();
+		blocks.put("intensity", results.intensityMap);
+		blocks.putAll(getResultBlocks());
+		SessionFile.write(path, meta, blocks, progress);
+	}
+
+	/**
+	 * Reads the settings and dataset fit results saved by {@link #saveSession} into memory, so
+	 * the file may be overwritten afterwards. Nothing changes until the session is restored by
+	 * {@link #restoreSession}. May take long, so is meant to run as a task of this processor.
+	 *
+	 * @param path     the session file
+	 * @param progress receives the fraction read
+	 * @return the session
+	 * @throws IOException if reading fails or the session is of a dataset of a different size
+	 */
+	public StoredSession readSession(Path path, DoubleConsumer progress) throws IOException {
+		SessionFile session = SessionFile.open(path);
+		Img<FloatType> intensity = session.getBlock("intensity");
+		if (intensity == null || !session.hasBlock("params")
+				|| !Arrays.equals(Intervals.dimensionsAsLongArray(intensity),
+						Intervals.dimensionsAsLongArray(origIntensity)))
+			throw new IOException("The session does not match the dataset.");
+		// the intensity counts as much as the result maps
+		progress.accept(0.5);
+		StoredResults results = readResults(session, p -> progress.accept(0.5 + 0.5 * p));
+		return new StoredSession(session.getMeta(), intensity, results);
+	}
+
+	/**
+	 * Restores a session read by {@link #readSession}. Call on the thread that changes the
+	 * params.
+	 *
+	 * @param session the session
+	 */
+	public void restoreSession(StoredSession session) {
+		JsonObject meta = session.meta;
+		FitParams<FloatType> newParams = FitParams.fromJSON(meta.get("params").toString());
+		updateParamsFromFile(newParams);
+		// after the params so that nParam follows nComp from the file
+		setAlgo(FitType.valueOf(meta.get("fitType").getAsString()));
+
+		// like setBinning(), with the binned intensity from the session
+		binRadius = meta.get("binRadius").getAsInt();
+		allMask = binRadius == -1;
+		binnedTrans = null;
+		intensityIndex = null;
+		results.intensityMap = session.intensity;
+		markChanged(Change.BINNING);
+		markChanged(Change.THRESHOLD);
+		setPreviewPos(previewX, previewY);
+
+		setResults(session.results);
+
+		List<String> options = new ArrayList<>();
+		for (JsonElement option : meta.getAsJsonArray("previewOptions"))
+			options.add(option.getAsString());
+		setPreviewOptions(options);
+		fireChanged();
+	}
+
+	/**
+	 * @param img an image
+	 * @return the values of the image in flat order
+	 */
+	private static float[] toArray(RandomAccessibleInterval<FloatType> img) {
+		float[] arr = new float[(int) Intervals.numElements(img)];
+		Cursor<FloatType> csr = Views.flatIterable(img).cursor();
+		for (int i = 0; i < arr.length; i++)
+			arr[i] = csr.next().get();
+		return arr;
+	}
+
+	/**
+	 * Computes the residual quality of a single pixel fit into the maps.
+	 *
+	 * @param pos     the position of the pixel, with or without the lifetime axis
+	 * @param params  the params of the pixel fit
+	 * @param results the results of the pixel fit
+	 * @param chiSqR  the reduced χ² map
+	 * @param runsZ   the runs test z map
+	 * @param acf     the lag-1 autocorrelation map
+	 */
+	private void recordResidualStats(int[] pos, FitParams<FloatType> params, FitResults results,
+			float[] chiSqR, float[] runsZ, float[] acf) {
+		if (pos == null || results.residuals == null || results.fitted == null)
+			return;
+		int x, y;
+		if (pos.length > Math.max(axisOrder[0], axisOrder[1])) {
+			x = pos[axisOrder[0]];
+			y = pos[axisOrder[1]];
+		} else if (pos.length == 2) {
+			x = pos[0];
+			y = pos[1];
+		} else
+			return;
+		if (x < 0 || x >= resMapWidth || y < 0 || y >= resMapHeight)
+			return;
+
+		int beg = ResidualDiagnostics.getFitOffset(params);
+		int end = Math.min(beg + params.fitEnd - params.fitStart,
+				Math.min(results.residuals.length, results.fitted.length));
+		int i = x + y * resMapWidth;
+		chiSqR[i] = ResidualDiagnostics.reducedChiSq(results.residuals, results.fitted, beg, end,
+				nParam);
+		runsZ[i] = ResidualDiagnostics.runsZ(results.residuals, beg, end);
+		acf[i] = ResidualDiagnostics.autocorrelation(results.residuals, results.fitted, beg, end, 1);
 	}
 
 	/**
@@ -510,6 +1726,19 @@ public class FitProcessor {
 		return fitProgress;
 	}
 
+	/**
+	 * @return {@link #RESIDUAL_OPTIONS} if the last dataset fit computed the residual quality of at
+	 *         least one pixel, otherwise none, e.g. if the fit does not report per-pixel residuals
+	 */
+	public List<String> getResidualOptions() {
+		final float[] chiSqR = chiSqRMap;
+		if (chiSqR != null)
+			for (float value : chiSqR)
+				if (!Float.isNaN(value))
+					return RESIDUAL_OPTIONS;
+		return List.of();
+	}
+
 	/**
 	 * @return the previewOptions
 	 */
@@ -524,6 +1753,7 @@ public class FitProcessor {
 	public void setPreviewOptions(List<String> options) {
 		// remove non-persistent options
 		contextualPreviewOptions = options;
+		markChanged(Change.PREVIEW_OPTIONS);
 	}
 
 	@SuppressWarnings("unchecked")
@@ -540,6 +1770,17 @@ public class FitProcessor {
 				return fitStatus != null
 						? Views.hyperSlice(fitStatus, params.ltAxis, 0)
 						: null;
+
+			case "χ²ᵣ":
+				return chiSqRMap != null ? ArrayImgs.floats(chiSqRMap, resMapWidth, resMapHeight)
+						: null;
+
+			case "Runs Z":
+				return runsZMap != null ? ArrayImgs.floats(runsZMap, resMapWidth, resMapHeight)
+						: null;
+
+			case "Residual ACF₁":
+				return acfMap != null ? ArrayImgs.floats(acfMap, resMapWidth, resMapHeight) : null;
 		}
 
 		int optionIdx = -1;
@@ -556,10 +1797,13 @@ public class FitProcessor {
 						case "A₃ %": optionIdx = 2; break;
 						case "Aᵢ %": optionIdx = 3; break;
 					}
-					return (Img<FloatType>) ops.run("flim.calcAPercent", rslt, optionIdx);
+					try (PerfMonitor.Span span = perf.begin(Stage.DERIVED_MAP)) {
+						return (Img<FloatType>) ops.run("flim.calcAPercent", rslt, optionIdx);
+					}
 				} else if (option.equals("τₘ")) {
-					Img<FloatType> tauM = (Img<FloatType>) ops.run("flim.calcTauMean", rslt);
-					return tauM;
+					try (PerfMonitor.Span span = perf.begin(Stage.DERIVED_MAP)) {
+						return (Img<FloatType>) ops.run("flim.calcTauMean", rslt);
+					}
 				} else {
 					switch (option) {
 						case "z": optionIdx = 0; break;
@@ -595,23 +1839,32 @@ public class FitProcessor {
 	/**
 	 * Recalculates <code>globalTrans</code> if for the first time or when it is invalid.
 	 */
-	private void updateGlobalTrans() {
+	void updateGlobalTrans() {
 		if (globalTrans == null) {
-			globalTrans = new float[params.trans.length];
+			try (PerfMonitor.Span span = perf.begin(Stage.GLOBAL_TRANS)) {
+				sumGlobalTrans();
+			}
+		}
+	}
 
-			// sum up trans values whose intensity is above threshold
-			Cursor<FloatType> intensityCsr = Views.iterable(origIntensity).localizingCursor();
-			RandomAccess<FloatType> transRA = origTrans.randomAccess();
-			while (intensityCsr.hasNext()) {
-				if (intensityCsr.next().get() < params.iThresh)
-					continue;
+	/**
+	 * Sums up the transients of pixels above threshold into <code>globalTrans</code>.
+	 */
+	private void sumGlobalTrans() {
+		globalTrans = new float[params.trans.length];
 
-				// origIntensity is 3D
-				transRA.setPosition(intensityCsr);
+		// sum up trans values whose intensity is above threshold
+		Cursor<FloatType> intensityCsr = Views.iterable(origIntensity).localizingCursor();
+		RandomAccess<FloatType> transRA = origTrans.randomAccess();
+		while (intensityCsr.hasNext()) {
+			if (intensityCsr.next().get() < params.iThresh)
+				continue;
 
-				for (int i = 0; i < globalTrans.length; i++, transRA.fwd(params.ltAxis))
-					globalTrans[i] += transRA.get().get();
-			}
+			// origIntensity is 3D
+			transRA.setPosition(intensityCsr);
+
+			for (int i = 0; i < globalTrans.length; i++, transRA.fwd(params.ltAxis))
+				globalTrans[i] += transRA.get().get();
 		}
 	}
 
@@ -647,18 +1900,101 @@ public class FitProcessor {
 		return coordinates;
 	}
 
-	public void submitRunnable(Runnable runnable) {
+	/**
+	 * Runs a task on the scheduler and waits for it. The tasks of this processor run one at a time.
+	 *
+	 * @param priority the priority class
+	 * @param runnable the task
+	 */
+	public void submitRunnable(Priority priority, Runnable runnable) {
 		try {
-			executor.submit(runnable).get();
+			fitQueue.submit(priority, runnable).get();
 		} catch (Exception e) {
 			throw new RuntimeException(e);
 		}
 	}
 
+	/**
+	 * Runs a task on the scheduler without waiting for it, e.g. to post-process the results of a
+	 * fit after {@link #submitRunnable} returns. Failures are logged.
+	 *
+	 * @param priority the priority class
+	 * @param runnable the task
+	 */
+	public void submitBackground(Priority priority, Runnable runnable) {
+		fitQueue.submit(priority, () -> {
+			try {
+				runnable.run();
+			} catch (RuntimeException e) {
+				getService(LogService.class).error(e);
+			}
+		});
+	}
+
+	/**
+	 * @return the most tasks of one {@link #invokeAll} that run at once: one per thread of the
+	 *         scheduler, plus the calling thread
+	 */
+	public int getConcurrency() {
+		return getService(FitSchedulerService.class).getParallelism() + 1;
+	}
+
+	/**
+	 * Runs tasks in parallel on the scheduler and waits for them, e.g. to split a task of this
+	 * processor into parts. The parts take turns with the work of other windows, see
+	 * {@link FitSchedulerService.Session#invokeAll}.
+	 *
+	 * @param <T>      the result type
+	 * @param priority the priority class
+	 * @param tasks    the tasks
+	 * @return the results of the tasks, in order
+	 * @throws CancellationException if interrupted or destroyed meanwhile
+	 */
+	public <T> List<T> invokeAll(Priority priority, List<? extends Callable<T>> tasks) {
+		try {
+			final List<T> results = new ArrayList<>(tasks.size());
+			for (Future<T> future : fitQueue.invokeAll(priority, tasks))
+				results.add(future.get());
+			return results;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CancellationException("Interrupted");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	/**
+	 * Releases the listeners and every buffer held for the dataset, so that they are reclaimed even
+	 * if something (e.g. a leftover UI callback) still refers to this processor. The processor must
+	 * not be used afterwards.
+	 */
 	public void destroy() {
-		for (AbstractCtrl controller : controllers) {
-			controller.destroy();
+		destroyed = true;
+		for (FitListener listener : listeners) {
+			listener.destroy();
+		}
+		listeners.clear();
+		fitQueue.close();
+		storeQueue.close();
+
+		params = irfInfoParams = null;
+		irfEntry = null;
+		results = null;
+		FitEventHandler = null;
+		origTrans = binnedTrans = origIntensity = null;
+		dispParams = irfIntensity = fitStatus = null;
+		chiSqRMap = runsZMap = acfMap = null;
+		intensityIndex = null;
+		transientStore = null;
+		dispParamsRA = null;
+		dispParamsRASource = null;
+		globalTrans = null;
+		synchronized (pins) {
+			pins.clear();
 		}
-		executor.shutdownNow();
+		pinnedFits = List.of();
 	}
 }
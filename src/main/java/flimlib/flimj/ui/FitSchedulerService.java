@@ -0,0 +1,126 @@
+/*-
+ * #%L
+ * Fluorescence lifetime analysis in ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2025 Board of Regents of the University of Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package flimlib.flimj.ui;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+import org.scijava.service.Service;
+
+/**
+ * Runs the background work of all open FLIMJ windows on one JVM-wide set of threads. Work is
+ * taken by priority class first and then round-robin between sessions, so a window fitting its
+ * dataset cannot hold up the binning or pinned pixels of another, and the dataset fits of several
+ * windows advance side by side.
+ * <p>
+ * Each {@link FitProcessor} opens one {@link Session}. The tasks of a session run one at a time
+ * and in order within a priority class, as the processor is not thread-safe. A long task splits
+ * itself with {@link Session#invokeAll}, e.g. a dataset fit into blocks of rows, so that the tasks
+ * of other sessions interleave with its parts.
+ * </p>
+ */
+public interface FitSchedulerService extends Service {
+
+	/**
+	 * The system property setting the number of threads shared by all priority classes. One more
+	 * thread only runs {@link Priority#INTERACTIVE} tasks.
+	 */
+	String THREADS_PROPERTY = "flimj.scheduler.threads";
+
+	/** The priority classes, highest first */
+	public static enum Priority {
+		/** Work a user is waiting for, e.g. binning, pinned pixels or residual diagnostics */
+		INTERACTIVE,
+		/** Fitting a whole dataset */
+		FULL_FIT,
+		/** Writing results out */
+		EXPORT
+	}
+
+	/** The queue of one window */
+	public static interface Session extends AutoCloseable {
+
+		/**
+		 * Queues a task.
+		 *
+		 * @param <T>      the result type
+		 * @param priority the priority class
+		 * @param task     the task
+		 * @return the future of the task
+		 * @throws java.util.concurrent.RejectedExecutionException if the session is closed
+		 */
+		<T> Future<T> submit(Priority priority, Callable<T> task);
+
+		/**
+		 * Queues a task.
+		 *
+		 * @param priority the priority class
+		 * @param task     the task
+		 * @return the future of the task
+		 * @throws java.util.concurrent.RejectedExecutionException if the session is closed
+		 */
+		default Future<?> submit(Priority priority, Runnable task) {
+			return submit(priority, () -> {
+				task.run();
+				return null;
+			});
+		}
+
+		/**
+		 * Runs tasks concurrently and waits for them, e.g. to split a task of this session into
+		 * parts. Unlike submitted tasks, these run in parallel with each other, and they take
+		 * turns with the other sessions of their priority class as one more session. While it
+		 * waits, the calling thread runs queued tasks like a worker, so a task of this session
+		 * can call this without waiting for a free thread or holding up the other sessions.
+		 *
+		 * @param <T>      the result type
+		 * @param priority the priority class
+		 * @param tasks    the tasks
+		 * @return the futures of the tasks, all done
+		 * @throws InterruptedException if interrupted while waiting, in which case the unfinished
+		 *                              tasks are cancelled
+		 * @throws java.util.concurrent.RejectedExecutionException if the session is closed
+		 */
+		<T> List<Future<T>> invokeAll(Priority priority, Collection<? extends Callable<T>> tasks)
+				throws InterruptedException;
+
+		/**
+		 * Cancels the queued tasks, interrupts the running ones and rejects further tasks. A task
+		 * waiting in {@link #invokeAll} is only interrupted once the task of another session it may
+		 * be running meanwhile has finished.
+		 */
+		@Override
+		void close();
+	}
+
+	/**
+	 * @return a new session
+	 */
+	Session openSession();
+
+	/**
+	 * @return the number of threads shared by all priority classes
+	 */
+	int getParallelism();
+}
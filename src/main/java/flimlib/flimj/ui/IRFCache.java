@@ -0,0 +1,259 @@
+/*-
+ * #%L
+ * Fluorescence lifetime analysis in ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2025 Board of Regents of the University of Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package flimlib.flimj.ui;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.ExtendedRandomAccessibleInterval;
+import net.imglib2.view.IntervalView;
+import net.imglib2.view.MixedTransformView;
+
+import flimlib.flimj.FitParams;
+
+/**
+ * The IRF datasets opened in a session. Each {@link Entry} keeps a small summary of its dataset
+ * (intensity image, estimated range and the decay at the last picked pixel) for good, so that
+ * switching between IRFs is instant. The full transient data, only needed when picking a new IRF
+ * pixel, is kept for the most recently used entries up to a size budget and reloaded from disk
+ * when needed again.
+ */
+public class IRFCache {
+
+	/** Loads an IRF dataset */
+	@FunctionalInterface
+	public static interface Loader {
+		/**
+		 * @param path     the path to the dataset
+		 * @param settings the lifetime axis (of the whole dataset) and time bin to load with. On
+		 *                 first load <code>ltAxis</code> is -1: the loader asks the user and stores
+		 *                 the confirmed values here. On reload they are used as is, without asking.
+		 * @return the IRF, with <code>transMap</code> and <code>ltAxis</code> set, or
+		 *         <code>null</code> if cancelled
+		 * @throws IOException if loading fails
+		 */
+		FitParams<FloatType> load(String path, FitParams<FloatType> settings) throws IOException;
+	}
+
+	/** The default budget for full transient data, in bytes */
+	public static final long DEFAULT_BUDGET = 256L << 20;
+
+	/** A cached IRF dataset */
+	public class Entry {
+
+		private final String name, path;
+
+		/** The IRF settings, with the decay at the last picked pixel in <code>trans</code> */
+		private final FitParams<FloatType> params;
+
+		/** The lifetime axis and time bin confirmed on first load, reused on reload */
+		private final FitParams<FloatType> loadSettings;
+
+		/** The size of the full data in bytes */
+		private final long bytes;
+
+		/** The dimensions of the full data */
+		private final long[] dims;
+
+		/** The intensity image, <code>null</code> until computed */
+		private Img<FloatType> intensity;
+
+		/** The full transient data, <code>null</code> when evicted */
+		private RandomAccessibleInterval<FloatType> transMap;
+
+		private Entry(final String name, final String path, final FitParams<FloatType> params,
+				final FitParams<FloatType> loadSettings, final long bytes) {
+			this.name = name;
+			this.path = path;
+			this.params = params;
+			this.loadSettings = loadSettings;
+			this.bytes = bytes;
+			this.transMap = params.transMap;
+			this.dims = Intervals.dimensionsAsLongArray(transMap);
+		}
+
+		/**
+		 * @return the IRF settings; <code>transMap</code> may be stale, use
+		 *         {@link #getTransMap()} instead
+		 */
+		public FitParams<FloatType> getParams() {
+			return params;
+		}
+
+		/**
+		 * @return the intensity image, <code>null</code> if not yet computed
+		 */
+		public Img<FloatType> getIntensity() {
+			return intensity;
+		}
+
+		/**
+		 * @param intensity the intensity image
+		 */
+		public void setIntensity(final Img<FloatType> intensity) {
+			this.intensity = intensity;
+		}
+
+		/**
+		 * Gets the full transient data, reloading it if evicted.
+		 *
+		 * @return the transient data
+		 * @throws IOException if reloading fails
+		 */
+		public RandomAccessibleInterval<FloatType> getTransMap() throws IOException {
+			synchronized (IRFCache.this) {
+				if (transMap == null) {
+					final FitParams<FloatType> reloaded = loader.load(path, loadSettings);
+					if (reloaded == null)
+						throw new IOException("Reloading " + path + " was cancelled");
+					if (reloaded.ltAxis != params.ltAxis || !Arrays.equals(dims,
+							Intervals.dimensionsAsLongArray(reloaded.transMap)))
+						throw new IOException(path + " has changed since it was opened");
+					transMap = reloaded.transMap;
+					loadedBytes += bytes;
+				}
+				params.transMap = transMap;
+				touch(this);
+				return transMap;
+			}
+		}
+	}
+
+	private final Loader loader;
+
+	/** The maximum total size of full data kept */
+	private final long budget;
+
+	/** The entries by name, least recently used first */
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+	/** The total size of full data kept */
+	private long loadedBytes;
+
+	/**
+	 * @param loader loads (and reloads) IRF datasets by path
+	 * @param budget the maximum total size of full transient data to keep, in bytes
+	 */
+	public IRFCache(final Loader loader, final long budget) {
+		this.loader = loader;
+		this.budget = budget;
+	}
+
+	/**
+	 * Loads an IRF dataset and caches it under a name, replacing any previous one.
+	 *
+	 * @param name the name
+	 * @param path the path to the dataset
+	 * @return the entry, or <code>null</code> if loading was cancelled
+	 * @throws IOException if loading fails
+	 */
+	public synchronized Entry load(final String name, final String path) throws IOException {
+		final FitParams<FloatType> settings = new FitParams<>();
+		settings.ltAxis = -1;
+		final FitParams<FloatType> irf = loader.load(path, settings);
+		if (irf == null)
+			return null;
+		final long bytes = dataBytes(irf.transMap);
+		final Entry old = entries.remove(name);
+		if (old != null && old.transMap != null)
+			loadedBytes -= old.bytes;
+		final Entry entry = new Entry(name, path, irf, settings, bytes);
+		entries.put(name, entry);
+		loadedBytes += bytes;
+		touch(entry);
+		return entry;
+	}
+
+	/**
+	 * @param name the name
+	 * @return the entry, or <code>null</code> if absent
+	 */
+	public synchronized Entry get(final String name) {
+		return entries.get(name);
+	}
+
+	/**
+	 * @param name the name
+	 * @return true if an entry of the name is cached
+	 */
+	public synchronized boolean contains(final String name) {
+		return entries.containsKey(name);
+	}
+
+	/**
+	 * Drops all entries.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		loadedBytes = 0;
+	}
+
+	/**
+	 * Estimates the memory held by transient data as float data. A view (e.g. of curves repeated
+	 * over the dataset size) counts as the image behind it, not as its own interval.
+	 *
+	 * @param transMap the transient data
+	 * @return the size in bytes
+	 */
+	private static long dataBytes(final RandomAccessibleInterval<FloatType> transMap) {
+		Object source = transMap;
+		while (!(source instanceof Img)) {
+			if (source instanceof IntervalView)
+				source = ((IntervalView<?>) source).getSource();
+			else if (source instanceof ExtendedRandomAccessibleInterval)
+				source = ((ExtendedRandomAccessibleInterval<?, ?>) source).getSource();
+			else if (source instanceof MixedTransformView)
+				source = ((MixedTransformView<?>) source).getSource();
+			else
+				// an upper bound for other views
+				return Intervals.numElements(transMap) * Float.BYTES;
+		}
+		return Intervals.numElements((Img<?>) source) * Float.BYTES;
+	}
+
+	/**
+	 * Marks an entry as most recently used and evicts the full data of the least recently used
+	 * others until within budget.
+	 *
+	 * @param entry the entry
+	 */
+	private void touch(final Entry entry) {
+		// get() moves the entry to the end in access order
+		if (entries.get(entry.name) != entry)
+			return;
+		final Iterator<Entry> it = entries.values().iterator();
+		while (loadedBytes > budget && it.hasNext()) {
+			final Entry lru = it.next();
+			if (lru != entry && lru.transMap != null) {
+				lru.transMap = null;
+				lru.params.transMap = null;
+				loadedBytes -= lru.bytes;
+			}
+		}
+	}
+}
@@ -0,0 +1,149 @@
+/*-
+ * #%L
+ * Fluorescence lifetime analysis in ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2025 Board of Regents of the University of Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package flimlib.flimj.ui;
+
+import java.util.Arrays;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+/**
+ * A snapshot of a 2D intensity image with its pixels sorted by intensity. Pixels are addressed by
+ * their flat index <code>x + y * width</code>. Since the pixels below any threshold form a prefix of
+ * the sorted order, moving the threshold from one value to another only concerns the pixels whose
+ * ranks lie between {@link #countBelow} of the two values.
+ */
+public class IntensityIndex {
+
+	/** Size of the image */
+	private final int width, height;
+
+	/** Intensities in flat order */
+	private final float[] values;
+
+	/** Flat pixel indices sorted by ascending intensity */
+	private final int[] order;
+
+	/** The intensities in {@link #order} */
+	private final float[] sorted;
+
+	/**
+	 * Builds the index of a 2D intensity image.
+	 *
+	 * @param intensity the 2D intensity image
+	 */
+	public IntensityIndex(final RandomAccessibleInterval<FloatType> intensity) {
+		width = (int) intensity.dimension(0);
+		height = (int) intensity.dimension(1);
+		final int n = width * height;
+
+		values = new float[n];
+		final Cursor<FloatType> csr = Views.flatIterable(intensity).cursor();
+		for (int i = 0; i < n; i++)
+			values[i] = csr.next().get();
+
+		// sort (intensity, index) pairs packed into longs, with the float bits flipped so that they
+		// compare as signed ints (NaN goes to the top)
+		final long[] keys = new long[n];
+		for (int i = 0; i < n; i++) {
+			int bits = Float.floatToIntBits(values[i]);
+			bits ^= (bits >> 31) & 0x7fffffff;
+			keys[i] = ((long) bits << 32) | i;
+		}
+		Arrays.parallelSort(keys);
+
+		order = new int[n];
+		sorted = new float[n];
+		for (int r = 0; r < n; r++) {
+			order[r] = (int) keys[r];
+			sorted[r] = values[order[r]];
+		}
+	}
+
+	/**
+	 * @return the width of the image
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * @return the height of the image
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * @return the number of pixels
+	 */
+	public int size() {
+		return values.length;
+	}
+
+	/**
+	 * @param index the flat index of the pixel
+	 * @return the intensity of the pixel
+	 */
+	public float getValue(final int index) {
+		return values[index];
+	}
+
+	/**
+	 * @param rank the rank of the pixel in ascending intensity order
+	 * @return the flat index of the pixel
+	 */
+	public int getPixel(final int rank) {
+		return order[rank];
+	}
+
+	/**
+	 * @return the largest finite intensity, or 0 if there is none
+	 */
+	public float getMax() {
+		for (int r = sorted.length - 1; r >= 0; r--)
+			if (Float.isFinite(sorted[r]))
+				return sorted[r];
+		return 0;
+	}
+
+	/**
+	 * Counts the pixels strictly below the threshold. These are the pixels of rank
+	 * <code>[0, countBelow(thresh))</code>.
+	 *
+	 * @param thresh the threshold
+	 * @return the number of pixels with intensity &lt; <code>thresh</code>
+	 */
+	public int countBelow(final float thresh) {
+		int lo = 0, hi = sorted.length;
+		while (lo < hi) {
+			final int mid = (lo + hi) >>> 1;
+			if (sorted[mid] < thresh)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
+}
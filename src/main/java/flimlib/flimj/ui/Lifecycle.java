@@ -0,0 +1,129 @@
+/*-
+ * #%L
+ * Fluorescence lifetime analysis in ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2025 Board of Regents of the University of Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package flimlib.flimj.ui;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+
+/**
+ * Records what a component hooks into or holds on to, so that all of it is released in one
+ * {@link #close()} when the window closes. A listener left on an observable that outlives the
+ * window (or a timer left running) keeps the whole scene graph and, through the controllers, every
+ * image buffer reachable.
+ * <p>
+ * Releases run in reverse order of registration, like nested try-with-resources. Registering after
+ * {@link #close()} releases immediately.
+ * </p>
+ */
+public class Lifecycle implements AutoCloseable {
+
+	private final List<Runnable> releases = new ArrayList<>();
+
+	private boolean closed;
+
+	/**
+	 * Adds a change listener that is removed on {@link #close()}.
+	 *
+	 * @param <T>        the observed type
+	 * @param observable the observed value
+	 * @param listener   the listener
+	 * @return <code>listener</code>
+	 */
+	public <T> ChangeListener<T> listen(final ObservableValue<T> observable,
+			final ChangeListener<T> listener) {
+		observable.addListener(listener);
+		onClose(() -> observable.removeListener(listener));
+		return listener;
+	}
+
+	/**
+	 * Adds an invalidation listener that is removed on {@link #close()}.
+	 *
+	 * @param observable the observable
+	 * @param listener   the listener
+	 * @return <code>listener</code>
+	 */
+	public InvalidationListener listen(final Observable observable,
+			final InvalidationListener listener) {
+		observable.addListener(listener);
+		onClose(() -> observable.removeListener(listener));
+		return listener;
+	}
+
+	/**
+	 * Registers an action run on {@link #close()}, e.g. stopping a timer or dropping a buffer.
+	 *
+	 * @param release the action
+	 */
+	public void onClose(final Runnable release) {
+		synchronized (releases) {
+			if (!closed) {
+				releases.add(release);
+				return;
+			}
+		}
+		release.run();
+	}
+
+	/**
+	 * @return <code>true</code> if {@link #close()} has been called
+	 */
+	public boolean isClosed() {
+		synchronized (releases) {
+			return closed;
+		}
+	}
+
+	/**
+	 * Runs all releases once. A failing release does not stop the others; the first failure is
+	 * rethrown afterwards with the rest suppressed.
+	 */
+	@Override
+	public void close() {
+		final List<Runnable> toRun;
+		synchronized (releases) {
+			if (closed)
+				return;
+			closed = true;
+			toRun = new ArrayList<>(releases);
+			releases.clear();
+		}
+		RuntimeException failure = null;
+		for (int i = toRun.size() - 1; i >= 0; i--) {
+			try {
+				toRun.get(i).run();
+			} catch (RuntimeException e) {
+				if (failure == null)
+					failure = e;
+				else
+					failure.addSuppressed(e);
+			}
+		}
+		if (failure != null)
+			throw failure;
+	}
+}
@@ -0,0 +1,299 @@
+/*-
+ * #%L
+ * Fluorescence lifetime analysis in ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2025 Board of Regents of the University of Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package flimlib.flimj.ui;
+
+/**
+ * Estimates the heap taken by the large operations (fitting the dataset, binning the intensity and
+ * exporting results) from the image dimensions before they start, and chooses how the binned
+ * transients of a dataset fit are held so that the fit stays within a memory budget:
+ * <ul>
+ * <li>{@link Strategy#IN_MEMORY}: one convolved copy of the dataset (or the dataset itself if
+ * not binned)</li>
+ * <li>{@link Strategy#TILED}: blocks of rows are convolved when the fit first reads them and
+ * recomputed after being evicted from a bounded cache</li>
+ * <li>{@link Strategy#DISK_BACKED}: as tiled, but evicted blocks are written to a temporary file
+ * instead of being recomputed, for kernels too large to convolve twice</li>
+ * </ul>
+ * The budget is the system property {@value #BUDGET_PROPERTY} in MiB, or by default a fraction of
+ * the heap still available when planning. Estimates only count the buffers proportional to the
+ * image, so they are a lower bound.
+ */
+public class MemoryPlanner {
+
+	/** The system property overriding the budget, in MiB */
+	public static final String BUDGET_PROPERTY = "flimj.memory.budget";
+
+	/** The fraction of the available heap used as the default budget */
+	public static final double DEFAULT_FRACTION = 0.8;
+
+	/** The bin radius from which evicted blocks are stored rather than recomputed */
+	public static final int DISK_BACKED_RADIUS = 3;
+
+	/** The default number of rows per block of binned transients */
+	private static final int DEFAULT_BLOCK_ROWS = 16;
+
+	/** The ways binned transients are held during a dataset fit */
+	public static enum Strategy {
+		/** A whole copy on the heap */
+		IN_MEMORY("in memory"),
+		/** Blocks recomputed on demand */
+		TILED("tiled"),
+		/** Blocks spilled to disk */
+		DISK_BACKED("disk-backed");
+
+		private final String label;
+
+		private Strategy(String label) {
+			this.label = label;
+		}
+
+		@Override
+		public String toString() {
+			return label;
+		}
+	}
+
+	/** The outcome of planning an operation */
+	public static class Plan {
+
+		private final String operation;
+
+		private final Strategy strategy;
+
+		private final long bytes, budget;
+
+		private final int blockRows, cachedBlocks;
+
+		private Plan(String operation, Strategy strategy, long bytes, long budget, int blockRows,
+				int cachedBlocks) {
+			this.operation = operation;
+			this.strategy = strategy;
+			this.bytes = bytes;
+			this.budget = budget;
+			this.blockRows = blockRows;
+			this.cachedBlocks = cachedBlocks;
+		}
+
+		/**
+		 * @return the chosen strategy
+		 */
+		public Strategy getStrategy() {
+			return strategy;
+		}
+
+		/**
+		 * @return the estimated heap taken by the operation in bytes
+		 */
+		public long getBytes() {
+			return bytes;
+		}
+
+		/**
+		 * @return the budget in bytes
+		 */
+		public long getBudget() {
+			return budget;
+		}
+
+		/**
+		 * @return the number of rows per block of binned transients (tiled and disk-backed only)
+		 */
+		public int getBlockRows() {
+			return blockRows;
+		}
+
+		/**
+		 * @return the number of blocks kept on the heap (tiled and disk-backed only)
+		 */
+		public int getCachedBlocks() {
+			return cachedBlocks;
+		}
+
+		/**
+		 * @return true if the estimate is within the budget
+		 */
+		public boolean fits() {
+			return bytes <= budget;
+		}
+
+		/**
+		 * @return a one-line summary for the user
+		 */
+		public String describe() {
+			return String.format("%s needs about %s (%s) of the %s memory budget", operation,
+					formatBytes(bytes), strategy, formatBytes(budget));
+		}
+	}
+
+	/** The budget in bytes, or -1 to use {@link #DEFAULT_FRACTION} of the available heap */
+	private final long budget;
+
+	/**
+	 * @param budget the budget in bytes, or -1 to use {@link #DEFAULT_FRACTION} of the heap
+	 *               available at the time of planning
+	 */
+	public MemoryPlanner(final long budget) {
+		this.budget = budget;
+	}
+
+	/**
+	 * Creates a planner with the budget of {@value #BUDGET_PROPERTY}, if set.
+	 *
+	 * @return the planner
+	 */
+	public static MemoryPlanner fromSystemProperties() {
+		long budget = -1;
+		final String budgetProp = System.getProperty(BUDGET_PROPERTY);
+		if (budgetProp != null) {
+			try {
+				budget = Long.parseLong(budgetProp.trim()) << 20;
+			} catch (NumberFormatException e) {
+				// keep the default
+			}
+		}
+		return new MemoryPlanner(budget);
+	}
+
+	/**
+	 * @return the budget in bytes
+	 */
+	public long getBudget() {
+		if (budget >= 0)
+			return budget;
+		final Runtime rt = Runtime.getRuntime();
+		final long available = rt.maxMemory() - (rt.totalMemory() - rt.freeMemory());
+		return (long) (Math.max(available, 0) * DEFAULT_FRACTION);
+	}
+
+	/**
+	 * Plans a dataset fit. The result maps are always allocated whole; the binned transients are
+	 * held whole if that fits, else in blocks. Global fits need all transients at once and are
+	 * always planned in memory.
+	 *
+	 * @param width       the width of the dataset
+	 * @param height      the height of the dataset
+	 * @param nTime       the number of time bins
+	 * @param nParam      the number of fitted parameters
+	 * @param binRadius   the bin radius
+	 * @param binnedReady true if the binned transients already exist (or are not needed)
+	 * @param global      true for a global fit
+	 * @return the plan
+	 */
+	public Plan planFit(final long width, final long height, final long nTime, final int nParam,
+			final int binRadius, final boolean binnedReady, final boolean global) {
+		final long budget = getBudget();
+		final long nPix = width * height;
+		// param map, return codes, chi^2 / runs / ACF maps and the float copy of the return codes
+		final long results = nPix * (nParam + 5) * Float.BYTES;
+		final long rowBytes = width * nTime * Float.BYTES;
+		final long whole = binRadius > 0 && !binnedReady ? height * rowBytes : 0;
+
+		final Plan inMemory = new Plan("Fitting", Strategy.IN_MEMORY, results + whole, budget, 0, 0);
+		if (whole == 0 || global || inMemory.fits())
+			return inMemory;
+
+		// each loading thread convolves a block with a halo of binRadius rows on either side,
+		// needing the input and output
+		final Strategy blocked =
+				binRadius >= DISK_BACKED_RADIUS ? Strategy.DISK_BACKED : Strategy.TILED;
+		final int nThreads = Runtime.getRuntime().availableProcessors();
+		final int cachedBlocks = 2 * nThreads;
+		Plan plan = null;
+		for (int rows = DEFAULT_BLOCK_ROWS; rows >= 1; rows /= 2) {
+			final long blockBytes = Math.min(rows, height) * rowBytes;
+			final long scratch = nThreads * 2 * Math.min(rows + 2 * binRadius, height) * rowBytes;
+			plan = new Plan("Fitting", blocked, results + cachedBlocks * blockBytes + scratch,
+					budget, rows, cachedBlocks);
+			if (plan.fits())
+				break;
+		}
+		return plan;
+	}
+
+	/**
+	 * Plans binning the intensity image. Binning the whole image goes through FFT, which needs
+	 * padded complex copies of the image and kernel.
+	 *
+	 * @param width      the width of the image
+	 * @param height     the height of the image
+	 * @param kernelSize the side length of the kernel
+	 * @param fft        true if convolved through FFT
+	 * @return the plan
+	 */
+	public Plan planBinning(final long width, final long height, final long kernelSize,
+			final boolean fft) {
+		long bytes = width * height * Float.BYTES;
+		if (fft)
+			bytes += 3 * (width + kernelSize) * (height + kernelSize) * 2 * Float.BYTES;
+		return new Plan("Binning", Strategy.IN_MEMORY, bytes, getBudget(), 0, 0);
+	}
+
+	/**
+	 * Plans exporting result maps. Maps are copied to image windows up to
+	 * <code>concurrency</code> at a time, while a file is written from views of the maps.
+	 *
+	 * @param width       the width of the maps
+	 * @param height      the height of the maps
+	 * @param nMaps       the number of maps
+	 * @param toFile      true if exporting to a file
+	 * @param concurrency the number of maps prepared at once
+	 * @return the plan
+	 */
+	public Plan planExport(final long width, final long height, final int nMaps,
+			final boolean toFile, final int concurrency) {
+		// derived maps are computed whole in either case, and dropped after copying
+		final long map = width * height * Float.BYTES;
+		final long inFlight = Math.min(nMaps, Math.max(1, concurrency));
+		final long bytes = toFile ? nMaps * map : (nMaps + inFlight) * map;
+		return new Plan("Exporting", Strategy.IN_MEMORY, bytes, getBudget(), 0, 0);
+	}
+
+	/**
+	 * Plans the pixel-major copy of the dataset used for hover inspection.
+	 *
+	 * @param width  the width of the dataset
+	 * @param height the height of the dataset
+	 * @param nTime  the number of time bins
+	 * @return the plan
+	 */
+	public Plan planTransientStore(final long width, final long height, final long nTime) {
+		return new Plan("Copying the dataset", Strategy.IN_MEMORY,
+				width * height * nTime * Float.BYTES, getBudget(), 0, 0);
+	}
+
+	/**
+	 * @param bytes a size in bytes
+	 * @return the size in the largest binary unit below it
+	 */
+	public static String formatBytes(final long bytes) {
+		if (bytes < 1 << 10)
+			return bytes + " B";
+		final String[] units = {"KiB", "MiB", "GiB", "TiB"};
+		double size = bytes;
+		int unit = -1;
+		while (size >= 1 << 10 && unit < units.length - 1) {
+			size /= 1 << 10;
+			unit++;
+		}
+		return String.format("%.1f %s", size, units[unit]);
+	}
+}
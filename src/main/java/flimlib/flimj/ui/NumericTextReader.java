@@ -0,0 +1,377 @@
+/*-
+ * #%L
+ * Fluorescence lifetime analysis in ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2025 Board of Regents of the University of Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package flimlib.flimj.ui;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads tables of numbers from ASCII text (e.g. <code>.asc</code> IRFs and exported decay
+ * tables). Values are separated by whitespace, commas or semicolons and rows by line breaks (LF,
+ * CR or CRLF). Lines with anything but numbers (headers, comments) before the first row are
+ * skipped; after it they are an error, so that a mistyped value does not shift the data by a row.
+ * Blank lines are skipped anywhere. The file is read block by block
+ * through NIO and numbers are parsed from bytes straight into <code>float[]</code>, so only as
+ * much as requested is read and nothing is allocated per value.
+ */
+public class NumericTextReader implements Closeable {
+
+	/** The size of the read buffer */
+	private static final int BLOCK_SIZE = 1 << 16;
+
+	/** Tokens longer than this are not numbers */
+	private static final int MAX_TOKEN_LENGTH = 64;
+
+	/** Exact powers of ten as floats */
+	private static final float[] POW10 = new float[11];
+
+	static {
+		POW10[0] = 1;
+		for (int i = 1; i < POW10.length; i++)
+			POW10[i] = POW10[i - 1] * 10;
+	}
+
+	private final FileChannel channel;
+
+	private final ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+
+	/** True when the channel is exhausted */
+	private boolean eof;
+
+	/** The bytes of the token being read */
+	private final byte[] token = new byte[MAX_TOKEN_LENGTH];
+
+	private int tokenLength;
+
+	/** True if the token being read is too long to be a number */
+	private boolean tokenOverflow;
+
+	/** The values of the row being read */
+	private float[] row = new float[16];
+
+	private int rowLength;
+
+	/** True if the row being read has a non-number */
+	private boolean rowInvalid;
+
+	/** The first non-number of the row being read, for the error message */
+	private String invalidToken;
+
+	/** True if the last byte was a carriage return */
+	private boolean afterCR;
+
+	/** True if {@link #row} is complete but not yet returned */
+	private boolean rowPending;
+
+	/** The number of columns, -1 before the first row */
+	private int nCols = -1;
+
+	/** The number of lines seen so far */
+	private long lineNumber;
+
+	/**
+	 * Opens a file for reading.
+	 *
+	 * @param path the file
+	 * @throws IOException if the file cannot be opened
+	 */
+	public NumericTextReader(final Path path) throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.READ);
+		block.flip();
+	}
+
+	/**
+	 * Reads a whole file as columns.
+	 *
+	 * @param path the file
+	 * @return the columns, <code>[column][row]</code>
+	 * @throws IOException if the file cannot be read or its rows differ in length
+	 */
+	public static float[][] readColumns(final Path path) throws IOException {
+		try (NumericTextReader reader = new NumericTextReader(path)) {
+			final int nCols = reader.countColumns();
+			if (nCols <= 0)
+				return new float[0][0];
+			float[] rows = new float[nCols * 1024];
+			int nRows = 0;
+			while (true) {
+				if (nRows == rows.length / nCols)
+					rows = Arrays.copyOf(rows, rows.length * 2);
+				final int nRead = reader.readRows(rows, nRows, rows.length / nCols - nRows);
+				if (nRead == 0)
+					break;
+				nRows += nRead;
+			}
+
+			final float[][] columns = new float[nCols][nRows];
+			for (int r = 0; r < nRows; r++)
+				for (int c = 0; c < nCols; c++)
+					columns[c][r] = rows[r * nCols + c];
+			return columns;
+		}
+	}
+
+	/**
+	 * @return the number of values per row, -1 if no row has been read yet
+	 */
+	public int getColumnCount() {
+		return nCols;
+	}
+
+	/**
+	 * Reads ahead to the first row if necessary to tell the number of columns. The row is still
+	 * returned by the next {@link #readRows}.
+	 *
+	 * @return the number of values per row, -1 if the file has no row
+	 * @throws IOException if reading fails
+	 */
+	public int countColumns() throws IOException {
+		while (nCols == -1) {
+			if (!block.hasRemaining() && !fill()) {
+				rowPending = endLine();
+				break;
+			}
+			if (consume(block.get()))
+				rowPending = true;
+		}
+		return nCols;
+	}
+
+	/**
+	 * Reads up to <code>maxRows</code> rows into <code>dst</code>, row after row.
+	 *
+	 * @param dst      receives the values
+	 * @param rowStart the index of the row in <code>dst</code> to start at, in units of
+	 *                 {@link #getColumnCount()}
+	 * @param maxRows  the maximum number of rows to read
+	 * @return the number of rows read, 0 at the end of the file
+	 * @throws IOException if reading fails or a row differs in length from the first one
+	 */
+	public int readRows(final float[] dst, final int rowStart, final int maxRows)
+			throws IOException {
+		int nRead = 0;
+		if (rowPending && maxRows > 0) {
+			takeRow(dst, rowStart + nRead++);
+			rowPending = false;
+		}
+		while (nRead < maxRows) {
+			if (!block.hasRemaining() && !fill()) {
+				// the last line may not end with a line break
+				if (endLine())
+					takeRow(dst, rowStart + nRead++);
+				break;
+			}
+			if (consume(block.get()))
+				takeRow(dst, rowStart + nRead++);
+		}
+		return nRead;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Reads the next block from the file.
+	 *
+	 * @return false at the end of the file
+	 */
+	private boolean fill() throws IOException {
+		if (eof)
+			return false;
+		block.clear();
+		int n;
+		do
+			n = channel.read(block);
+		while (n == 0);
+		block.flip();
+		eof = n < 0;
+		return !eof;
+	}
+
+	/**
+	 * Processes a byte.
+	 *
+	 * @return true if the byte completed a row, which is then in {@link #row}
+	 */
+	private boolean consume(final byte b) throws IOException {
+		// the LF of a CRLF does not end another line
+		final boolean crlf = afterCR && b == '\n';
+		afterCR = b == '\r';
+		if (crlf)
+			return false;
+		if (b == '\n' || b == '\r')
+			return endLine();
+		if (b == ' ' || b == '\t' || b == ',' || b == ';')
+			endToken();
+		else if (tokenLength < MAX_TOKEN_LENGTH)
+			token[tokenLength++] = b;
+		else
+			tokenOverflow = true;
+		return false;
+	}
+
+	/**
+	 * Ends the token being read and adds its value to the row.
+	 */
+	private void endToken() {
+		if (tokenLength == 0 && !tokenOverflow)
+			return;
+		final float value = tokenOverflow ? Float.NaN : parse(token, tokenLength);
+		if (Float.isNaN(value) && !isNaNLiteral(token, tokenLength) && !rowInvalid) {
+			rowInvalid = true;
+			invalidToken = new String(token, 0, tokenLength, StandardCharsets.US_ASCII)
+					+ (tokenOverflow ? "..." : "");
+		}
+		if (rowLength == row.length)
+			row = Arrays.copyOf(row, row.length * 2);
+		row[rowLength++] = value;
+		tokenLength = 0;
+		tokenOverflow = false;
+	}
+
+	/**
+	 * Ends the line being read. A row of numbers is left in {@link #row} for {@link #takeRow},
+	 * anything else is discarded.
+	 *
+	 * @return true if the line is a row of numbers
+	 * @throws IOException if the line has a non-number after the first row, or a different number
+	 *                     of values than the first row
+	 */
+	private boolean endLine() throws IOException {
+		endToken();
+		lineNumber++;
+		if (rowInvalid && nCols != -1)
+			throw new IOException(
+					"Line " + lineNumber + " has a value that is not a number: " + invalidToken);
+		if (rowLength == 0 || rowInvalid) {
+			rowLength = 0;
+			rowInvalid = false;
+			return false;
+		}
+		if (nCols == -1)
+			nCols = rowLength;
+		else if (rowLength != nCols)
+			throw new IOException(
+					"Line " + lineNumber + " has " + rowLength + " values, expected " + nCols);
+		return true;
+	}
+
+	/**
+	 * Copies the completed row to <code>dst</code> and starts a new one.
+	 */
+	private void takeRow(final float[] dst, final int rowIdx) {
+		System.arraycopy(row, 0, dst, rowIdx * nCols, nCols);
+		rowLength = 0;
+	}
+
+	/**
+	 * Parses a decimal number, e.g. <code>-1.25e-3</code>.
+	 *
+	 * @param bytes  the ASCII characters
+	 * @param length the number of characters
+	 * @return the value, NaN if not a number
+	 */
+	static float parse(final byte[] bytes, final int length) {
+		int i = 0;
+		boolean negative = false;
+		if (i < length && (bytes[i] == '-' || bytes[i] == '+'))
+			negative = bytes[i++] == '-';
+
+		long mantissa = 0;
+		int exponent = 0, nDigits = 0, nSignificant = 0;
+		boolean exact = true;
+		for (; i < length && bytes[i] >= '0' && bytes[i] <= '9'; i++, nDigits++)
+			if (nSignificant < 18) {
+				mantissa = mantissa * 10 + (bytes[i] - '0');
+				if (mantissa != 0)
+					nSignificant++;
+			} else {
+				// drop the digit but keep the magnitude
+				exponent++;
+				exact &= bytes[i] == '0';
+			}
+		if (i < length && bytes[i] == '.')
+			for (i++; i < length && bytes[i] >= '0' && bytes[i] <= '9'; i++, nDigits++)
+				if (nSignificant < 18) {
+					mantissa = mantissa * 10 + (bytes[i] - '0');
+					exponent--;
+					if (mantissa != 0)
+						nSignificant++;
+				} else
+					exact &= bytes[i] == '0';
+		if (nDigits == 0)
+			return parseSlow(bytes, length);
+
+		if (i < length && (bytes[i] == 'e' || bytes[i] == 'E')) {
+			i++;
+			boolean expNegative = false;
+			if (i < length && (bytes[i] == '-' || bytes[i] == '+'))
+				expNegative = bytes[i++] == '-';
+			int exp = 0;
+			final int expStart = i;
+			for (; i < length && bytes[i] >= '0' && bytes[i] <= '9'; i++)
+				exp = Math.min(exp * 10 + (bytes[i] - '0'), 100000);
+			if (i == expStart)
+				return Float.NaN;
+			exponent += expNegative ? -exp : exp;
+		}
+		if (i != length)
+			return Float.NaN;
+
+		// correctly rounded when both the mantissa and the power of ten are exact floats, as the
+		// one float operation rounds once (going through a double would round twice)
+		if (!exact || mantissa >= (1L << 24) || Math.abs(exponent) >= POW10.length)
+			return parseSlow(bytes, length);
+		final float value =
+				exponent >= 0 ? mantissa * POW10[exponent] : mantissa / POW10[-exponent];
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Parses a number with the JDK (e.g. <code>Infinity</code>, or values beyond the fast path).
+	 *
+	 * @return the value, NaN if not a number
+	 */
+	private static float parseSlow(final byte[] bytes, final int length) {
+		try {
+			return Float.parseFloat(new String(bytes, 0, length, StandardCharsets.US_ASCII));
+		} catch (NumberFormatException e) {
+			return Float.NaN;
+		}
+	}
+
+	/**
+	 * @return true if the token spells NaN
+	 */
+	private static boolean isNaNLiteral(final byte[] bytes, final int length) {
+		return length == 3 && (bytes[0] | 0x20) == 'n' && (bytes[1] | 0x20) == 'a'
+				&& (bytes[2] | 0x20) == 'n';
+	}
+}
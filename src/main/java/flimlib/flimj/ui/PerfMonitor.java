@@ -0,0 +1,290 @@
+/*-
+ * #%L
+ * Fluorescence lifetime analysis in ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2025 Board of Regents of the University of Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package flimlib.flimj.ui;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+/**
+ * Always-on timing of the stages of the interactive pipeline. Each stage keeps a histogram of
+ * latencies in power-of-two buckets and the bytes allocated by the calling thread, so recording
+ * costs two clock reads and a few atomic adds. Work handed to other threads (e.g. the fit workers
+ * or parallel streams) is timed but its allocation is not counted.
+ * <p>
+ * Usage: <code>try (PerfMonitor.Span span = monitor.begin(Stage.PLOT)) { ... }</code>. Spans are
+ * pooled per thread and may nest.
+ * </p>
+ */
+public class PerfMonitor {
+
+	/** The timed stages */
+	public static enum Stage {
+		/** Convolving the intensity for binning */
+		BINNING("Binning"),
+		/** Summing the transients above threshold */
+		GLOBAL_TRANS("Global trans"),
+		/** Fitting the previewed pixel */
+		PREVIEW_FIT("Preview fit"),
+		/** Fitting the dataset */
+		DATASET_FIT("Dataset fit"),
+		/** Computing derived result maps */
+		DERIVED_MAP("Derived map"),
+		/** Coloring and resampling preview images */
+		PREVIEW_RENDER("Preview render"),
+		/** Preparing and drawing the plots */
+		PLOT("Plot");
+
+		private final String label;
+
+		private Stage(String label) {
+			this.label = label;
+		}
+
+		/**
+		 * @return the display name
+		 */
+		public String getLabel() {
+			return label;
+		}
+	}
+
+	/** The number of latency buckets; bucket b holds latencies in [2^(b-1), 2^b) ns */
+	private static final int N_BUCKETS = 64;
+
+	/** The statistics of one stage */
+	private static class Stats {
+
+		/** Count, total ns, max ns and allocated bytes */
+		final AtomicLongArray totals = new AtomicLongArray(4);
+
+		final AtomicLongArray buckets = new AtomicLongArray(N_BUCKETS);
+
+		void record(long ns, long bytes) {
+			totals.incrementAndGet(0);
+			totals.addAndGet(1, ns);
+			totals.accumulateAndGet(2, ns, Math::max);
+			if (bytes > 0)
+				totals.addAndGet(3, bytes);
+			buckets.incrementAndGet(Math.min(N_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(ns)));
+		}
+
+		/**
+		 * @param q the quantile in [0, 1]
+		 * @return the upper bound of the bucket holding the quantile in ns, 0 if empty
+		 */
+		long quantile(double q) {
+			long n = totals.get(0);
+			long rank = (long) Math.ceil(q * n);
+			long seen = 0;
+			for (int b = 0; b < N_BUCKETS; b++) {
+				seen += buckets.get(b);
+				if (seen >= rank && seen > 0)
+					return b == 0 ? 0 : 1L << Math.min(b, 62);
+			}
+			return 0;
+		}
+
+		void reset() {
+			for (int i = 0; i < totals.length(); i++)
+				totals.set(i, 0);
+			for (int b = 0; b < N_BUCKETS; b++)
+				buckets.set(b, 0);
+		}
+	}
+
+	/** A timed section of a stage, closed on the thread that began it to record it */
+	public static final class Span implements AutoCloseable {
+
+		/** The stack this span belongs to, not the monitor, see {@link PerfMonitor#spans} */
+		private final SpanStack owner;
+
+		private Stage stage;
+
+		private long startNs, startBytes;
+
+		private Span(SpanStack owner) {
+			this.owner = owner;
+		}
+
+		@Override
+		public void close() {
+			long ns = System.nanoTime() - startNs;
+			long bytes = startBytes >= 0 ? allocatedBytes() - startBytes : -1;
+			owner.stats[stage.ordinal()].record(ns, bytes);
+			owner.depth--;
+		}
+	}
+
+	/** The spans of a thread, reused by depth */
+	private static final class SpanStack {
+
+		/** The statistics of the monitor */
+		final Stats[] stats;
+
+		Span[] spans = new Span[4];
+
+		int depth;
+
+		SpanStack(Stats[] stats) {
+			this.stats = stats;
+		}
+
+		Span push() {
+			if (depth == spans.length)
+				spans = Arrays.copyOf(spans, depth * 2);
+			if (spans[depth] == null)
+				spans[depth] = new Span(this);
+			return spans[depth++];
+		}
+	}
+
+	/** Reads per-thread allocation, <code>null</code> if unsupported */
+	private static final com.sun.management.ThreadMXBean THREADS;
+
+	static {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		THREADS = bean instanceof com.sun.management.ThreadMXBean
+				&& ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()
+						? (com.sun.management.ThreadMXBean) bean
+						: null;
+	}
+
+	private final Stats[] stats = new Stats[Stage.values().length];
+
+	/**
+	 * The spans of each thread. The values must not refer to this monitor: the long-lived FX and
+	 * scheduler threads would otherwise keep it, and the window it times, reachable.
+	 */
+	private final ThreadLocal<SpanStack> spans;
+
+	/** The time of the last reset */
+	private volatile long sinceMillis = System.currentTimeMillis();
+
+	public PerfMonitor() {
+		for (int i = 0; i < stats.length; i++)
+			stats[i] = new Stats();
+		final Stats[] threadStats = stats;
+		spans = ThreadLocal.withInitial(() -> new SpanStack(threadStats));
+	}
+
+	/**
+	 * Starts timing a stage.
+	 *
+	 * @param stage the stage
+	 * @return the span to close when the stage ends
+	 */
+	public Span begin(Stage stage) {
+		Span span = spans.get().push();
+		span.stage = stage;
+		span.startBytes = allocatedBytes();
+		span.startNs = System.nanoTime();
+		return span;
+	}
+
+	/**
+	 * Clears all statistics.
+	 */
+	public void reset() {
+		for (Stats s : stats)
+			s.reset();
+		sinceMillis = System.currentTimeMillis();
+	}
+
+	/**
+	 * @return a table of the statistics of all stages that ran, one line each
+	 */
+	public String format() {
+		StringBuilder sb = new StringBuilder(String.format("%-15s %6s %9s %9s %9s %9s %10s%n",
+				"Stage", "Count", "Mean ms", "p50 ms", "p99 ms", "Max ms", "Alloc MiB"));
+		for (Stage stage : Stage.values()) {
+			Stats s = stats[stage.ordinal()];
+			long n = s.totals.get(0);
+			if (n == 0)
+				continue;
+			sb.append(String.format("%-15s %6d %9.2f %9.2f %9.2f %9.2f %10.1f%n", stage.getLabel(),
+					n, s.totals.get(1) / 1e6 / n, s.quantile(0.5) / 1e6, s.quantile(0.99) / 1e6,
+					s.totals.get(2) / 1e6, s.totals.get(3) / (double) (1 << 20)));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Writes the statistics including the full histograms as JSON, e.g. to attach to a bug
+	 * report.
+	 *
+	 * @param path the destination
+	 * @throws IOException if writing fails
+	 */
+	public void dump(Path path) throws IOException {
+		JsonObject root = new JsonObject();
+		root.addProperty("since", sinceMillis);
+		root.addProperty("time", System.currentTimeMillis());
+		root.addProperty("java", System.getProperty("java.version"));
+		root.addProperty("os", System.getProperty("os.name") + " " + System.getProperty("os.arch"));
+		root.addProperty("processors", Runtime.getRuntime().availableProcessors());
+		root.addProperty("maxHeap", Runtime.getRuntime().maxMemory());
+		root.addProperty("allocationCounted", THREADS != null);
+
+		JsonArray stages = new JsonArray();
+		for (Stage stage : Stage.values()) {
+			Stats s = stats[stage.ordinal()];
+			JsonObject obj = new JsonObject();
+			obj.addProperty("stage", stage.name());
+			obj.addProperty("count", s.totals.get(0));
+			obj.addProperty("totalNs", s.totals.get(1));
+			obj.addProperty("maxNs", s.totals.get(2));
+			obj.addProperty("allocatedBytes", s.totals.get(3));
+			// bucket b counts latencies below 2^b ns
+			JsonArray buckets = new JsonArray();
+			int last = N_BUCKETS - 1;
+			while (last > 0 && s.buckets.get(last) == 0)
+				last--;
+			for (int b = 0; b <= last; b++)
+				buckets.add(s.buckets.get(b));
+			obj.add("histogram", buckets);
+			stages.add(obj);
+		}
+		root.add("stages", stages);
+
+		try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+			new GsonBuilder().setPrettyPrinting().create().toJson(root, writer);
+		}
+	}
+
+	/**
+	 * @return the bytes allocated so far by the current thread, or -1 if unknown
+	 */
+	private static long allocatedBytes() {
+		return THREADS != null ? THREADS.getCurrentThreadAllocatedBytes() : -1;
+	}
+}
@@ -0,0 +1,474 @@
+/*-
+ * #%L
+ * Fluorescence lifetime analysis in ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2025 Board of Regents of the University of Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package flimlib.flimj.ui;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
+import javafx.geometry.Point2D;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.chart.ValueAxis;
+import javafx.scene.paint.Color;
+
+/**
+ * A canvas that draws curves from primitive arrays over the plot area of a chart. The chart only
+ * provides the axes: the x axis spans the width of the canvas and y values are mapped by the
+ * chart's y axis, so that its (log/linear) scaling and range animations carry over to the curves.
+ * Curves with many more points than pixel columns are drawn from their per-column extrema (see
+ * {@link Decimator}). The canvas is transparent to the mouse so that overlays on top of it (e.g.
+ * cursors) stay interactive.
+ * <p>
+ * A curve may be clipped to an x range (e.g. the fit range between two cursors). Moving the clip
+ * only redraws the strip of the canvas between its old and new edges.
+ */
+public class PlotCanvas extends Canvas {
+
+	/** How a curve is drawn */
+	public static enum Style {
+		/** Ring markers at each point */
+		DOTS,
+		/** A polyline through the points */
+		LINE
+	}
+
+	/** A series of evenly spaced points drawn on a {@link PlotCanvas} */
+	public static class Curve {
+
+		/** The canvas this curve is drawn on */
+		private final PlotCanvas canvas;
+
+		private final Style style;
+
+		private final Color color;
+
+		/** The y values */
+		private float[] y;
+
+		/** The number of points */
+		private int n;
+
+		/** The x of the first point and the x increment */
+		private double x0, dx;
+
+		/** The (fractional) index range [clipFrom, clipTo] the curve is clipped to */
+		private double clipFrom = Double.NEGATIVE_INFINITY, clipTo = Double.POSITIVE_INFINITY;
+
+		/** The column extrema of all points, if there are too many of them */
+		private final Decimator decimator = new Decimator();
+
+		/** The {@link PlotCanvas#layoutVersion} {@link #decimator} was computed for */
+		private long decimationLayout = -1;
+
+		private Curve(final PlotCanvas canvas, final Style style, final Color color) {
+			this.canvas = canvas;
+			this.style = style;
+			this.color = color;
+			this.y = new float[0];
+		}
+
+		/**
+		 * Sets the points of the curve. The array is drawn from directly and should not be
+		 * modified until the next call.
+		 *
+		 * @param y  the y values
+		 * @param n  the number of points in <code>y</code>
+		 * @param x0 the x of the first point
+		 * @param dx the x increment
+		 */
+		public void setData(final float[] y, final int n, final double x0, final double dx) {
+			this.y = y;
+			this.n = n;
+			this.x0 = x0;
+			this.dx = dx;
+			decimationLayout = -1;
+			canvas.requestRedraw();
+		}
+
+		/**
+		 * Clips the curve to the x range between two (fractional) point indices. Only the strips
+		 * swept by the edges are redrawn.
+		 *
+		 * @param from the index at the left edge
+		 * @param to   the index at the right edge
+		 */
+		public void setClip(final double from, final double to) {
+			if (from == clipFrom && to == clipTo)
+				return;
+			final double oldFrom = clipFrom, oldTo = clipTo;
+			clipFrom = from;
+			clipTo = to;
+			if (from != oldFrom)
+				canvas.requestRedraw(canvas.indexToX(this, Math.min(from, oldFrom)) - REDRAW_PAD,
+						canvas.indexToX(this, Math.max(from, oldFrom)) + REDRAW_PAD);
+			if (to != oldTo)
+				canvas.requestRedraw(canvas.indexToX(this, Math.min(to, oldTo)) - REDRAW_PAD,
+						canvas.indexToX(this, Math.max(to, oldTo)) + REDRAW_PAD);
+		}
+
+		/**
+		 * Removes the clip so that all points are drawn.
+		 */
+		public void clearClip() {
+			setClip(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+		}
+	}
+
+	/** The radii of the DOTS marker and its hollow */
+	private static final double DOT_RADIUS = 3.5, DOT_HOLE_RADIUS = 2;
+
+	/** The width of lines */
+	private static final double LINE_WIDTH = 2;
+
+	/** The extent of drawing around a point */
+	private static final double REDRAW_PAD = DOT_RADIUS + 1;
+
+	/** Curves with more points per pixel column than this are decimated */
+	private static final int DECIMATION_RATIO = 2;
+
+	/** The curves in drawing order */
+	private final List<Curve> curves = new ArrayList<>();
+
+	/** The axis mapping y values to display positions */
+	private ValueAxis<Number> yAxis;
+
+	/** The x values at the left and right edges */
+	private double xMin, xMax;
+
+	/** True if a redraw has been scheduled */
+	private boolean redrawPending;
+
+	/** The strip [dirtyFrom, dirtyTo] (in display x) awaiting the scheduled redraw */
+	private double dirtyFrom = Double.POSITIVE_INFINITY, dirtyTo = Double.NEGATIVE_INFINITY;
+
+	/** Incremented when the x mapping changes (which invalidates decimations) */
+	private long layoutVersion;
+
+	/** The mapping from data to display coordinates of the ongoing redraw */
+	private double xScale, yOffset, yPos0, yScale;
+
+	/** {@link #yAxis} if it may be log scale, <code>null</code> otherwise */
+	private VariableScaleAxis varAxis;
+
+	public PlotCanvas() {
+		setMouseTransparent(true);
+		widthProperty().addListener(obs -> {
+			layoutVersion++;
+			requestRedraw();
+		});
+		heightProperty().addListener(obs -> requestRedraw());
+	}
+
+	/**
+	 * Uses the y axis of a chart to place y values. The canvas is redrawn whenever the axis
+	 * rescales, including during its animations.
+	 *
+	 * @param yAxis the y axis
+	 */
+	public void setYAxis(final ValueAxis<Number> yAxis) {
+		this.yAxis = yAxis;
+		final InvalidationListener redrawListener = obs -> requestRedraw();
+		yAxis.scaleProperty().addListener(redrawListener);
+		yAxis.lowerBoundProperty().addListener(redrawListener);
+		yAxis.heightProperty().addListener(redrawListener);
+	}
+
+	/**
+	 * Sets the x values at the left and right edges of the canvas.
+	 *
+	 * @param xMin the x at the left edge
+	 * @param xMax the x at the right edge
+	 */
+	public void setXRange(final double xMin, final double xMax) {
+		if (xMin == this.xMin && xMax == this.xMax)
+			return;
+		this.xMin = xMin;
+		this.xMax = xMax;
+		layoutVersion++;
+		requestRedraw();
+	}
+
+	/**
+	 * Adds a curve, drawn above the curves added before.
+	 *
+	 * @param style the style of the curve
+	 * @param color the color of the curve
+	 * @return the curve, initially empty
+	 */
+	public Curve addCurve(final Style style, final Color color) {
+		final Curve curve = new Curve(this, style, color);
+		curves.add(curve);
+		return curve;
+	}
+
+	/**
+	 * Schedules a {@link #redraw()} on the FX thread. Requests made before it runs are coalesced.
+	 */
+	public void requestRedraw() {
+		requestRedraw(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+	}
+
+	/**
+	 * Schedules a redraw of a vertical strip of the canvas on the FX thread. Requests made before
+	 * it runs are coalesced into the strip covering all of them.
+	 *
+	 * @param from the display x of the left edge of the strip
+	 * @param to   the display x of the right edge of the strip
+	 */
+	public void requestRedraw(final double from, final double to) {
+		dirtyFrom = Math.min(dirtyFrom, from);
+		dirtyTo = Math.max(dirtyTo, to);
+		if (redrawPending)
+			return;
+		redrawPending = true;
+		Platform.runLater(() -> {
+			final double dirtyFrom = this.dirtyFrom, dirtyTo = this.dirtyTo;
+			this.dirtyFrom = Double.POSITIVE_INFINITY;
+			this.dirtyTo = Double.NEGATIVE_INFINITY;
+			redrawPending = false;
+			redraw(dirtyFrom, dirtyTo);
+		});
+	}
+
+	/**
+	 * Redraws all curves.
+	 */
+	public void redraw() {
+		redraw(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+	}
+
+	/**
+	 * Redraws all curves within a vertical strip.
+	 *
+	 * @param from the display x of the left edge of the strip
+	 * @param to   the display x of the right edge of the strip
+	 */
+	private void redraw(double from, double to) {
+		final GraphicsContext gc = getGraphicsContext2D();
+		final double w = getWidth();
+		final double h = getHeight();
+		from = Math.max(Math.floor(from), 0);
+		to = Math.min(Math.ceil(to), w);
+		if (!(from < to))
+			return;
+		gc.clearRect(from, 0, to - from, h);
+		if (yAxis == null || !(xMax > xMin) || getScene() == null)
+			return;
+
+		// axis display positions are relative to the axis itself
+		final Point2D axisOrigin = sceneToLocal(yAxis.localToScene(0, 0));
+		if (axisOrigin == null)
+			return;
+		yOffset = axisOrigin.getY();
+		xScale = w / (xMax - xMin);
+
+		// linear axes are mapped by two reference points to save boxing
+		varAxis = yAxis instanceof VariableScaleAxis ? (VariableScaleAxis) yAxis : null;
+		yPos0 = varAxis == null ? yAxis.getDisplayPosition(0) : 0;
+		yScale = varAxis == null ? yAxis.getDisplayPosition(1) - yPos0 : 0;
+		final boolean logScale = varAxis != null && varAxis.getLogScale();
+
+		final int nCols = (int) Math.ceil(w) + 1;
+		for (final Curve curve : curves) {
+			// the part of the strip inside the curve's clip
+			final double clipFrom = Math.max(from, indexToX(curve, curve.clipFrom));
+			final double clipTo = Math.min(to, indexToX(curve, curve.clipTo));
+			if (!(clipFrom < clipTo))
+				continue;
+
+			gc.save();
+			gc.beginPath();
+			gc.rect(clipFrom, 0, clipTo - clipFrom, h);
+			gc.clip();
+			gc.setStroke(curve.color);
+			gc.setFill(curve.color);
+			// include the points whose markers or segments reach into the strip
+			if (updateDecimation(curve, nCols))
+				drawDecimated(gc, curve, logScale, (int) Math.floor(clipFrom - REDRAW_PAD),
+						(int) Math.ceil(clipTo + REDRAW_PAD));
+			else
+				drawFull(gc, curve,
+						(int) Math.floor(xToIndex(curve, clipFrom - REDRAW_PAD)) - 1,
+						(int) Math.ceil(xToIndex(curve, clipTo + REDRAW_PAD)) + 1);
+			gc.restore();
+		}
+	}
+
+	/**
+	 * Draws the points of a curve within an index range.
+	 *
+	 * @param gc    the graphics context
+	 * @param curve the curve
+	 * @param beg   the first point to draw
+	 * @param end   the last point to draw
+	 */
+	private void drawFull(final GraphicsContext gc, final Curve curve, int beg, int end) {
+		beg = Math.max(beg, 0);
+		end = Math.min(end, curve.n - 1);
+		if (curve.style == Style.LINE) {
+			gc.setLineWidth(LINE_WIDTH);
+			gc.beginPath();
+			boolean penDown = false;
+			for (int i = beg; i <= end; i++) {
+				final double py = mapY(curve.y[i]);
+				// e.g. non-positive values on log scale
+				if (!Double.isFinite(py)) {
+					penDown = false;
+					continue;
+				}
+				if (penDown) {
+					gc.lineTo(indexToX(curve, i), py);
+				} else {
+					gc.moveTo(indexToX(curve, i), py);
+					penDown = true;
+				}
+			}
+			gc.stroke();
+		} else {
+			for (int i = beg; i <= end; i++) {
+				final double py = mapY(curve.y[i]);
+				if (Double.isFinite(py))
+					fillDot(gc, indexToX(curve, i), py, DOT_RADIUS);
+			}
+			// hollow out the markers
+			gc.setFill(Color.WHITE);
+			for (int i = beg; i <= end; i++) {
+				final double py = mapY(curve.y[i]);
+				if (Double.isFinite(py))
+					fillDot(gc, indexToX(curve, i), py, DOT_HOLE_RADIUS);
+			}
+		}
+	}
+
+	/**
+	 * Draws the extrema of the columns of a curve within a column range. Lines zig-zag through the
+	 * extrema in their order of occurrence; dots become bars spanning the extrema, which is what
+	 * overlapping markers at this density look like.
+	 *
+	 * @param gc       the graphics context
+	 * @param curve    the curve
+	 * @param logScale true if non-positive values cannot be drawn
+	 * @param beg      the first column to draw
+	 * @param end      the last column to draw
+	 */
+	private void drawDecimated(final GraphicsContext gc, final Curve curve,
+			final boolean logScale, int beg, int end) {
+		final Decimator dec = curve.decimator;
+		beg = Math.max(beg, 0);
+		end = Math.min(end, dec.getNCols() - 1);
+		if (curve.style == Style.LINE) {
+			gc.setLineWidth(LINE_WIDTH);
+			gc.beginPath();
+		}
+		boolean penDown = false;
+		for (int c = beg; c <= end; c++) {
+			if (dec.isEmpty(c))
+				continue;
+			final double lo = mapY(logScale ? dec.getMinPositive(c) : dec.getMin(c));
+			final double hi = mapY(dec.getMax(c));
+			if (!Double.isFinite(lo) || !Double.isFinite(hi)) {
+				penDown = false;
+				continue;
+			}
+			final double px = c + 0.5;
+			if (curve.style == Style.LINE) {
+				final double first = dec.isMinFirst(c) ? lo : hi;
+				final double second = dec.isMinFirst(c) ? hi : lo;
+				if (penDown)
+					gc.lineTo(px, first);
+				else
+					gc.moveTo(px, first);
+				gc.lineTo(px, second);
+				penDown = true;
+			} else {
+				// display y grows downwards
+				gc.fillRect(px - DOT_RADIUS, hi, DOT_RADIUS * 2, lo - hi);
+				fillDot(gc, px, lo, DOT_RADIUS);
+				fillDot(gc, px, hi, DOT_RADIUS);
+			}
+		}
+		if (curve.style == Style.LINE)
+			gc.stroke();
+	}
+
+	/**
+	 * Decimates a curve if it has more points than the canvas has columns. The decimation covers
+	 * all points regardless of the clip and is kept until the points, the width or the x range
+	 * changes.
+	 *
+	 * @param curve the curve
+	 * @param nCols the number of pixel columns
+	 * @return true if the curve should be drawn decimated
+	 */
+	private boolean updateDecimation(final Curve curve, final int nCols) {
+		if (curve.n <= nCols * DECIMATION_RATIO)
+			return false;
+		if (curve.decimationLayout != layoutVersion) {
+			curve.decimator.decimate(curve.y, 0, curve.n, indexToX(curve, 0),
+					curve.dx * xScale, nCols);
+			curve.decimationLayout = layoutVersion;
+		}
+		return true;
+	}
+
+	/**
+	 * @param curve the curve
+	 * @param i     the (fractional) index of a point
+	 * @return the display x of the point
+	 */
+	private double indexToX(final Curve curve, final double i) {
+		return (curve.x0 + i * curve.dx - xMin) * getWidth() / (xMax - xMin);
+	}
+
+	/**
+	 * @param curve the curve
+	 * @param x     the display x
+	 * @return the (fractional) index of the point at <code>x</code>
+	 */
+	private double xToIndex(final Curve curve, final double x) {
+		return ((x * (xMax - xMin) / getWidth()) + xMin - curve.x0) / curve.dx;
+	}
+
+	/**
+	 * @param value the y value
+	 * @return the display y of the value, non-finite if it cannot be drawn
+	 */
+	private double mapY(final double value) {
+		return yOffset + (varAxis != null ? varAxis.toDisplay(value)
+				: yPos0 + value * yScale);
+	}
+
+	/**
+	 * Fills a circle.
+	 *
+	 * @param gc     the graphics context
+	 * @param x      the center x
+	 * @param y      the center y
+	 * @param radius the radius
+	 */
+	private static void fillDot(final GraphicsContext gc, final double x, final double y,
+			final double radius) {
+		gc.fillOval(x - radius, y - radius, radius * 2, radius * 2);
+	}
+}
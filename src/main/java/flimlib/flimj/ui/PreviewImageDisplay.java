@@ -25,11 +25,11 @@ import javafx.application.Platform;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.value.ChangeListener;
-import javafx.embed.swing.SwingFXUtils;
 import javafx.geometry.Bounds;
 import javafx.scene.Group;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
 import javafx.scene.image.PixelWriter;
 import javafx.scene.image.WritableImage;
 import javafx.scene.layout.Pane;
@@ -38,10 +38,14 @@ import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.converter.Converters;
 import net.imglib2.converter.RealLUTConverter;
-import net.imglib2.display.screenimage.awt.ARGBScreenImage;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.IntArray;
 import net.imglib2.type.numeric.ARGBType;
 import net.imglib2.type.numeric.real.FloatType;
 
+import flimlib.flimj.ui.PerfMonitor.Stage;
+
 /**
  * Manages a clickable image display in the Preview pannel.
  */
@@ -101,15 +105,33 @@ public class PreviewImageDisplay {
 	/** The underlying pixel cache */
 	private WritableImage writableImage;
 
-	/** The intermediate cache between IJ and FX */
-	private ARGBScreenImage screenImage;
+	/** The intermediate cache between IJ and FX, in flat (x-fastest) order */
+	private int[] pixels;
+
+	/** {@link #pixels} viewed as an image */
+	private ArrayImg<ARGBType, IntArray> screenImage;
+
+	/**
+	 * The range [start, end) of {@link #writableImage} columns (rows) sampled from each column
+	 * (row) of the source image
+	 */
+	private int[] blockXStart, blockXEnd, blockYStart, blockYEnd;
 
 	/** The values */
 	private RandomAccessibleInterval<FloatType> rawImage;
 
+	/** Reads {@link #rawImage} under the mouse */
+	private RandomAccess<FloatType> rawRA;
+
 	/** The LUT-colored but unannotated image */
 	private RandomAccessibleInterval<ARGBType> coloredImage;
 
+	/** Times the rendering, <code>null</code> if untimed */
+	private PerfMonitor perf;
+
+	/** The listeners and buffers released by {@link #destroy()} */
+	private final Lifecycle lifecycle = new Lifecycle();
+
 	public PreviewImageDisplay(final Pane pane, final Group cursor, final ImageView view) {
 		this.clickPane = pane;
 		this.cursor = cursor;
@@ -129,8 +151,8 @@ public class PreviewImageDisplay {
 		// when coordinate changed: move cursor
 		cursorXYChangedHandler =
 				(obs, oldVal, newVal) -> moveCursorImpl(cursorX.get(), cursorY.get());
-		cursorX.addListener(cursorXYChangedHandler);
-		cursorY.addListener(cursorXYChangedHandler);
+		lifecycle.listen(cursorX, cursorXYChangedHandler);
+		lifecycle.listen(cursorY, cursorXYChangedHandler);
 		cursor.setVisible(false);
 
 		// when parent resized: resize and possibly reload
@@ -139,7 +161,27 @@ public class PreviewImageDisplay {
 			fitSize(newVal.getWidth() - 10, newVal.getHeight() - 10);
 			reloadImageIfNecessary();
 		});
-		view.getParent().layoutBoundsProperty().addListener(bChangeListener);
+		lifecycle.listen(view.getParent().layoutBoundsProperty(), bChangeListener);
+
+		lifecycle.onClose(() -> {
+			view.setImage(null);
+			writableImage = null;
+			pixels = null;
+			screenImage = null;
+			rawImage = null;
+			rawRA = null;
+			coloredImage = null;
+			perf = null;
+		});
+	}
+
+	/**
+	 * Times the coloring and resampling of images in the {@link Stage#PREVIEW_RENDER} stage.
+	 *
+	 * @param perf the monitor, or <code>null</code> to stop timing
+	 */
+	public void setPerfMonitor(final PerfMonitor perf) {
+		this.perf = perf;
 	}
 
 	/**
@@ -170,14 +212,27 @@ public class PreviewImageDisplay {
 	 * @return The value from source image under the mouse event
 	 */
 	public double getValueUnderMouse(final double x, double y) {
-		int pixelX = (int) getMousePixCoord(x, clickPane.getWidth());
-		int pixelY = (int) getMousePixCoord(y, clickPane.getHeight());
-
-		if (rawImage == null)
+		if (rawRA == null)
 			return Double.NaN;
-		RandomAccess<FloatType> ra = rawImage.randomAccess();
-		ra.setPosition(new int[] {pixelX, pixelY});
-		return ra.get().getRealDouble();
+		rawRA.setPosition(getPixelXUnderMouse(x), 0);
+		rawRA.setPosition(getPixelYUnderMouse(y), 1);
+		return rawRA.get().getRealDouble();
+	}
+
+	/**
+	 * @param x the x coordinate of mouse
+	 * @return The column of the source image under the mouse
+	 */
+	public int getPixelXUnderMouse(final double x) {
+		return (int) Math.min(Math.max(getMousePixCoord(x, clickPane.getWidth()), 0), imgW - 1);
+	}
+
+	/**
+	 * @param y the y coordinate of mouse
+	 * @return The row of the source image under the mouse
+	 */
+	public int getPixelYUnderMouse(final double y) {
+		return (int) Math.min(Math.max(getMousePixCoord(y, clickPane.getHeight()), 0), imgH - 1);
 	}
 
 	/**
@@ -192,6 +247,7 @@ public class PreviewImageDisplay {
 	public void setImage(final RandomAccessibleInterval<FloatType> src,
 			final RealLUTConverter<FloatType> converter, final ImageAnnotator annotator) {
 		rawImage = src;
+		rawRA = src != null ? src.randomAccess() : null;
 
 		final int oldW = imgW;
 		final int oldH = imgH;
@@ -206,22 +262,24 @@ public class PreviewImageDisplay {
 
 		// reallocate buffers
 		if (oldW != imgW || oldH != imgH)
-			screenImage = new ARGBScreenImage(imgW, imgH);
+			allocatePixels();
 
 		if (src != null && converter != null) {
 			coloredImage = Converters.convert(src, converter, new ARGBType());
 
 			// convert and annotate image
-			Cursor<ARGBType> dstCsr = screenImage.localizingCursor();
-			RandomAccess<ARGBType> lutedRA = coloredImage.randomAccess();
-			RandomAccess<FloatType> valRA = src.randomAccess();
-			while (dstCsr.hasNext()) {
-				dstCsr.fwd();
-				lutedRA.setPosition(dstCsr);
-				valRA.setPosition(dstCsr);
-
-				dstCsr.get().set(annotator != null ? //
-						annotator.annotate(valRA, lutedRA) : lutedRA.get());
+			try (PerfMonitor.Span span = beginRender()) {
+				Cursor<ARGBType> dstCsr = screenImage.localizingCursor();
+				RandomAccess<ARGBType> lutedRA = coloredImage.randomAccess();
+				RandomAccess<FloatType> valRA = src.randomAccess();
+				while (dstCsr.hasNext()) {
+					dstCsr.fwd();
+					lutedRA.setPosition(dstCsr);
+					valRA.setPosition(dstCsr);
+
+					dstCsr.get().set(annotator != null ? //
+							annotator.annotate(valRA, lutedRA) : lutedRA.get());
+				}
 			}
 
 			view.setOpacity(1);
@@ -230,7 +288,8 @@ public class PreviewImageDisplay {
 			cursor.setVisible(true);
 		} else {
 			// show placeholder
-			SwingFXUtils.fromFXImage(PLACEHOLDER_IMAGE, screenImage.image());
+			PLACEHOLDER_IMAGE.getPixelReader().getPixels(0, 0, imgW, imgH,
+					PixelFormat.getIntArgbInstance(), pixels, 0, imgW);
 
 			view.setOpacity(0.3);
 
@@ -238,13 +297,56 @@ public class PreviewImageDisplay {
 			cursor.setVisible(false);
 		}
 
-		// resize with parent
-		Bounds parentBounds = view.getParent().getLayoutBounds();
-		fitSize(parentBounds.getWidth() - 10, parentBounds.getHeight() - 10);
+		forceReload();
+	}
 
-		// force update as content may change
-		lastReloadPixScale = Double.MIN_VALUE;
-		reloadImageIfNecessary();
+	/**
+	 * Shows an float-valued image whose colors have already been computed. The colors are copied so
+	 * that later {@link #setPixel} calls do not alter <code>argb</code>, which then serves as the
+	 * {@link #getColorImage() color image}.
+	 *
+	 * @param src  The source image
+	 * @param argb The colors of <code>src</code> in flat (x-fastest) order
+	 */
+	public void setImage(final RandomAccessibleInterval<FloatType> src, final int[] argb) {
+		rawImage = src;
+		rawRA = src.randomAccess();
+
+		final int oldW = imgW;
+		final int oldH = imgH;
+		imgW = (int) src.dimension(0);
+		imgH = (int) src.dimension(1);
+		if (oldW != imgW || oldH != imgH)
+			allocatePixels();
+
+		System.arraycopy(argb, 0, pixels, 0, pixels.length);
+		coloredImage = ArrayImgs.argbs(argb, imgW, imgH);
+
+		view.setOpacity(1);
+		clickPane.setVisible(true);
+		cursor.setVisible(true);
+
+		forceReload();
+	}
+
+	/**
+	 * Recolors a single pixel of the current image. Only the on-screen block sampled from this
+	 * pixel is redrawn.
+	 *
+	 * @param index the flat index (<code>x + y * width</code>) of the pixel
+	 * @param argb  the new color
+	 */
+	public void setPixel(final int index, final int argb) {
+		pixels[index] = argb;
+		if (writableImage == null || blockXStart == null)
+			return;
+
+		final int x = index % imgW;
+		final int y = index / imgW;
+		final PixelWriter pw = writableImage.getPixelWriter();
+		for (int sx = blockXStart[x]; sx < blockXEnd[x]; sx++)
+			for (int sy = blockYStart[y]; sy < blockYEnd[y]; sy++)
+				pw.setArgb(sx, sy, argb);
 	}
 
 	/**
@@ -275,11 +377,10 @@ public class PreviewImageDisplay {
 	}
 
 	/**
-	 * Clean up.
+	 * Clean up: removes the listeners and drops the image buffers.
 	 */
 	public void destroy() {
-		cursorX.removeListener(cursorXYChangedHandler);
-		cursorY.removeListener(cursorXYChangedHandler);
+		lifecycle.close();
 	}
 
 	/**
@@ -307,6 +408,27 @@ public class PreviewImageDisplay {
 		setPixScale(Math.min(pixScaleX, pixScaleY));
 	}
 
+	/**
+	 * (Re)allocates {@link #pixels} to the current image size.
+	 */
+	private void allocatePixels() {
+		pixels = new int[imgW * imgH];
+		screenImage = ArrayImgs.argbs(pixels, imgW, imgH);
+	}
+
+	/**
+	 * Refits the view to its parent and redraws the whole image.
+	 */
+	private void forceReload() {
+		// resize with parent
+		Bounds parentBounds = view.getParent().getLayoutBounds();
+		fitSize(parentBounds.getWidth() - 10, parentBounds.getHeight() - 10);
+
+		// force update as content may change
+		lastReloadPixScale = Double.MIN_VALUE;
+		reloadImageIfNecessary();
+	}
+
 	/**
 	 * Converts event coordinate to pixel coordinate in the image
 	 * 
@@ -323,27 +445,67 @@ public class PreviewImageDisplay {
 	 * or the inverse is no less than RELOAD_THR because small pixScale steps (e.g. during window
 	 * resizing) marginally improves appearance.
 	 */
-	private void reloadImageIfNecessary() {
+	void reloadImageIfNecessary() {
 		if (screenImage == null || (Math.max(pixScale / lastReloadPixScale,
 				lastReloadPixScale / pixScale) < RELOAD_THR))
 			return;
 		lastReloadPixScale = pixScale;
 
+		try (PerfMonitor.Span span = beginRender()) {
+			resample();
+		}
+	}
+
+	/**
+	 * Redraws {@link #pixels} into a new {@link #writableImage} of the view's size.
+	 */
+	private void resample() {
 		writableImage = new WritableImage((int) view.getFitWidth(), (int) view.getFitHeight());
 		view.setImage(writableImage);
 
 		// manual nearest neighbor sampling
+		final int wiW = (int) writableImage.getWidth();
+		final int wiH = (int) writableImage.getHeight();
+		final int[] srcX = new int[wiW];
+		final int[] srcY = new int[wiH];
+		blockXStart = new int[imgW];
+		blockXEnd = new int[imgW];
+		blockYStart = new int[imgH];
+		blockYEnd = new int[imgH];
+		mapBlocks(srcX, imgW, blockXStart, blockXEnd);
+		mapBlocks(srcY, imgH, blockYStart, blockYEnd);
+
 		PixelWriter pw = writableImage.getPixelWriter();
-		RandomAccess<ARGBType> ra = screenImage.randomAccess();
-		long[] position = new long[2];
-		final double wiW = writableImage.getWidth();
-		final double wiH = writableImage.getHeight();
 		for (int x = 0; x < wiW; x++)
-			for (int y = 0; y < wiH; y++) {
-				position[0] = Math.round(x / wiW * (imgW - 1));
-				position[1] = Math.round(y / wiH * (imgH - 1));
-				ra.setPosition(position);
-				pw.setArgb(x, y, ra.get().get());
-			}
+			for (int y = 0; y < wiH; y++)
+				pw.setArgb(x, y, pixels[srcX[x] + srcY[y] * imgW]);
+	}
+
+	/**
+	 * @return a span of {@link Stage#PREVIEW_RENDER}, or <code>null</code> (which try-with-resources
+	 *         skips) if untimed
+	 */
+	private PerfMonitor.Span beginRender() {
+		return perf != null ? perf.begin(Stage.PREVIEW_RENDER) : null;
+	}
+
+	/**
+	 * Computes the source coordinate sampled by each on-screen coordinate along one axis, as well
+	 * as the inverse mapping from each source coordinate to the on-screen range sampling it.
+	 *
+	 * @param src        the source coordinate of each on-screen coordinate (output)
+	 * @param srcLen     the source image length along the axis
+	 * @param blockStart the first on-screen coordinate of each source coordinate (output)
+	 * @param blockEnd   one past the last on-screen coordinate of each source coordinate (output)
+	 */
+	private static void mapBlocks(final int[] src, final int srcLen, final int[] blockStart,
+			final int[] blockEnd) {
+		final double len = src.length;
+		for (int i = 0; i < src.length; i++) {
+			src[i] = (int) Math.round(i / len * (srcLen - 1));
+			if (i == 0 || src[i] != src[i - 1])
+				blockStart[src[i]] = i;
+			blockEnd[src[i]] = i + 1;
+		}
 	}
 }
@@ -0,0 +1,241 @@
+/*-
+ * #%L
+ * Fluorescence lifetime analysis in ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2025 Board of Regents of the University of Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package flimlib.flimj.ui;
+
+import flimlib.flimj.FitParams;
+
+/**
+ * Goodness-of-fit statistics of the residuals of a single decay fit. Residuals are weighted by
+ * their Poisson standard deviation <code>sqrt(max(fitted, 1))</code> so that they are comparable
+ * across the decay and between pixels. A good model leaves weighted residuals that are
+ * uncorrelated (autocorrelation near 0, runs test |z| &lt; 2), roughly standard normal and give a
+ * reduced χ² near 1.
+ * <p>
+ * The static methods compute single statistics without allocating and are cheap enough to run for
+ * every pixel of a dataset fit.
+ */
+public class ResidualDiagnostics {
+
+	/** The largest autocorrelation lag computed */
+	public static final int MAX_LAG = 16;
+
+	/** The number of histogram bins */
+	public static final int N_BINS = 24;
+
+	/** The histogram covers weighted residuals in [-HIST_RANGE, HIST_RANGE] */
+	public static final float HIST_RANGE = 4;
+
+	/** The reduced χ² */
+	private final float reducedChiSq;
+
+	/** The z score of the runs test */
+	private final float runsZ;
+
+	/** The autocorrelation at lag 0 (always 1) to {@link #MAX_LAG} */
+	private final float[] autocorrelation;
+
+	/** The fraction of weighted residuals in each bin; outliers go to the outermost bins */
+	private final float[] histogram;
+
+	private ResidualDiagnostics(float reducedChiSq, float runsZ, float[] autocorrelation,
+			float[] histogram) {
+		this.reducedChiSq = reducedChiSq;
+		this.runsZ = runsZ;
+		this.autocorrelation = autocorrelation;
+		this.histogram = histogram;
+	}
+
+	/**
+	 * Computes all diagnostics of a fit.
+	 *
+	 * @param residuals the residuals
+	 * @param fitted    the fitted values
+	 * @param beg       the first index of the fit range in the arrays
+	 * @param end       one past the last index of the fit range in the arrays
+	 * @param nParam    the number of free parameters
+	 * @return the diagnostics
+	 */
+	public static ResidualDiagnostics compute(final float[] residuals, final float[] fitted,
+			final int beg, final int end, final int nParam) {
+		final float[] acf = new float[MAX_LAG + 1];
+		for (int lag = 0; lag <= MAX_LAG; lag++)
+			acf[lag] = autocorrelation(residuals, fitted, beg, end, lag);
+
+		final float[] hist = new float[N_BINS];
+		int n = 0;
+		for (int i = beg; i < end; i++) {
+			final float w = weighted(residuals, fitted, i);
+			if (!Float.isFinite(w))
+				continue;
+			int bin = (int) Math.floor((w + HIST_RANGE) / (2 * HIST_RANGE) * N_BINS);
+			hist[Math.max(0, Math.min(bin, N_BINS - 1))]++;
+			n++;
+		}
+		for (int b = 0; b < N_BINS; b++)
+			hist[b] /= Math.max(n, 1);
+
+		return new ResidualDiagnostics(reducedChiSq(residuals, fitted, beg, end, nParam),
+				runsZ(residuals, beg, end), acf, hist);
+	}
+
+	/**
+	 * @return the reduced χ²
+	 */
+	public float getReducedChiSq() {
+		return reducedChiSq;
+	}
+
+	/**
+	 * @return the z score of the runs test
+	 */
+	public float getRunsZ() {
+		return runsZ;
+	}
+
+	/**
+	 * @return the autocorrelation of weighted residuals at lags 0 to {@link #MAX_LAG}
+	 */
+	public float[] getAutocorrelation() {
+		return autocorrelation;
+	}
+
+	/**
+	 * @return the fraction of weighted residuals in each of {@link #N_BINS} bins over
+	 *         [-{@link #HIST_RANGE}, {@link #HIST_RANGE}]
+	 */
+	public float[] getHistogram() {
+		return histogram;
+	}
+
+	/**
+	 * Locates the fit range in the fitted and residual arrays returned by a fit, which are preceded
+	 * by a lead-in as long as the IRF (at most fitStart) when an IRF is used.
+	 *
+	 * @param params the params of the fit
+	 * @return the index of fitStart in the arrays
+	 */
+	public static int getFitOffset(final FitParams<?> params) {
+		return params.instr == null ? 0 : Math.min(params.instr.length, params.fitStart);
+	}
+
+	/**
+	 * Computes χ² / (n - nParam) with Poisson variances.
+	 *
+	 * @param residuals the residuals
+	 * @param fitted    the fitted values
+	 * @param beg       the first index of the fit range in the arrays
+	 * @param end       one past the last index of the fit range in the arrays
+	 * @param nParam    the number of free parameters
+	 * @return the reduced χ², NaN if there are no degrees of freedom
+	 */
+	public static float reducedChiSq(final float[] residuals, final float[] fitted, final int beg,
+			final int end, final int nParam) {
+		double chiSq = 0;
+		int n = 0;
+		for (int i = beg; i < end; i++) {
+			final float w = weighted(residuals, fitted, i);
+			if (Float.isFinite(w)) {
+				chiSq += w * w;
+				n++;
+			}
+		}
+		return n > nParam ? (float) (chiSq / (n - nParam)) : Float.NaN;
+	}
+
+	/**
+	 * Performs the Wald-Wolfowitz runs test on the signs of the residuals. Too few runs (z &lt;&lt;
+	 * 0) indicate systematic deviation, too many (z &gt;&gt; 0) oscillation.
+	 *
+	 * @param residuals the residuals
+	 * @param beg       the first index of the fit range
+	 * @param end       one past the last index of the fit range
+	 * @return the z score of the number of runs, NaN if undefined
+	 */
+	public static float runsZ(final float[] residuals, final int beg, final int end) {
+		int nPos = 0, nNeg = 0, nRuns = 0;
+		int lastSign = 0;
+		for (int i = beg; i < end; i++) {
+			final int sign = residuals[i] > 0 ? 1 : residuals[i] < 0 ? -1 : 0;
+			// zeros (and NaNs) do not break runs
+			if (sign == 0)
+				continue;
+			if (sign > 0)
+				nPos++;
+			else
+				nNeg++;
+			if (sign != lastSign)
+				nRuns++;
+			lastSign = sign;
+		}
+		final double n = nPos + nNeg;
+		final double mean = 2.0 * nPos * nNeg / n + 1;
+		final double variance = (mean - 1) * (mean - 2) / (n - 1);
+		return variance > 0 ? (float) ((nRuns - mean) / Math.sqrt(variance)) : Float.NaN;
+	}
+
+	/**
+	 * Computes the autocorrelation of weighted residuals.
+	 *
+	 * @param residuals the residuals
+	 * @param fitted    the fitted values
+	 * @param beg       the first index of the fit range in the arrays
+	 * @param end       one past the last index of the fit range in the arrays
+	 * @param lag       the lag
+	 * @return the autocorrelation in [-1, 1], NaN if undefined
+	 */
+	public static float autocorrelation(final float[] residuals, final float[] fitted,
+			final int beg, final int end, final int lag) {
+		double sum = 0;
+		int n = 0;
+		for (int i = beg; i < end; i++) {
+			final float w = weighted(residuals, fitted, i);
+			if (Float.isFinite(w)) {
+				sum += w;
+				n++;
+			}
+		}
+		if (n <= lag)
+			return Float.NaN;
+		final double mean = sum / n;
+
+		double cov = 0, var = 0;
+		for (int i = beg; i < end; i++) {
+			final double d = weighted(residuals, fitted, i) - mean;
+			if (!Double.isFinite(d))
+				continue;
+			var += d * d;
+			if (i + lag < end) {
+				final double dLag = weighted(residuals, fitted, i + lag) - mean;
+				if (Double.isFinite(dLag))
+					cov += d * dLag;
+			}
+		}
+		return var > 0 ? (float) (cov / var) : Float.NaN;
+	}
+
+	/**
+	 * @return the residual at <code>i</code> divided by its Poisson standard deviation
+	 */
+	private static float weighted(final float[] residuals, final float[] fitted, final int i) {
+		return residuals[i] / (float) Math.sqrt(Math.max(fitted[i], 1));
+	}
+}
@@ -0,0 +1,241 @@
+/*-
+ * #%L
+ * Fluorescence lifetime analysis in ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2025 Board of Regents of the University of Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package flimlib.flimj.ui;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * A persistent, size-limited store of dataset fit results on the local disk. Each entry is a
+ * {@link SessionFile} named after a 64-bit hash of the transient data and the canonical fit
+ * configuration, so that an identical fit request finds the results of the previous one. The
+ * least recently used entries are deleted once the store grows over its limit.
+ */
+public class ResultCache {
+
+	/** The system property overriding the cache directory */
+	public static final String DIR_PROPERTY = "flimj.cache.dir";
+
+	/** The system property overriding the size limit, in MiB (0 disables the cache) */
+	public static final String SIZE_PROPERTY = "flimj.cache.size";
+
+	/** The default size limit */
+	public static final long DEFAULT_LIMIT = 1L << 30;
+
+	/** The extension of cache entries */
+	private static final String EXT = ".flimj";
+
+	private static final long P1 = 0x9E3779B185EBCA87L, P2 = 0xC2B2AE3D27D4EB4FL,
+			P3 = 0x165667B19E3779F9L;
+
+	/** The directory holding the entries */
+	private final Path dir;
+
+	/** The size limit in bytes */
+	private final long limit;
+
+	/**
+	 * @param dir   the directory holding the entries, created on the first write
+	 * @param limit the size limit in bytes
+	 */
+	public ResultCache(final Path dir, final long limit) {
+		this.dir = dir;
+		this.limit = limit;
+	}
+
+	/**
+	 * @return the cache in <code>~/.flimj/result-cache</code> limited to {@link #DEFAULT_LIMIT},
+	 *         unless overridden by {@link #DIR_PROPERTY} or {@link #SIZE_PROPERTY}, or
+	 *         <code>null</code> if disabled
+	 */
+	public static ResultCache fromSystemProperties() {
+		final String dirProp = System.getProperty(DIR_PROPERTY);
+		final Path dir = dirProp != null ? Paths.get(dirProp)
+				: Paths.get(System.getProperty("user.home"), ".flimj", "result-cache");
+		long limit = DEFAULT_LIMIT;
+		final String sizeProp = System.getProperty(SIZE_PROPERTY);
+		if (sizeProp != null) {
+			try {
+				limit = Long.parseLong(sizeProp.trim()) << 20;
+			} catch (NumberFormatException e) {
+				// keep the default
+			}
+		}
+		return limit > 0 ? new ResultCache(dir, limit) : null;
+	}
+
+	/**
+	 * Computes the key of a fit request.
+	 *
+	 * @param dataHash the {@link #hash} of the transient data
+	 * @param config   the canonical fit configuration
+	 * @return the key
+	 */
+	public static String key(final long dataHash, final JsonObject config) {
+		long h = mix(P3, dataHash);
+		for (byte b : config.toString().getBytes(StandardCharsets.UTF_8))
+			h = mix(h, b);
+		return String.format("%016x", avalanche(h));
+	}
+
+	/**
+	 * Hashes an image by its values in flat order. This is not cryptographic, only fast and well
+	 * mixed.
+	 *
+	 * @param img the image
+	 * @return the 64-bit hash
+	 */
+	public static long hash(final RandomAccessibleInterval<FloatType> img) {
+		long h = P3;
+		for (long d : Intervals.dimensionsAsLongArray(img))
+			h = mix(h, d);
+		final Cursor<FloatType> csr = Views.flatIterable(img).cursor();
+		while (csr.hasNext())
+			h = mix(h, Float.floatToIntBits(csr.next().get()));
+		return avalanche(h);
+	}
+
+	/**
+	 * @param values an array, or <code>null</code>
+	 * @return the 64-bit hash of the values
+	 */
+	public static long hash(final float[] values) {
+		if (values == null)
+			return 0;
+		long h = mix(P3, values.length);
+		for (float v : values)
+			h = mix(h, Float.floatToIntBits(v));
+		return avalanche(h);
+	}
+
+	/**
+	 * Looks up the results of a fit request. A hit counts as a use of the entry.
+	 *
+	 * @param key    the {@link #key} of the request
+	 * @param config the configuration the key was computed from, compared against the stored one
+	 *               in case of a hash collision
+	 * @return the stored results, of which only the header has been read, or <code>null</code> on
+	 *         a miss
+	 * @throws IOException if the entry exists but cannot be read
+	 */
+	public synchronized SessionFile get(final String key, final JsonObject config)
+			throws IOException {
+		final Path path = dir.resolve(key + EXT);
+		if (!Files.isRegularFile(path))
+			return null;
+		final SessionFile entry = SessionFile.open(path);
+		final JsonElement stored = entry.getMeta().get("config");
+		// NB: compare as text, numbers read back are not of the same type as those written
+		if (stored == null || !stored.toString().equals(config.toString()))
+			return null;
+		Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+		return entry;
+	}
+
+	/**
+	 * Stores the results of a fit request and evicts the least recently used entries if over the
+	 * limit.
+	 *
+	 * @param key    the {@link #key} of the request
+	 * @param config the configuration the key was computed from
+	 * @param blocks the named result images
+	 * @throws IOException if writing fails
+	 */
+	public synchronized void put(final String key, final JsonObject config,
+			final Map<String, RandomAccessibleInterval<FloatType>> blocks) throws IOException {
+		Files.createDirectories(dir);
+		final JsonObject meta = new JsonObject();
+		meta.add("config", config);
+		// NB: written aside and moved into place, so no other instance ever sees a partial entry
+		SessionFile.write(dir.resolve(key + EXT), meta, blocks);
+		evict();
+	}
+
+	/**
+	 * Deletes the least recently used entries until the total size is within the limit.
+	 *
+	 * @throws IOException if the directory cannot be listed
+	 */
+	private void evict() throws IOException {
+		final List<Path> entries = new ArrayList<>();
+		final List<BasicFileAttributes> attrs = new ArrayList<>();
+		long total = 0;
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + EXT)) {
+			for (Path path : stream) {
+				final BasicFileAttributes attr =
+						Files.readAttributes(path, BasicFileAttributes.class);
+				entries.add(path);
+				attrs.add(attr);
+				total += attr.size();
+			}
+		}
+		if (total <= limit)
+			return;
+
+		final List<Integer> order = new ArrayList<>();
+		for (int i = 0; i < entries.size(); i++)
+			order.add(i);
+		order.sort(Comparator.comparing(i -> attrs.get(i).lastModifiedTime()));
+		for (int i : order) {
+			if (total <= limit)
+				break;
+			try {
+				Files.delete(entries.get(i));
+				total -= attrs.get(i).size();
+			} catch (IOException e) {
+				// NB: may be in use (e.g. being read on Windows); try the next one
+			}
+		}
+	}
+
+	private static long mix(final long h, final long v) {
+		return Long.rotateLeft(h ^ (v * P2), 31) * P1;
+	}
+
+	private static long avalanche(long h) {
+		h ^= h >>> 33;
+		h *= P2;
+		h ^= h >>> 29;
+		h *= P3;
+		h ^= h >>> 32;
+		return h;
+	}
+}
@@ -0,0 +1,353 @@
+/*-
+ * #%L
+ * Fluorescence lifetime analysis in ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2025 Board of Regents of the University of Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package flimlib.flimj.ui;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleConsumer;
+
+import net.imagej.Dataset;
+import net.imagej.DatasetService;
+import net.imagej.ImgPlus;
+import net.imagej.axis.Axes;
+import net.imagej.axis.AxisType;
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.converter.Converters;
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgView;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+
+import org.scijava.log.LogService;
+
+import io.scif.services.DatasetIOService;
+
+import flimlib.flimj.ui.FitSchedulerService.Priority;
+
+/**
+ * Writes preview images (parameter maps, intensity, fit status, etc.) as the channels of a single
+ * file. The channels are stacked as a view over the result storage, so the writer reads them plane
+ * by plane without an in-memory copy of the whole stack. The format follows the file extension
+ * (e.g. <code>.ome.tif</code> for OME-TIFF).
+ * <p>
+ * Maps, e.g. τₘ and A%, are prepared in parallel as export tasks of the processor, so that an
+ * export stays within the threads of the scheduler, see {@link MemoryPlanner#planExport}. Progress
+ * is only reported from the calling thread, which prepares maps too while it waits. Both methods
+ * may take long and are meant to run on the scheduler, off the FX thread.
+ */
+public class ResultExporter {
+
+	/** A copy of a preview image with the statistics its LUT is based on */
+	public static class ExportedMap {
+
+		private final String option;
+
+		private final Img<FloatType> img;
+
+		private final float max, p10, p90;
+
+		private ExportedMap(String option, Img<FloatType> img, float max, float p10, float p90) {
+			this.option = option;
+			this.img = img;
+			this.max = max;
+			this.p10 = p10;
+			this.p90 = p90;
+		}
+
+		/**
+		 * Copies an image and computes its statistics from the copy.
+		 *
+		 * @param option the preview option of the image
+		 * @param src    the image
+		 * @return the copy
+		 */
+		static ExportedMap copyOf(String option, RandomAccessibleInterval<FloatType> src) {
+			final float[] data = new float[(int) Intervals.numElements(src)];
+			final Cursor<FloatType> csr = Views.flatIterable(src).cursor();
+			// the histogram is independent of the range, so it is filled while copying
+			final int[] hist = new int[HIST_BINS];
+			float max = Float.NEGATIVE_INFINITY;
+			int nFinite = 0;
+			for (int i = 0; i < data.length; i++) {
+				final float v = csr.next().get();
+				data[i] = v;
+				if (Float.isFinite(v)) {
+					max = Math.max(max, v);
+					hist[bin(v)]++;
+					nFinite++;
+				}
+			}
+			final Img<FloatType> img =
+					ArrayImgs.floats(data, Intervals.dimensionsAsLongArray(src));
+			if (nFinite == 0)
+				return new ExportedMap(option, img, 0, 0, 0);
+			final float[] p = percentiles(data, hist, nFinite, 10, 90);
+			return new ExportedMap(option, img, max, p[0], p[1]);
+		}
+
+		/**
+		 * Selects exact percentiles of the finite values. The histogram locates the bin of each
+		 * rank, then only the members of those bins are sorted.
+		 *
+		 * @param data the values
+		 * @param hist the histogram of finite values by {@link #bin(float)}
+		 * @param n    the number of finite values
+		 * @param ps   the percentiles, between 0 and 100
+		 * @return the values at the percentiles
+		 */
+		private static float[] percentiles(float[] data, int[] hist, int n, double... ps) {
+			final int[] bins = new int[ps.length];
+			final int[] ranks = new int[ps.length];
+			final float[][] members = new float[ps.length][];
+			for (int k = 0; k < ps.length; k++) {
+				final long rank = Math.round(ps[k] / 100 * (n - 1));
+				int bin = 0;
+				long below = 0;
+				while (below + hist[bin] <= rank)
+					below += hist[bin++];
+				bins[k] = bin;
+				ranks[k] = (int) (rank - below);
+				// percentiles in the same bin share its members
+				for (int j = 0; j < k && members[k] == null; j++)
+					if (bins[j] == bin)
+						members[k] = members[j];
+				if (members[k] == null)
+					members[k] = new float[hist[bin]];
+			}
+
+			final int[] nMembers = new int[ps.length];
+			for (float v : data) {
+				if (!Float.isFinite(v))
+					continue;
+				final int bin = bin(v);
+				for (int k = 0; k < ps.length; k++)
+					if (bins[k] == bin) {
+						members[k][nMembers[k]++] = v;
+						break;
+					}
+			}
+
+			final float[] values = new float[ps.length];
+			for (int k = 0; k < ps.length; k++) {
+				if (nMembers[k] > 0)
+					Arrays.sort(members[k]);
+				values[k] = members[k][ranks[k]];
+			}
+			return values;
+		}
+
+		/**
+		 * @return the histogram bin of a value: the high 16 bits of its float representation,
+		 *         ordered like the values
+		 */
+		private static int bin(float v) {
+			int bits = Float.floatToRawIntBits(v);
+			// flip the magnitude of negatives so that the bits order like signed integers
+			bits ^= (bits >> 31) & 0x7fffffff;
+			return (bits >> 16) + HIST_BINS / 2;
+		}
+
+		/**
+		 * @return the preview option of the image
+		 */
+		public String getOption() {
+			return option;
+		}
+
+		/**
+		 * @return the copy of the image
+		 */
+		public Img<FloatType> getImg() {
+			return img;
+		}
+
+		/**
+		 * @return the largest finite value
+		 */
+		public float getMax() {
+			return max;
+		}
+
+		/**
+		 * @return the 10th percentile of finite values
+		 */
+		public float getP10() {
+			return p10;
+		}
+
+		/**
+		 * @return the 90th percentile of finite values
+		 */
+		public float getP90() {
+			return p90;
+		}
+	}
+
+	/**
+	 * The number of histogram bins the percentiles are located with, one per value of the high 16
+	 * bits of a float. Unlike bins over [min, max], these keep their resolution with outliers.
+	 */
+	private static final int HIST_BINS = 1 << 16;
+
+	/** The images always exported along with the chosen ones, if available */
+	public static final List<String> ALWAYS_EXPORTED = List.of("Intensity", "Fit Status");
+
+	private final FitProcessor fp;
+
+	public ResultExporter(final FitProcessor fp) {
+		this.fp = fp;
+	}
+
+	/**
+	 * Copies the preview images of the options along with their statistics.
+	 *
+	 * @param options  the preview options to copy
+	 * @param progress receives the fraction of images copied
+	 * @return the copies of available images, in the order of <code>options</code>
+	 */
+	public List<ExportedMap> copyMaps(final List<String> options, final DoubleConsumer progress) {
+		final Thread caller = Thread.currentThread();
+		final AtomicInteger nDone = new AtomicInteger();
+		final List<Callable<ExportedMap>> tasks = new ArrayList<>();
+		for (String option : options)
+			tasks.add(() -> {
+				final RandomAccessibleInterval<FloatType> src = fp.getPreviewImg(option);
+				final ExportedMap map = src != null ? ExportedMap.copyOf(option, src) : null;
+				final int done = nDone.incrementAndGet();
+				if (Thread.currentThread() == caller)
+					progress.accept((double) done / options.size());
+				return map;
+			});
+		final List<ExportedMap> maps = new ArrayList<>();
+		for (ExportedMap map : fp.invokeAll(Priority.EXPORT, tasks))
+			if (map != null)
+				maps.add(map);
+		progress.accept(1);
+		return maps;
+	}
+
+	/**
+	 * Writes the preview images of the options, plus {@link #ALWAYS_EXPORTED}, to a file.
+	 * Images that are unavailable or of a different size than the first one are skipped.
+	 *
+	 * @param options  the preview options to export
+	 * @param path     the destination
+	 * @param progress receives the fraction of channels prepared (the first half) and written (the
+	 *                 last half)
+	 * @return the plain text names of the exported channels in order
+	 * @throws IOException if writing fails
+	 */
+	public List<String> export(final List<String> options, final String path,
+			final DoubleConsumer progress) throws IOException {
+		final List<String> channels = new ArrayList<>(options);
+		for (String option : ALWAYS_EXPORTED)
+			if (!channels.contains(option))
+				channels.add(option);
+
+		// derived maps are computed as they are requested
+		final Thread caller = Thread.currentThread();
+		final AtomicInteger nPrepared = new AtomicInteger();
+		final List<Callable<RandomAccessibleInterval<FloatType>>> tasks = new ArrayList<>();
+		for (String option : channels)
+			tasks.add(() -> {
+				final RandomAccessibleInterval<FloatType> src = fp.getPreviewImg(option);
+				final int prepared = nPrepared.incrementAndGet();
+				if (Thread.currentThread() == caller)
+					progress.accept(0.5 * prepared / channels.size());
+				return src;
+			});
+		final List<RandomAccessibleInterval<FloatType>> sources =
+				fp.invokeAll(Priority.EXPORT, tasks);
+		progress.accept(0.5);
+
+		final List<RandomAccessibleInterval<FloatType>> planes = new ArrayList<>();
+		final List<String> names = new ArrayList<>();
+		long[] dims = null;
+		for (int c = 0; c < channels.size(); c++) {
+			final String option = channels.get(c);
+			final RandomAccessibleInterval<FloatType> plane = sources.get(c);
+			if (plane == null)
+				continue;
+			final long[] planeDims = Intervals.dimensionsAsLongArray(plane);
+			if (dims == null)
+				dims = planeDims;
+			else if (!Arrays.equals(dims, planeDims)) {
+				// e.g. the IRF dataset may be of a different size
+				fp.getService(LogService.class).warn("Skipped exporting " + option + ": size "
+						+ Arrays.toString(planeDims) + " differs from " + Arrays.toString(dims));
+				continue;
+			}
+			planes.add(Views.zeroMin(plane));
+			names.add(toPlaintext(option));
+		}
+		if (planes.isEmpty())
+			throw new IOException("Nothing to export.");
+
+		// count the samples the writer reads to report each plane as it is written
+		final long planeSize = Intervals.numElements(planes.get(0));
+		final long total = planeSize * planes.size();
+		final AtomicLong nRead = new AtomicLong();
+		for (int c = 0; c < planes.size(); c++)
+			planes.set(c, Converters.convert(planes.get(c), (in, out) -> {
+				out.set(in);
+				final long n = nRead.incrementAndGet();
+				if (n % planeSize == 0)
+					progress.accept(0.5 + 0.5 * Math.min(n, total) / total);
+			}, new FloatType()));
+
+		// HACK: the factory is only used if the writer asks for a copy, which it does not
+		final Img<FloatType> stack =
+				ImgView.wrap(Views.stack(planes), new ArrayImgFactory<>(new FloatType()));
+		final ImgPlus<FloatType> imgp = new ImgPlus<>(stack, String.join(", ", names),
+				new AxisType[] {Axes.X, Axes.Y, Axes.CHANNEL});
+		final Dataset dataset = fp.getService(DatasetService.class).create(imgp);
+		fp.getService(DatasetIOService.class).save(dataset, path);
+		progress.accept(1);
+		return names;
+	}
+
+	/**
+	 * @param name the name of a preview option
+	 * @return the name without subscripts and symbols, suitable as a title or file name
+	 */
+	public static String toPlaintext(String name) {
+		name = name.replace("τ", "tau");
+		name = name.replace("χ²", "chisq");
+		name = name.replace("₁", "_1");
+		name = name.replace("₂", "_2");
+		name = name.replace("₃", "_3");
+		name = name.replace("ₘ", "_m");
+		name = name.replace("ᵢ", "_i");
+		name = name.replace("ᵣ", "_r");
+		name = name.replace("%", "percent");
+		return name;
+	}
+}
@@ -0,0 +1,60 @@
+/*-
+ * #%L
+ * Fluorescence lifetime analysis in ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2025 Board of Regents of the University of Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package flimlib.flimj.ui;
+
+import java.io.IOException;
+
+import javafx.fxml.FXMLLoader;
+
+import org.scijava.service.Service;
+
+/**
+ * Keeps prebuilt copies of the FXML layouts so that opening a dataset does not wait for FXML
+ * parsing, CSS and control construction. Each copy is used by one window only and is replaced in
+ * the background after it is taken.
+ */
+public interface SceneTemplateService extends Service {
+
+	/**
+	 * The system property that disables building layouts ahead of time when set to
+	 * <code>false</code>
+	 */
+	String PREWARM_PROPERTY = "flimj.prewarm";
+
+	/**
+	 * Takes a loaded layout, building it now if no copy is ready. A replacement is only built if
+	 * prewarming is enabled. Must be called on the JavaFX application thread.
+	 *
+	 * @param name the name of the layout, e.g. <code>"plugin-layout"</code>
+	 * @return the loader holding the root and the controller of the layout
+	 * @throws IOException if the FXML is not found
+	 */
+	FXMLLoader take(String name) throws IOException;
+
+	/**
+	 * Builds a copy of a layout on the JavaFX application thread if none is ready. Does nothing if
+	 * prewarming is disabled.
+	 *
+	 * @param name the name of the layout
+	 */
+	void prepare(String name);
+}
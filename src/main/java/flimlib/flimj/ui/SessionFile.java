@@ -0,0 +1,384 @@
+/*-
+ * #%L
+ * Fluorescence lifetime analysis in ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2025 Board of Regents of the University of Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package flimlib.flimj.ui;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.DoubleConsumer;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+
+/**
+ * A fit session on disk: a JSON header followed by raw float blocks. The layout is
+ *
+ * <pre>
+ * "FLIMJSES"     8 bytes magic
+ * version        int32 LE
+ * headerLength   int32 LE
+ * header         UTF-8 JSON, padded with spaces to a multiple of 8 bytes
+ * blocks         float32 LE in flat (x-fastest) order, each starting at a multiple of 8 bytes
+ * </pre>
+ *
+ * The header holds caller-defined metadata under <code>"meta"</code> and the name, dimensions and
+ * offset of each block under <code>"blocks"</code>. Opening a session only reads its header; each
+ * block is read into memory when asked for, so the file is never held open or mapped.
+ */
+public class SessionFile {
+
+	/** The first bytes of a session file */
+	private static final byte[] MAGIC = "FLIMJSES".getBytes(StandardCharsets.US_ASCII);
+
+	/** The current format version */
+	private static final int VERSION = 1;
+
+	/** Blocks are written and read through a buffer of this many bytes */
+	private static final int CHUNK_SIZE = 1 << 20;
+
+	/** The session file */
+	private final Path path;
+
+	/** The metadata */
+	private final JsonObject meta;
+
+	/** The dimensions of each block by name */
+	private final Map<String, long[]> blockDims;
+
+	/** The offset of each block by name */
+	private final Map<String, Long> blockOffsets;
+
+	private SessionFile(final Path path, final JsonObject meta, final Map<String, long[]> blockDims,
+			final Map<String, Long> blockOffsets) {
+		this.path = path;
+		this.meta = meta;
+		this.blockDims = blockDims;
+		this.blockOffsets = blockOffsets;
+	}
+
+	/**
+	 * @return the metadata
+	 */
+	public JsonObject getMeta() {
+		return meta;
+	}
+
+	/**
+	 * @param name the name of the block
+	 * @return true if the session has the block
+	 */
+	public boolean hasBlock(final String name) {
+		return blockDims.containsKey(name);
+	}
+
+	/**
+	 * Reads a block from the file.
+	 *
+	 * @param name the name of the block
+	 * @return a copy of the block, or <code>null</code> if absent
+	 * @throws IOException if reading fails
+	 */
+	public Img<FloatType> getBlock(final String name) throws IOException {
+		final long[] dims = blockDims.get(name);
+		if (dims == null)
+			return null;
+		final float[] data = new float[(int) Intervals.numElements(dims)];
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			final ByteBuffer buf =
+					ByteBuffer.allocateDirect(CHUNK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			long position = blockOffsets.get(name);
+			for (int i = 0; i < data.length;) {
+				buf.clear();
+				buf.limit((int) Math.min(CHUNK_SIZE, (long) (data.length - i) * Float.BYTES));
+				readFully(channel, buf, position);
+				position += buf.limit();
+				buf.flip();
+				final int n = buf.remaining() / Float.BYTES;
+				buf.asFloatBuffer().get(data, i, n);
+				i += n;
+			}
+		}
+		return ArrayImgs.floats(data, dims);
+	}
+
+	/**
+	 * Writes a session. The file is written aside and moved into place, so that an existing
+	 * session at <code>path</code> stays intact if writing fails and may be one of the sources.
+	 *
+	 * @param path   the destination
+	 * @param meta   the metadata
+	 * @param blocks the named images to store, in order
+	 * @throws IOException if writing fails
+	 */
+	public static void write(final Path path, final JsonObject meta,
+			final Map<String, RandomAccessibleInterval<FloatType>> blocks) throws IOException {
+		write(path, meta, blocks, progress -> {});
+	}
+
+	/**
+	 * Writes a session like {@link #write(Path, JsonObject, Map)}, reporting the progress.
+	 *
+	 * @param path     the destination
+	 * @param meta     the metadata
+	 * @param blocks   the named images to store, in order
+	 * @param progress receives the fraction of block data written, after each block
+	 * @throws IOException if writing fails
+	 */
+	public static void write(final Path path, final JsonObject meta,
+			final Map<String, RandomAccessibleInterval<FloatType>> blocks,
+			final DoubleConsumer progress) throws IOException {
+		// lay out blocks after the header
+		final JsonArray blockInfos = new JsonArray();
+		for (Map.Entry<String, RandomAccessibleInterval<FloatType>> entry : blocks.entrySet()) {
+			final JsonObject info = new JsonObject();
+			info.addProperty("name", entry.getKey());
+			final JsonArray dims = new JsonArray();
+			for (long d : Intervals.dimensionsAsLongArray(entry.getValue()))
+				dims.add(d);
+			info.add("dims", dims);
+			blockInfos.add(info);
+		}
+		final JsonObject header = new JsonObject();
+		header.add("meta", meta);
+		header.add("blocks", blockInfos);
+
+		// offsets depend on the header length, which depends on the offsets: reserve the widest
+		for (int i = 0; i < blockInfos.size(); i++)
+			blockInfos.get(i).getAsJsonObject().addProperty("offset", Long.MAX_VALUE);
+		final int headerLength = align(header.toString().getBytes(StandardCharsets.UTF_8).length);
+		long offset = MAGIC.length + 8 + headerLength;
+		int i = 0;
+		for (RandomAccessibleInterval<FloatType> block : blocks.values()) {
+			blockInfos.get(i++).getAsJsonObject().addProperty("offset", offset);
+			offset += align(Intervals.numElements(block) * Float.BYTES);
+		}
+		final byte[] headerBytes = pad(header.toString().getBytes(StandardCharsets.UTF_8),
+				headerLength);
+
+		final Path dir = path.toAbsolutePath().getParent();
+		final Path tmp = Files.createTempFile(dir, path.getFileName().toString(), ".tmp");
+		try {
+			try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING)) {
+				writeBlocks(channel, headerBytes, blocks, progress);
+			}
+			try {
+				Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+	/**
+	 * Writes the prefix, the header and the blocks.
+	 *
+	 * @param channel     the destination
+	 * @param headerBytes the padded header
+	 * @param blocks      the blocks in the order of the header
+	 * @param progress    receives the fraction of block data written, after each block
+	 * @throws IOException if writing fails
+	 */
+	private static void writeBlocks(final FileChannel channel, final byte[] headerBytes,
+			final Map<String, RandomAccessibleInterval<FloatType>> blocks,
+			final DoubleConsumer progress) throws IOException {
+		final ByteBuffer buf = ByteBuffer.allocateDirect(CHUNK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		buf.put(MAGIC).putInt(VERSION).putInt(headerBytes.length);
+		buf.flip();
+		writeFully(channel, buf);
+		writeFully(channel, ByteBuffer.wrap(headerBytes));
+
+		long total = 0, written = 0;
+		for (RandomAccessibleInterval<FloatType> block : blocks.values())
+			total += Intervals.numElements(block);
+		for (RandomAccessibleInterval<FloatType> block : blocks.values()) {
+			buf.clear();
+			final long n = Intervals.numElements(block);
+			final Cursor<FloatType> csr = Views.flatIterable(block).cursor();
+			for (long j = 0; j < n; j++) {
+				if (buf.remaining() < Float.BYTES) {
+					buf.flip();
+					writeFully(channel, buf);
+					buf.clear();
+				}
+				buf.putFloat(csr.next().get());
+			}
+			// pad to alignment
+			final int padding = (int) (align(n * Float.BYTES) - n * Float.BYTES);
+			for (int p = 0; p < padding; p++) {
+				if (!buf.hasRemaining()) {
+					buf.flip();
+					writeFully(channel, buf);
+					buf.clear();
+				}
+				buf.put((byte) 0);
+			}
+			buf.flip();
+			writeFully(channel, buf);
+			written += n;
+			progress.accept(total > 0 ? (double) written / total : 1);
+		}
+	}
+
+	/**
+	 * Opens a session. Only the header is read.
+	 *
+	 * @param path the session file
+	 * @return the session
+	 * @throws IOException if the file cannot be read, is not a session file, has a corrupt
+	 *                     header or has a block too large to be read into memory
+	 */
+	public static SessionFile open(final Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			final ByteBuffer prefix =
+					ByteBuffer.allocate(MAGIC.length + 8).order(ByteOrder.LITTLE_ENDIAN);
+			readFully(channel, prefix, 0);
+			prefix.flip();
+			final byte[] magic = new byte[MAGIC.length];
+			prefix.get(magic);
+			if (!Arrays.equals(magic, MAGIC))
+				throw new IOException("Not a FLIMJ session file: " + path);
+			final int version = prefix.getInt();
+			if (version > VERSION)
+				throw new IOException("Unsupported session file version " + version);
+			final int headerLength = prefix.getInt();
+			final long dataStart = MAGIC.length + 8;
+			if (headerLength < 0 || headerLength > channel.size() - dataStart)
+				throw new IOException("Invalid session file header length " + headerLength);
+
+			final ByteBuffer headerBuf = ByteBuffer.allocate(headerLength);
+			readFully(channel, headerBuf, dataStart);
+			try {
+				return parseHeader(path,
+						new String(headerBuf.array(), StandardCharsets.UTF_8).trim(),
+						channel.size());
+			} catch (RuntimeException e) {
+				// NB: a truncated or hand-edited header surfaces as JsonParseException,
+				// NullPointerException (missing field), IllegalStateException or
+				// ClassCastException (wrong JSON type), NumberFormatException, ...
+				throw new IOException("Corrupt session file header: " + path, e);
+			}
+		}
+	}
+
+	/**
+	 * Parses the JSON header and checks every block against the file size.
+	 *
+	 * @param path     the session file (for the result)
+	 * @param json     the header text
+	 * @param fileSize the size of the session file in bytes
+	 * @return the parsed session file
+	 * @throws IOException if a block is too large or lies outside the file
+	 */
+	private static SessionFile parseHeader(final Path path, final String json, final long fileSize)
+			throws IOException {
+		final JsonObject header = JsonParser.parseString(json).getAsJsonObject();
+		final JsonObject meta = header.getAsJsonObject("meta");
+		if (meta == null)
+			throw new IOException("Session file has no metadata: " + path);
+
+		final Map<String, long[]> blockDims = new LinkedHashMap<>();
+		final Map<String, Long> blockOffsets = new LinkedHashMap<>();
+		for (JsonElement elem : header.getAsJsonArray("blocks")) {
+			final JsonObject info = elem.getAsJsonObject();
+			final String name = info.get("name").getAsString();
+			final JsonArray dimsJson = info.getAsJsonArray("dims");
+			final long[] dims = new long[dimsJson.size()];
+			for (int d = 0; d < dims.length; d++) {
+				dims[d] = dimsJson.get(d).getAsLong();
+				if (dims[d] < 0)
+					throw new IOException("Block " + name + " has a negative dimension");
+			}
+			final long offset = info.get("offset").getAsLong();
+			final long size = Intervals.numElements(dims) * Float.BYTES;
+			if (size > Integer.MAX_VALUE)
+				throw new IOException("Block " + name + " is too large to read");
+			if (offset < 0 || offset > fileSize - size)
+				throw new IOException("Unexpected end of session file");
+			blockDims.put(name, dims);
+			blockOffsets.put(name, offset);
+		}
+		return new SessionFile(path, meta, blockDims, blockOffsets);
+	}
+
+	/**
+	 * @return the smallest multiple of 8 not less than <code>n</code>
+	 */
+	private static int align(final int n) {
+		return (n + 7) & ~7;
+	}
+
+	/**
+	 * @return the smallest multiple of 8 not less than <code>n</code>
+	 */
+	private static long align(final long n) {
+		return (n + 7) & ~7L;
+	}
+
+	/**
+	 * @return <code>bytes</code> padded with spaces to <code>length</code>
+	 */
+	private static byte[] pad(final byte[] bytes, final int length) {
+		final byte[] padded = Arrays.copyOf(bytes, length);
+		Arrays.fill(padded, bytes.length, length, (byte) ' ');
+		return padded;
+	}
+
+	private static void writeFully(final FileChannel channel, final ByteBuffer buf)
+			throws IOException {
+		while (buf.hasRemaining())
+			channel.write(buf);
+	}
+
+	private static void readFully(final FileChannel channel, final ByteBuffer buf, long position)
+			throws IOException {
+		while (buf.hasRemaining()) {
+			final int n = channel.read(buf, position);
+			if (n < 0)
+				throw new IOException("Unexpected end of session file");
+			position += n;
+		}
+	}
+}
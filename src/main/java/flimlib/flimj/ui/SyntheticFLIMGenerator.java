@@ -0,0 +1,534 @@
+/*-
+ * #%L
+ * Fluorescence lifetime analysis in ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2025 Board of Regents of the University of Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package flimlib.flimj.ui;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+import net.imglib2.cache.img.CachedCellImg;
+import net.imglib2.cache.img.ReadOnlyCachedCellImgFactory;
+import net.imglib2.cache.img.ReadOnlyCachedCellImgOptions;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Intervals;
+
+import flimlib.flimj.FitParams;
+
+/**
+ * Generates synthetic FLIM datasets of the model fitted by {@link FitProcessor} (<code>z +
+ * sum[a_i * exp(-t / tau_i)]</code>), with lifetimes varying along x, brightness along y and the
+ * component fractions along the diagonal. Decays are optionally convolved with a Gaussian IRF and
+ * get Poisson noise. Each pixel draws from its own random stream, so the data depends only on the
+ * settings and the seed, never on the order or the parallelism of generation.
+ * <p>
+ * The data can be generated into memory, as a lazy cached image or streamed to a raw file, so
+ * that sizes up to e.g. 4096×4096×1024 fit on ordinary machines.
+ * </p>
+ */
+public class SyntheticFLIMGenerator {
+
+	/** The number of samples generated at once per task */
+	private static final int CHUNK_SAMPLES = 1 << 22;
+
+	/** FWHM / sigma of a Gaussian */
+	private static final double FWHM_PER_SIGMA = 2 * Math.sqrt(2 * Math.log(2));
+
+	/** Means below this get exact Poisson samples, above it a normal approximation */
+	private static final double POISSON_EXACT_MAX = 30;
+
+	private final int width, height, nTime, ltAxis;
+
+	private final float xInc, onset, tauSpread, minPhotons, maxPhotons, background;
+
+	private final float[] taus;
+
+	private final boolean noise;
+
+	private final long seed;
+
+	/** The normalized IRF, <code>null</code> if none */
+	private final float[] irf;
+
+	/** The dimensions in output order, the position of the y axis and the rows per chunk */
+	private final long[] dims;
+
+	private final int yPos, chunkRows;
+
+	private SyntheticFLIMGenerator(final Builder b) {
+		width = b.width;
+		height = b.height;
+		nTime = b.nTime;
+		ltAxis = b.ltAxis;
+		xInc = b.xInc;
+		onset = b.onset;
+		taus = b.taus.clone();
+		tauSpread = b.tauSpread;
+		minPhotons = b.minPhotons;
+		maxPhotons = b.maxPhotons;
+		background = b.background;
+		noise = b.noise;
+		seed = b.seed;
+
+		if (b.irfFWHM > 0) {
+			irf = new float[nTime];
+			final double sigma = b.irfFWHM / FWHM_PER_SIGMA;
+			double sum = 0;
+			for (int t = 0; t < nTime; t++) {
+				final double d = (t * xInc - b.irfCenter) / sigma;
+				sum += irf[t] = (float) Math.exp(-0.5 * d * d);
+			}
+			for (int t = 0; t < nTime; t++)
+				irf[t] /= sum;
+		} else
+			irf = null;
+
+		dims = FitProcessor.swapInLtAxis(new long[] {width, height, nTime}, ltAxis);
+		// y comes after x, and before t unless t is last
+		yPos = ltAxis == 2 ? 1 : 2;
+		chunkRows = (int) Math.max(1, Math.min(height, CHUNK_SAMPLES / ((long) width * nTime)));
+	}
+
+	/**
+	 * @return a builder of a 256×256×256 dataset of two components and no IRF
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * @return the dimensions of the generated image, with the lifetime axis at <code>ltAxis</code>
+	 */
+	public long[] getDimensions() {
+		return dims.clone();
+	}
+
+	/**
+	 * @return the normalized IRF the decays are convolved with, <code>null</code> if none
+	 */
+	public float[] getIRF() {
+		return irf != null ? irf.clone() : null;
+	}
+
+	/**
+	 * Computes the noise-free parameters of a pixel in the layout of the fit results: <code>[z,
+	 * a_1, tau_1, a_2, tau_2, ...]</code>. Without an IRF, these reproduce the decay after the onset
+	 * through {@link FitProcessor#getFitFunc()}.
+	 *
+	 * @param x   the x coordinate
+	 * @param y   the y coordinate
+	 * @param dst the destination of length <code>2 * nComp + 1</code>
+	 * @return <code>dst</code>
+	 */
+	public float[] getParams(final int x, final int y, final float[] dst) {
+		final int nComp = taus.length;
+		final float u = width > 1 ? (float) x / (width - 1) : 0.5f;
+		final float v = height > 1 ? (float) y / (height - 1) : 0.5f;
+		final float w = width + height > 2 ? (float) (x + y) / (width + height - 2) : 0.5f;
+		final float photons = minPhotons + (maxPhotons - minPhotons) * v;
+		// the first component takes 20-80%, the others share the rest
+		final float first = nComp > 1 ? 0.2f + 0.6f * w : 1;
+		dst[0] = background;
+		for (int c = 0; c < nComp; c++) {
+			dst[2 * c + 1] = photons * (c == 0 ? first : (1 - first) / (nComp - 1));
+			dst[2 * c + 2] = taus[c] * (1 + tauSpread * (u - 0.5f));
+		}
+		return dst;
+	}
+
+	/**
+	 * Generates the dataset into memory in parallel.
+	 *
+	 * @return the image
+	 * @throws IllegalStateException if the dataset has more than 2<sup>31</sup> - 1 samples
+	 */
+	public Img<FloatType> generate() {
+		final long n = Intervals.numElements(dims);
+		if (n > Integer.MAX_VALUE)
+			throw new IllegalStateException(
+					"Too large for memory, use generateLazy() or write() instead: "
+							+ Arrays.toString(dims));
+		final float[] data = new float[(int) n];
+		try {
+			forEachChunk((y0, chunk, run, offset, length) -> System.arraycopy(chunk,
+					run * length, data, (int) offset, length));
+		} catch (IOException e) {
+			// NB: copying never throws
+			throw new UncheckedIOException(e);
+		}
+		return ArrayImgs.floats(data, dims);
+	}
+
+	/**
+	 * Wraps the dataset in an image whose blocks of rows are generated on first access and may be
+	 * evicted under memory pressure.
+	 *
+	 * @return the image
+	 */
+	public CachedCellImg<FloatType, ?> generateLazy() {
+		final int[] cellDims = new int[3];
+		for (int d = 0; d < 3; d++)
+			cellDims[d] = d == yPos ? chunkRows : (int) dims[d];
+		return new ReadOnlyCachedCellImgFactory(
+				ReadOnlyCachedCellImgOptions.options().cellDimensions(cellDims)).create(dims,
+						new FloatType(), cell -> {
+							final int y0 = (int) cell.min(yPos);
+							fillRows(y0, y0 + (int) cell.dimension(yPos),
+									(float[]) cell.getStorageArray());
+						});
+	}
+
+	/**
+	 * Streams the dataset to a file as raw little-endian 32-bit floats in the flat order of
+	 * {@link #getDimensions()}, generating blocks of rows in parallel.
+	 *
+	 * @param path the destination
+	 * @throws IOException if writing fails
+	 */
+	public void write(final Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			forEachChunk((y0, chunk, run, offset, length) -> {
+				final ByteBuffer buf =
+						ByteBuffer.allocate(length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+				buf.asFloatBuffer().put(chunk, run * length, length);
+				long position = offset * Float.BYTES;
+				while (buf.hasRemaining())
+					position += channel.write(buf, position);
+			});
+		}
+	}
+
+	/**
+	 * Creates the params of a dataset generated by this generator, with the IRF (if any) as the
+	 * instrument response.
+	 *
+	 * @param transMap the generated image
+	 * @return the params, ready for {@link FitProcessor}
+	 */
+	public FitParams<FloatType> makeParams(final Img<FloatType> transMap) {
+		final FitParams<FloatType> params = new FitParams<>();
+		params.transMap = transMap;
+		params.ltAxis = ltAxis;
+		params.xInc = xInc;
+		params.instr = getIRF();
+		return params;
+	}
+
+	/** Receives a run of a generated chunk that is contiguous in the whole image */
+	@FunctionalInterface
+	private static interface RunSink {
+
+		/**
+		 * @param y0     the first row of the chunk
+		 * @param chunk  the chunk
+		 * @param run    the index of the run in the chunk
+		 * @param offset the flat index in the image of the first sample of the run
+		 * @param length the number of samples of each run
+		 * @throws IOException if the sink fails
+		 */
+		void accept(int y0, float[] chunk, int run, long offset, int length) throws IOException;
+	}
+
+	/**
+	 * Generates all chunks of rows in parallel and hands them over run by run.
+	 *
+	 * @param sink the destination of runs
+	 * @throws IOException if the sink fails
+	 */
+	private void forEachChunk(final RunSink sink) throws IOException {
+		// samples of one row along the axes before y, and of all rows
+		long faster = 1;
+		for (int d = 0; d < yPos; d++)
+			faster *= dims[d];
+		final long plane = faster * height;
+		final int nRuns = (int) (Intervals.numElements(dims) / plane);
+		final long fasterSamples = faster;
+
+		final int nChunks = (height + chunkRows - 1) / chunkRows;
+		try {
+			IntStream.range(0, nChunks).parallel().forEach(i -> {
+				final int y0 = i * chunkRows;
+				final int y1 = Math.min(y0 + chunkRows, height);
+				final float[] chunk = new float[(int) ((long) width * nTime * (y1 - y0))];
+				fillRows(y0, y1, chunk);
+				final int length = (int) (fasterSamples * (y1 - y0));
+				for (int r = 0; r < nRuns; r++) {
+					try {
+						sink.accept(y0, chunk, r, r * plane + y0 * fasterSamples, length);
+					} catch (IOException e) {
+						throw new RuntimeException(e);
+					}
+				}
+			});
+		} catch (RuntimeException e) {
+			if (e.getCause() instanceof IOException)
+				throw (IOException) e.getCause();
+			throw e;
+		}
+	}
+
+	/**
+	 * Generates rows <code>[y0, y1)</code> in the flat order of {@link #dims} restricted to these
+	 * rows.
+	 *
+	 * @param y0  the first row
+	 * @param y1  one past the last row
+	 * @param dst the destination
+	 */
+	private void fillRows(final int y0, final int y1, final float[] dst) {
+		// strides of x, y and t within the chunk
+		final long[] chunkDims = dims.clone();
+		chunkDims[yPos] = y1 - y0;
+		final long[] strides = new long[3];
+		strides[0] = 1;
+		for (int d = 1; d < 3; d++)
+			strides[d] = strides[d - 1] * chunkDims[d - 1];
+		final long[] xyt = FitProcessor.swapOutLtAxis(strides.clone(), ltAxis);
+		final int xStride = (int) xyt[0], yStride = (int) xyt[1], tStride = (int) xyt[2];
+
+		final float[] params = new float[2 * taus.length + 1];
+		final float[] decay = new float[nTime];
+		final float[] conv = new float[nTime];
+		for (int y = y0; y < y1; y++) {
+			for (int x = 0; x < width; x++) {
+				getParams(x, y, params);
+				decay(params, decay, conv);
+				if (noise) {
+					final long pixel = (long) y * width + x;
+					final SplittableRandom rng =
+							new SplittableRandom(seed ^ pixel * 0x9E3779B97F4A7C15L);
+					for (int t = 0; t < nTime; t++)
+						decay[t] = poisson(rng, decay[t]);
+				}
+				int i = x * xStride + (y - y0) * yStride;
+				for (int t = 0; t < nTime; t++, i += tStride)
+					dst[i] = decay[t];
+			}
+		}
+	}
+
+	/**
+	 * Computes the noise-free decay of a pixel.
+	 *
+	 * @param params the parameters from {@link #getParams}
+	 * @param dst    the decay (output)
+	 * @param conv   a buffer of the same length
+	 */
+	private void decay(final float[] params, final float[] dst, final float[] conv) {
+		Arrays.fill(dst, params[0]);
+		for (int c = 1; c < params.length; c += 2) {
+			final float a = params[c];
+			final double q = Math.exp(-xInc / params[c + 1]);
+			if (irf != null) {
+				// the convolution with an exponential kernel a * q^j is a first order recursion
+				double s = 0;
+				for (int t = 0; t < nTime; t++) {
+					s = irf[t] + q * s;
+					dst[t] += a * s;
+				}
+			} else {
+				// same as z + sum[a_i * exp(-t / tau_i)] after the onset
+				final int start = Math.max(0, (int) Math.ceil(onset / xInc));
+				double e = Math.exp(-(start * xInc - onset) / params[c + 1]);
+				for (int t = start; t < nTime; t++, e *= q)
+					dst[t] += a * e;
+			}
+		}
+	}
+
+	/**
+	 * @param rng  the random stream
+	 * @param mean the mean
+	 * @return a Poisson-distributed count
+	 */
+	private static float poisson(final SplittableRandom rng, final float mean) {
+		if (!(mean > 0))
+			return 0;
+		if (mean < POISSON_EXACT_MAX) {
+			// Knuth's multiplication method
+			final double limit = Math.exp(-mean);
+			int k = 0;
+			double p = rng.nextDouble();
+			while (p > limit) {
+				k++;
+				p *= rng.nextDouble();
+			}
+			return k;
+		}
+		// normal approximation
+		return Math.max(0, Math.round(mean + (float) (rng.nextGaussian() * Math.sqrt(mean))));
+	}
+
+	/**
+	 * Configures a {@link SyntheticFLIMGenerator}. Times are in the unit of the time bin (e.g. ns).
+	 */
+	public static class Builder {
+
+		private int width = 256, height = 256, nTime = 256, ltAxis = 2;
+
+		private float xInc = 12.5f / 256, onset = 1.25f, tauSpread = 0.5f;
+
+		private float[] taus = {0.5f, 2.5f};
+
+		private float minPhotons = 50, maxPhotons = 500, background = 0;
+
+		private float irfCenter, irfFWHM;
+
+		private boolean noise = true;
+
+		private long seed = 0x5eedL;
+
+		private Builder() {}
+
+		/**
+		 * @param width  the width
+		 * @param height the height
+		 * @return this builder
+		 */
+		public Builder size(final int width, final int height) {
+			if (width < 1 || height < 1)
+				throw new IllegalArgumentException("Size must be positive");
+			this.width = width;
+			this.height = height;
+			return this;
+		}
+
+		/**
+		 * @param nTime the number of time bins
+		 * @param xInc  the width of a time bin
+		 * @return this builder
+		 */
+		public Builder timeBins(final int nTime, final float xInc) {
+			if (nTime < 1 || !(xInc > 0))
+				throw new IllegalArgumentException("Time bins must be positive");
+			this.nTime = nTime;
+			this.xInc = xInc;
+			return this;
+		}
+
+		/**
+		 * @param ltAxis the index of the lifetime axis in the output (0, 1 or 2)
+		 * @return this builder
+		 */
+		public Builder ltAxis(final int ltAxis) {
+			if (ltAxis < 0 || ltAxis > 2)
+				throw new IllegalArgumentException("Lifetime axis must be 0, 1 or 2");
+			this.ltAxis = ltAxis;
+			return this;
+		}
+
+		/**
+		 * @param taus the lifetime of each component at the center of the image
+		 * @return this builder
+		 */
+		public Builder taus(final float... taus) {
+			if (taus.length < 1)
+				throw new IllegalArgumentException("At least one component is required");
+			this.taus = taus.clone();
+			return this;
+		}
+
+		/**
+		 * @param tauSpread the relative change of the lifetimes from left to right, e.g. 0.5 for
+		 *                  75% to 125% of {@link #taus}
+		 * @return this builder
+		 */
+		public Builder tauSpread(final float tauSpread) {
+			this.tauSpread = tauSpread;
+			return this;
+		}
+
+		/**
+		 * @param minPhotons the peak photon count of the top row
+		 * @param maxPhotons the peak photon count of the bottom row
+		 * @return this builder
+		 */
+		public Builder photons(final float minPhotons, final float maxPhotons) {
+			this.minPhotons = minPhotons;
+			this.maxPhotons = maxPhotons;
+			return this;
+		}
+
+		/**
+		 * @param background the constant offset z
+		 * @return this builder
+		 */
+		public Builder background(final float background) {
+			this.background = background;
+			return this;
+		}
+
+		/**
+		 * @param onset the time the decays start without an IRF
+		 * @return this builder
+		 */
+		public Builder onset(final float onset) {
+			this.onset = onset;
+			return this;
+		}
+
+		/**
+		 * @param center the time of the IRF peak
+		 * @param fwhm   the full width at half maximum of the IRF, 0 for no IRF
+		 * @return this builder
+		 */
+		public Builder irf(final float center, final float fwhm) {
+			this.irfCenter = center;
+			this.irfFWHM = fwhm;
+			return this;
+		}
+
+		/**
+		 * @param noise whether to add Poisson noise
+		 * @return this builder
+		 */
+		public Builder noise(final boolean noise) {
+			this.noise = noise;
+			return this;
+		}
+
+		/**
+		 * @param seed the random seed
+		 * @return this builder
+		 */
+		public Builder seed(final long seed) {
+			this.seed = seed;
+			return this;
+		}
+
+		/**
+		 * @return the generator
+		 */
+		public SyntheticFLIMGenerator build() {
+			return new SyntheticFLIMGenerator(this);
+		}
+	}
+}
@@ -0,0 +1,134 @@
+/*-
+ * #%L
+ * Fluorescence lifetime analysis in ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2025 Board of Regents of the University of Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package flimlib.flimj.ui;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+/**
+ * A pixel-major copy of a transient map, where the decay of each pixel occupies a contiguous run of
+ * floats. Reading (and binning) the decay of any pixel is then a sequential, allocation-free scan,
+ * which is fast enough to follow the mouse. The store is as large as the dataset, so it should be
+ * built off the JavaFX thread and only if it fits in memory.
+ */
+public class TransientStore {
+
+	/** The largest number of floats in a store */
+	public static final long MAX_SIZE = Integer.MAX_VALUE - 8;
+
+	/** Size of the image and the number of time bins */
+	private final int width, height, nTime;
+
+	/** The decays in pixel-major order */
+	private final float[] data;
+
+	/**
+	 * Copies a transient map.
+	 *
+	 * @param transMap  the transient map
+	 * @param axisOrder the indices of the x, y and lifetime axes in <code>transMap</code>
+	 * @throws IllegalArgumentException if the map has more than {@link #MAX_SIZE} samples
+	 */
+	public TransientStore(final RandomAccessibleInterval<FloatType> transMap, final int[] axisOrder) {
+		final int X = axisOrder[0], Y = axisOrder[1], T = axisOrder[2];
+		width = (int) transMap.dimension(X);
+		height = (int) transMap.dimension(Y);
+		nTime = (int) transMap.dimension(T);
+
+		final long size = (long) width * height * nTime;
+		if (size > MAX_SIZE)
+			throw new IllegalArgumentException("Too large to copy: " + size + " samples");
+		data = new float[(int) size];
+		// visit the source in its own order and scatter into pixel-major order
+		final long[] min = new long[3];
+		transMap.min(min);
+		final Cursor<FloatType> csr = Views.flatIterable(transMap).localizingCursor();
+		while (csr.hasNext()) {
+			final float value = csr.next().get();
+			final int x = (int) (csr.getLongPosition(X) - min[X]);
+			final int y = (int) (csr.getLongPosition(Y) - min[Y]);
+			final int t = (int) (csr.getLongPosition(T) - min[T]);
+			data[(x + y * width) * nTime + t] = value;
+		}
+	}
+
+	/**
+	 * @return the width of the image
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * @return the height of the image
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * @return the number of time bins
+	 */
+	public int getNTime() {
+		return nTime;
+	}
+
+	/**
+	 * Sums the decays in the square neighborhood of a pixel, as the preview fit does. Pixels outside
+	 * of the image count as zero, so a pixel outside (e.g. of a differently sized IRF image) reads
+	 * an empty decay.
+	 *
+	 * @param x         the x coordinate of the pixel
+	 * @param y         the y coordinate of the pixel
+	 * @param binRadius the radius of the neighborhood
+	 * @param dst       receives the summed decay, of length at least {@link #getNTime()}
+	 */
+	public void fill(final int x, final int y, final int binRadius, final float[] dst) {
+		sum(x - binRadius, y - binRadius, x + binRadius, y + binRadius, dst);
+	}
+
+	/**
+	 * Sums the decays in a rectangle. Pixels outside of the image count as zero.
+	 *
+	 * @param minX the first column of the rectangle
+	 * @param minY the first row of the rectangle
+	 * @param maxX the last column of the rectangle
+	 * @param maxY the last row of the rectangle
+	 * @param dst  receives the summed decay, of length at least {@link #getNTime()}
+	 */
+	public void sum(final int minX, final int minY, final int maxX, final int maxY,
+			final float[] dst) {
+		for (int t = 0; t < nTime; t++)
+			dst[t] = 0;
+		final int x0 = Math.max(minX, 0), x1 = Math.min(maxX, width - 1);
+		final int y0 = Math.max(minY, 0), y1 = Math.min(maxY, height - 1);
+		for (int j = y0; j <= y1; j++) {
+			for (int i = x0; i <= x1; i++) {
+				int offset = (i + j * width) * nTime;
+				for (int t = 0; t < nTime; t++)
+					dst[t] += data[offset++];
+			}
+		}
+	}
+}
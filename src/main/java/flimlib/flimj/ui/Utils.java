@@ -22,6 +22,7 @@
 package flimlib.flimj.ui;
 
 import java.text.DecimalFormat;
+import java.text.FieldPosition;
 import java.text.ParseException;
 import java.util.regex.Pattern;
 import org.scijava.util.ColorRGB;
@@ -38,6 +39,9 @@ public class Utils {
 	private static final DecimalFormat percentDf = new DecimalFormat("0.##%");
 	private static final DecimalFormat normalDf = new DecimalFormat("0.#####");
 
+	/** Ignored by the formats, reused to not allocate */
+	private static final FieldPosition IGNORED_POS = new FieldPosition(0);
+
 	private static final Pattern NUMBER_PATTERN =
 			Pattern.compile("[-+]?(([0-9]*.?[0-9]+(([eE][-+]?[0-9]+)|%)?)|∞)");
 
@@ -66,6 +70,22 @@ public class Utils {
 		return df.format(val);
 	}
 
+	/**
+	 * Like {@link #prettyFmt(Number)}, but appends to a buffer, e.g. one reused across values so
+	 * that formatting does not allocate a string.
+	 * 
+	 * @param val the value to format
+	 * @param dst the buffer to append to
+	 * @return <code>dst</code>
+	 */
+	public static StringBuffer prettyFmt(double val, StringBuffer dst) {
+		double abs = Math.abs(val);
+		if (Double.isNaN(abs))
+			return dst.append('-');
+		DecimalFormat df = abs > 1e4 || (abs != 0 && abs < 1e-4) ? sciDf : normalDf;
+		return df.format(val, dst, IGNORED_POS);
+	}
+
 	/**
 	 * Formats the value with the default scientific format.
 	 * 
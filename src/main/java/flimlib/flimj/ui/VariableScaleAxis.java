@@ -22,13 +22,17 @@
 package flimlib.flimj.ui;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import javafx.animation.Animation;
 import javafx.animation.KeyFrame;
 import javafx.animation.KeyValue;
 import javafx.animation.Timeline;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.BooleanPropertyBase;
 import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleDoubleProperty;
 import javafx.geometry.Dimension2D;
 import javafx.geometry.Side;
@@ -72,9 +76,92 @@ public class VariableScaleAxis extends ValueAxis<Number> {
 		}
 	}
 
+	/**
+	 * The key of memoized tick marks: the range (in bound space), the tick settings and the
+	 * scale.
+	 */
+	private static final class TickKey {
+
+		private final double lowerBound, upperBound, tickUnit, length;
+
+		private final int minorTickCount;
+
+		private final boolean logScale;
+
+		TickKey(double lowerBound, double upperBound, double tickUnit, double length,
+				int minorTickCount, boolean logScale) {
+			this.lowerBound = lowerBound;
+			this.upperBound = upperBound;
+			this.tickUnit = tickUnit;
+			this.length = length;
+			this.minorTickCount = minorTickCount;
+			this.logScale = logScale;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof TickKey))
+				return false;
+			final TickKey other = (TickKey) obj;
+			return Double.compare(lowerBound, other.lowerBound) == 0
+					&& Double.compare(upperBound, other.upperBound) == 0
+					&& Double.compare(tickUnit, other.tickUnit) == 0
+					&& Double.compare(length, other.length) == 0
+					&& minorTickCount == other.minorTickCount && logScale == other.logScale;
+		}
+
+		@Override
+		public int hashCode() {
+			int h = Double.hashCode(lowerBound);
+			h = 31 * h + Double.hashCode(upperBound);
+			h = 31 * h + Double.hashCode(tickUnit);
+			h = 31 * h + Double.hashCode(length);
+			h = 31 * h + minorTickCount;
+			return 31 * h + Boolean.hashCode(logScale);
+		}
+	}
+
+	/**
+	 * A small LRU map.
+	 */
+	private static final class LRUCache<K, V> extends LinkedHashMap<K, V> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int capacity;
+
+		LRUCache(int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+			return size() > capacity;
+		}
+	}
+
 	/** The duration of animation in ms */
 	private static final double ANIMATION_TIME = 700;
 
+	/** The number of memoized tick lists of each kind */
+	private static final int TICK_CACHE_SIZE = 32;
+
+	/** The number of memoized label sizes */
+	private static final int LABEL_CACHE_SIZE = 512;
+
+	/** Memoized major tick values */
+	private final Map<TickKey, List<Number>> majorTickCache = new LRUCache<>(TICK_CACHE_SIZE);
+
+	/** Memoized minor tick marks */
+	private final Map<TickKey, List<Number>> minorTickCache = new LRUCache<>(TICK_CACHE_SIZE);
+
+	/** Memoized tick label sizes of the current font and rotation, keyed by label text */
+	private final Map<String, Dimension2D> labelSizeCache = new LRUCache<>(LABEL_CACHE_SIZE);
+
+	/** Animate range changes (see {@link #setAnimateRangeChanges}) */
+	private final BooleanProperty animateRangeChanges = new SimpleBooleanProperty(true);
+
 	/** The timeline used in animation */
 	private final Timeline animationTimeline = new Timeline();
 
@@ -170,6 +257,25 @@ public class VariableScaleAxis extends ValueAxis<Number> {
 		return tickUnit;
 	}
 
+	public final boolean getAnimateRangeChanges() {
+		return animateRangeChanges.get();
+	}
+
+	/**
+	 * Sets whether range changes are animated when the chart is. Even if set, a change arriving
+	 * while the previous animation is still running (e.g. during rapid updates) is applied
+	 * immediately instead of restarting the animation.
+	 *
+	 * @param value <code>false</code> to always apply range changes immediately
+	 */
+	public final void setAnimateRangeChanges(boolean value) {
+		animateRangeChanges.set(value);
+	}
+
+	public final BooleanProperty animateRangeChangesProperty() {
+		return animateRangeChanges;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * <p>
@@ -182,6 +288,27 @@ public class VariableScaleAxis extends ValueAxis<Number> {
 		final double upperBound = rangeProps.upperBound;
 		final double tickUnit = rangeProps.tickUnit;
 
+		final TickKey key =
+				new TickKey(lowerBound, upperBound, tickUnit, length, 0, getLogScale());
+		List<Number> tickValues = majorTickCache.get(key);
+		if (tickValues == null) {
+			tickValues = calculateTickValues(lowerBound, upperBound, tickUnit);
+			majorTickCache.put(key, tickValues);
+		}
+		// the caller may modify the list
+		return new ArrayList<>(tickValues);
+	}
+
+	/**
+	 * Calculates the major tick values of a range.
+	 *
+	 * @param lowerBound the lower bound (may be log value)
+	 * @param upperBound the upper bound (may be log value)
+	 * @param tickUnit   the tick unit (may be log value)
+	 * @return the tick values
+	 */
+	private List<Number> calculateTickValues(double lowerBound, double upperBound,
+			double tickUnit) {
 		final List<Number> tickValues = new ArrayList<>();
 		if (lowerBound == upperBound) {
 			tickValues.add(toDisp(lowerBound));
@@ -204,7 +331,8 @@ public class VariableScaleAxis extends ValueAxis<Number> {
 				final int count = (int) Math.ceil((upperBound - major) / tickUnit);
 				for (int i = 0; major < upperBound && i < count; major += tickUnit, i++) {
 					final double majorValue = toDisp(major);
-					if (!tickValues.contains(majorValue)) {
+					// ticks ascend, so a duplicate can only be the last one added
+					if (majorValue != tickValues.get(tickValues.size() - 1).doubleValue()) {
 						tickValues.add(majorValue);
 					}
 				}
@@ -226,6 +354,28 @@ public class VariableScaleAxis extends ValueAxis<Number> {
 		final double tickUnit = toBnd(getTickUnit());
 		final int nMinorTick = Math.max(1, getMinorTickCount());
 
+		final TickKey key =
+				new TickKey(lowerBound, upperBound, tickUnit, 0, nMinorTick, getLogScale());
+		List<Number> minorTickMarks = minorTickCache.get(key);
+		if (minorTickMarks == null) {
+			minorTickMarks = calculateMinorTickMarks(lowerBound, upperBound, tickUnit, nMinorTick);
+			minorTickCache.put(key, minorTickMarks);
+		}
+		// the caller may modify the list
+		return new ArrayList<>(minorTickMarks);
+	}
+
+	/**
+	 * Calculates the minor tick marks of a range.
+	 *
+	 * @param lowerBound the lower bound (may be log value)
+	 * @param upperBound the upper bound (may be log value)
+	 * @param tickUnit   the major tick unit (may be log value)
+	 * @param nMinorTick the number of minor ticks per major tick
+	 * @return the minor tick marks
+	 */
+	private List<Number> calculateMinorTickMarks(double lowerBound, double upperBound,
+			double tickUnit, int nMinorTick) {
 		final List<Number> minorTickMarks = new ArrayList<>();
 		if (tickUnit > 0) {
 			if (((upperBound - lowerBound) / tickUnit * nMinorTick) > 10000) {
@@ -307,7 +457,9 @@ public class VariableScaleAxis extends ValueAxis<Number> {
 			setTickUnit(tickUnit);
 			setScale(scale);
 
-			if (animate) {
+			// don't restart a running animation on rapid updates, jump to the new range instead
+			if (animate && getAnimateRangeChanges()
+					&& animationTimeline.getStatus() != Animation.Status.RUNNING) {
 				animationTimeline.stop();
 				// NB: The original implementation uses currentLowerBound and scale to map
 				// display positions. Here we introduce transitionBlending to generate a even
@@ -322,6 +474,7 @@ public class VariableScaleAxis extends ValueAxis<Number> {
 								new KeyValue(transitionBlending, 1)));
 				animationTimeline.play();
 			} else {
+				animationTimeline.stop();
 				currentLowerBound.set(lowerBound);
 				setScale(scale);
 				transitionBlending.set(1);
@@ -344,7 +497,17 @@ public class VariableScaleAxis extends ValueAxis<Number> {
 	 */
 	@Override
 	public double getDisplayPosition(Number value) {
-		final double newValue = value.doubleValue();
+		return toDisplay(value.doubleValue());
+	}
+
+	/**
+	 * The primitive variant of {@link #getDisplayPosition(Number)}, for plotting large arrays
+	 * without boxing each value.
+	 *
+	 * @param newValue the data value
+	 * @return the display position (in pixels) of the value
+	 */
+	public double toDisplay(final double newValue) {
 		final double lowerBound = currentLowerBound.get();
 		final double newDelta = toBnd(newValue) - toBnd(lowerBound);
 
@@ -519,6 +682,11 @@ public class VariableScaleAxis extends ValueAxis<Number> {
 		// bind scale to upper class scale property to make it writable
 		scaleProperty().addListener((obs, oldVal, newVal) -> scale.set(newVal.doubleValue()));
 		scale.addListener((obs, oldVal, newVal) -> setScale(newVal.doubleValue()));
+
+		// label sizes depend on how they are drawn
+		tickLabelFontProperty().addListener(obs -> labelSizeCache.clear());
+		tickLabelRotationProperty().addListener(obs -> labelSizeCache.clear());
+		tickLabelFormatterProperty().addListener(obs -> labelSizeCache.clear());
 	}
 
 	/**
@@ -581,6 +749,11 @@ public class VariableScaleAxis extends ValueAxis<Number> {
 		// } else {
 		labelText = formatter.toString(value);
 		// }
-		return measureTickMarkLabelSize(labelText, rotation);
+		Dimension2D size = labelSizeCache.get(labelText);
+		if (size == null) {
+			size = measureTickMarkLabelSize(labelText, rotation);
+			labelSizeCache.put(labelText, size);
+		}
+		return size;
 	}
 }
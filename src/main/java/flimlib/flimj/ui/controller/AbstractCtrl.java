@@ -22,15 +22,25 @@
 package flimlib.flimj.ui.controller;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.scijava.log.LogService;
 import org.scijava.object.ObjectService;
 import org.scijava.ui.UIService;
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
 import javafx.fxml.Initializable;
+import javafx.scene.control.Alert;
+import javafx.scene.control.Alert.AlertType;
+import javafx.scene.control.ButtonType;
 import net.imagej.ops.OpService;
 import flimlib.flimj.FitParams;
 import flimlib.flimj.FitResults;
+import flimlib.flimj.ui.FitListener;
 import flimlib.flimj.ui.FitProcessor;
+import flimlib.flimj.ui.FitProcessor.Change;
+import flimlib.flimj.ui.Lifecycle;
+import flimlib.flimj.ui.MemoryPlanner;
 import io.scif.services.DatasetIOService;
 import net.imglib2.type.numeric.real.FloatType;
 
@@ -38,7 +48,7 @@ import net.imglib2.type.numeric.real.FloatType;
  * The basis for a tab controller that is {@link Initializable} and refreshable by both external
  * control flow and other controllers backed by the same fit processor.
  */
-public abstract class AbstractCtrl {
+public abstract class AbstractCtrl implements FitListener {
 
 	public static final String FXML_DIR = "fxml/";
 
@@ -46,8 +56,25 @@ public abstract class AbstractCtrl {
 
 	protected AbstractCtrl parentCtrl;
 
+	/** The listeners, timers and buffers to release on {@link #destroy()} */
+	protected final Lifecycle lifecycle = new Lifecycle();
+
 	private boolean blockUpdate;
 
+	/** Set while a refresh is queued on the FX thread */
+	private final AtomicBoolean refreshPending = new AtomicBoolean();
+
+	/** The version of each {@link Change} already handled by the last refresh */
+	private final long[] seenVersions = new long[Change.values().length];
+
+	/** The version of each {@link Change} at the start of the ongoing refresh */
+	private final long[] refreshVersions = new long[Change.values().length];
+
+	{
+		// nothing seen before the first refresh
+		Arrays.fill(seenVersions, -1);
+	}
+
 	public static FXMLLoader getFXMLLoader(String name) throws IOException {
 		ClassLoader cl = AbstractCtrl.class.getClassLoader();
 		return new FXMLLoader(cl.getResource(FXML_DIR + name + ".fxml"));
@@ -76,20 +103,54 @@ public abstract class AbstractCtrl {
 	}
 
 	/**
-	 * Called by external control flow to notify the controller to refresh itself.
+	 * Called by external control flow to notify the controller to refresh itself. Calls from other
+	 * threads, or made during a refresh, are coalesced into one refresh on the FX thread.
 	 */
+	@Override
 	public void requestRefresh() {
+		if (!Platform.isFxApplicationThread() || blockUpdate) {
+			if (refreshPending.compareAndSet(false, true))
+				Platform.runLater(() -> {
+					refreshPending.set(false);
+					// the window may have closed meanwhile
+					if (fp != null)
+						requestRefresh();
+				});
+			return;
+		}
 		blockUpdate = true;
+		// changes made during refresh() will be handled next time
+		for (Change change : Change.values())
+			refreshVersions[change.ordinal()] = fp.getVersion(change);
 		refresh(fp.getParams(), fp.getResults());
+		System.arraycopy(refreshVersions, 0, seenVersions, 0, seenVersions.length);
 		blockUpdate = false;
 	}
 
 	/**
-	 * Release the reources occupied by fields in the controller (e.g. {@link #fp}).
+	 * Tests if any of the changes happened since the last refresh, so that {@link #refresh} can skip
+	 * work whose inputs are unchanged.
+	 * 
+	 * @param changes the kinds of change to test
+	 * @return <code>true</code> if any of <code>changes</code> is yet to be handled
 	 */
+	protected boolean isChanged(Change... changes) {
+		for (Change change : changes)
+			if (fp.getVersion(change) > seenVersions[change.ordinal()])
+				return true;
+		return false;
+	}
+
+	/**
+	 * Release the reources occupied by fields in the controller (e.g. {@link #fp}) and everything
+	 * registered with {@link #lifecycle}.
+	 */
+	@Override
 	public void destroy() {
+		lifecycle.close();
 		// so that we can release the resources in datasets/imgs
 		fp = null;
+		parentCtrl = null;
 	}
 
 	/**
@@ -164,6 +225,36 @@ public abstract class AbstractCtrl {
 		return fp.getService(LogService.class);
 	}
 
+	/**
+	 * Asks the user whether to go on with an operation expected to exceed the memory budget. Must
+	 * be called on the JavaFX thread.
+	 * 
+	 * @param plan the plan of the operation
+	 * @return true if the plan fits or the user chose to go on
+	 */
+	protected boolean confirmMemory(MemoryPlanner.Plan plan) {
+		if (plan.fits())
+			return true;
+		Alert a = new Alert(AlertType.CONFIRMATION);
+		a.setHeaderText("Not enough memory");
+		a.setContentText(plan.describe() + ". Continue anyway?");
+		return a.showAndWait().orElse(ButtonType.CANCEL) == ButtonType.OK;
+	}
+
+	/**
+	 * Reports a failed IRF reload (see {@link flimlib.flimj.ui.IRFCache.Entry#getTransMap()}) to
+	 * the user and the log. Must be called on the JavaFX thread.
+	 * 
+	 * @param e the failure
+	 */
+	protected void showIRFReloadError(IOException e) {
+		getLogs().error("Reloading the IRF dataset failed", e);
+		Alert a = new Alert(AlertType.ERROR);
+		a.setHeaderText("Reloading the IRF dataset failed");
+		a.setContentText(e.getMessage());
+		a.show();
+	}
+
 	/**
 	 * Called by the controller to notify the fit processor to perform a fit and other controllers
 	 * to update themselves based on the fit results.
@@ -173,7 +264,6 @@ public abstract class AbstractCtrl {
 			return;
 		}
 		fp.updateFit();
-		fp.refreshControllers();
 	}
 
 	/**
@@ -28,7 +28,9 @@ import java.io.File;
 import java.nio.file.Files;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.function.DoubleConsumer;
 
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.control.Button;
 import javafx.scene.control.Alert;
@@ -39,6 +41,8 @@ import javafx.stage.Stage;
 import flimlib.flimj.FitParams;
 import flimlib.flimj.ui.controls.NumericSpinner;
 import flimlib.flimj.ui.FitProcessor.FitType;
+import flimlib.flimj.ui.FitProcessor.StoredSession;
+import flimlib.flimj.ui.FitSchedulerService.Priority;
 
 import net.imglib2.type.numeric.real.FloatType;
 
@@ -55,6 +59,12 @@ public class ConfigCtrl extends AbstractCtrl {
 	@FXML
 	private Button configSaveButton;
 
+	@FXML
+	private Button sessionLoadButton;
+
+	@FXML
+	private Button sessionSaveButton;
+
 	@Override
 	public void initialize() {
 
@@ -132,6 +142,88 @@ public class ConfigCtrl extends AbstractCtrl {
             }
 		});
 
+		// sessions also hold the dataset fit results
+		final var sessionFilter = new FileChooser.ExtensionFilter("FLIMJ session", "*.flimj");
+
+		sessionSaveButton.setOnAction(event -> {
+			fcUI.setTitle("Choose session save path");
+			fcUI.setInitialFileName("fit_session.flimj");
+			fcUI.getExtensionFilters().setAll(sessionFilter);
+			File sessionSavePath = fcUI.showSaveDialog(fcStage);
+			fcUI.getExtensionFilters().clear();
+			if (sessionSavePath != null) {
+				runSessionJob("Session saving failed: ", progress -> {
+					fp.saveSession(sessionSavePath.toPath(), progress);
+					return null;
+				});
+			}
+		});
+
+		sessionLoadButton.setOnAction(event -> {
+			fcUI.setTitle("Choose session file");
+			fcUI.getExtensionFilters().setAll(sessionFilter);
+			File sessionLoadPath = fcUI.showOpenDialog(fcStage);
+			fcUI.getExtensionFilters().clear();
+			if (sessionLoadPath != null) {
+				runSessionJob("Session loading failed: ", progress -> {
+					final StoredSession session = fp.readSession(sessionLoadPath.toPath(), progress);
+					return () -> {
+						fp.restoreSession(session);
+						requestUpdate();
+					};
+				});
+			}
+		});
+	}
+
+	/** The work of saving or loading a session */
+	@FunctionalInterface
+	private static interface SessionJob {
+		/**
+		 * Does the work off the FX thread.
+		 *
+		 * @param progress receives the fraction done
+		 * @return what to do on the FX thread when done, or <code>null</code>
+		 * @throws IOException if reading or writing fails
+		 */
+		Runnable run(DoubleConsumer progress) throws IOException;
+	}
+
+	/**
+	 * Runs a session job on the fitting thread (so that the results do not change underneath)
+	 * while showing its progress.
+	 *
+	 * @param failure the prefix of the message shown if the job fails
+	 * @param job     the job
+	 */
+	private void runSessionJob(String failure, SessionJob job) {
+		MainCtrl mainCtrl = (MainCtrl) parentCtrl;
+		mainCtrl.setProgress(0.0);
+		fp.submitBackground(Priority.EXPORT, () -> {
+			Runnable onDone = null;
+			Exception error = null;
+			try {
+				onDone = job.run(progress -> Platform.runLater(() -> {
+					if (!lifecycle.isClosed())
+						mainCtrl.setProgress(progress);
+				}));
+			} catch (IOException | RuntimeException e) {
+				error = e;
+			}
+			final Runnable finalOnDone = onDone;
+			final Exception finalError = error;
+			Platform.runLater(() -> {
+				if (lifecycle.isClosed())
+					return;
+				mainCtrl.setProgress(null);
+				if (finalError != null) {
+					Alert a = new Alert(AlertType.ERROR);
+					a.setContentText(failure + finalError.getMessage());
+					a.show();
+				} else if (finalOnDone != null)
+					finalOnDone.run();
+			});
+		});
 	}
 
     private static String jsonPrefix(String fieldName){
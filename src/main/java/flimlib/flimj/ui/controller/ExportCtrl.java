@@ -26,21 +26,31 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.DoubleConsumer;
 import org.controlsfx.control.CheckComboBox;
 import org.controlsfx.control.IndexedCheckModel;
 import org.scijava.widget.FileWidget;
+import javafx.application.Platform;
 import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.scene.control.Button;
+import javafx.scene.control.Alert;
+import javafx.scene.control.Alert.AlertType;
 import javafx.scene.control.CheckBox;
+import javafx.stage.FileChooser;
+import javafx.stage.Stage;
 import net.imagej.ImgPlus;
 import flimlib.flimj.FitParams;
 import flimlib.flimj.FitResults;
 import flimlib.flimj.ui.FitProcessor;
+import flimlib.flimj.ui.FitProcessor.Change;
+import flimlib.flimj.ui.FitSchedulerService.Priority;
+import flimlib.flimj.ui.MemoryPlanner;
+import flimlib.flimj.ui.ResultExporter;
+import flimlib.flimj.ui.ResultExporter.ExportedMap;
 import flimlib.flimj.ui.Utils;
 import net.imglib2.RandomAccessibleInterval;
-import net.imglib2.img.Img;
 import net.imglib2.type.numeric.real.FloatType;
 
 /**
@@ -55,7 +65,7 @@ public class ExportCtrl extends AbstractCtrl {
 	private CheckComboBox<String> exportComboBox;
 
 	@FXML
-	private CheckBox withLUTCheckBox;
+	private CheckBox withLUTCheckBox, toFileCheckBox;
 
 	/** The list of all export options */
 	private ObservableList<String> exportOptions;
@@ -63,6 +73,9 @@ public class ExportCtrl extends AbstractCtrl {
 	/** The {@link IndexedCheckModel} of the export option CheckBox */
 	private IndexedCheckModel<String> exportCBCheckModel;
 
+	/** True while an export job is running */
+	private boolean exporting;
+
 	@Override
 	public void initialize() {
 		exportOptions = exportComboBox.getItems();
@@ -70,35 +83,30 @@ public class ExportCtrl extends AbstractCtrl {
 
 		// disable export button if no item is selected
 		exportCBCheckModel.getCheckedIndices().addListener((ListChangeListener<Integer>) change -> {
-			exportButton
-					.setDisable(exportCBCheckModel.getCheckedIndices().isEmpty());
+			updateExportButton();
 		});
 
+		// initialize a file chooser
+		final var fcStage = new Stage();
+		final var fcUI = new FileChooser();
+		fcUI.getExtensionFilters().addAll(
+				new FileChooser.ExtensionFilter("OME-TIFF", "*.ome.tif"),
+				new FileChooser.ExtensionFilter("TIFF", "*.tif"));
+
 		exportButton.setDisable(true);
 		exportButton.setOnAction(event -> {
-			for (int idx : exportCBCheckModel.getCheckedIndices()) {
-				String option = exportOptions.get(idx);
-
-				RandomAccessibleInterval<FloatType> previewRAI = fp.getPreviewImg(option);
-				Img<FloatType> img = getOps().create().img(previewRAI);
-				getOps().copy().rai(img, previewRAI);
-
-				ImgPlus<FloatType> imgp = new ImgPlus<FloatType>(img);
-				if (withLUTCheckBox.isSelected()) {
-					// set bounds and LUT
-					if ("Intensity".equals(option) || "IRF Intensity".equals(option)) {
-						imgp.setChannelMinimum(0, 0);
-						imgp.setChannelMaximum(0, getOps().stats().max(img).getRealDouble());
-					} else {
-						imgp.initializeColorTables(1);
-						imgp.setColorTable(Utils.LIFETIME_LUT, 0);
-						imgp.setChannelMinimum(0, getOps().stats().percentile(img, 10).getRealDouble());
-						imgp.setChannelMaximum(0, getOps().stats().percentile(img, 90).getRealDouble());
-					}
-				}
-
-				getUIs().show(convertToPlaintext(option), imgp);
-			}
+			if (!confirmMemory(planExport()))
+				return;
+			if (toFileCheckBox.isSelected()) {
+				fcUI.setTitle("Choose export path");
+				fcUI.setInitialFileName("fit_results.ome.tif");
+				File exportPath = fcUI.showSaveDialog(fcStage);
+				if (exportPath != null)
+					exportToFile(new ArrayList<>(exportCBCheckModel.getCheckedItems()),
+							exportPath.getPath());
+			} else
+				exportToWindows(new ArrayList<>(exportCBCheckModel.getCheckedItems()),
+						withLUTCheckBox.isSelected());
 		});
 
 		// export with LUT by default
@@ -107,6 +115,8 @@ public class ExportCtrl extends AbstractCtrl {
 
 	@Override
 	protected void refresh(FitParams<FloatType> params, FitResults results) {
+		if (!isChanged(Change.PREVIEW_OPTIONS))
+			return;
 		// make a copy to prevent being changed by setAll()
 		List<String> checked = new ArrayList<>(exportCBCheckModel.getCheckedItems());
 		exportCBCheckModel.clearChecks();
@@ -116,14 +126,124 @@ public class ExportCtrl extends AbstractCtrl {
 		}
 	}
 
-	private static String convertToPlaintext(String name) {
-		name = name.replace("τ", "tau");
-		name = name.replace("₁", "_1");
-		name = name.replace("₂", "_2");
-		name = name.replace("₃", "_3");
-		name = name.replace("ₘ", "_m");
-		name = name.replace("ᵢ", "_i");
-		name = name.replace("%", "percent");
-		return name;
+	/**
+	 * @return the memory plan of exporting the chosen images in the chosen way
+	 */
+	private MemoryPlanner.Plan planExport() {
+		boolean toFile = toFileCheckBox.isSelected();
+		List<String> options = new ArrayList<>(exportCBCheckModel.getCheckedItems());
+		if (toFile)
+			for (String option : ResultExporter.ALWAYS_EXPORTED)
+				if (!options.contains(option))
+					options.add(option);
+		RandomAccessibleInterval<FloatType> intensity = fp.getPreviewImg("Intensity");
+		return fp.getMemoryPlanner().planExport(intensity.dimension(0), intensity.dimension(1),
+				options.size(), toFile, fp.getConcurrency());
+	}
+
+	/**
+	 * Writes the chosen images, plus intensity and fit status, as channels of one file instead of
+	 * opening an image window for each.
+	 *
+	 * @param options the chosen preview options
+	 * @param path    the destination
+	 */
+	private void exportToFile(List<String> options, String path) {
+		runExportJob(progress -> {
+			List<String> channels = new ResultExporter(fp).export(options, path, progress);
+			getLogs().info("Exported " + String.join(", ", channels) + " to " + path);
+			return null;
+		});
+	}
+
+	/**
+	 * Opens a window for each chosen image.
+	 *
+	 * @param options the chosen preview options
+	 * @param withLUT whether to set the display range (and the lifetime LUT for non-intensity
+	 *                images)
+	 */
+	private void exportToWindows(List<String> options, boolean withLUT) {
+		runExportJob(progress -> {
+			List<ExportedMap> maps = new ResultExporter(fp).copyMaps(options, progress);
+			// show in the order checked
+			return () -> {
+				for (ExportedMap map : maps) {
+					ImgPlus<FloatType> imgp = new ImgPlus<FloatType>(map.getImg());
+					if (withLUT) {
+						// set bounds and LUT
+						String option = map.getOption();
+						if ("Intensity".equals(option) || "IRF Intensity".equals(option)) {
+							imgp.setChannelMinimum(0, 0);
+							imgp.setChannelMaximum(0, map.getMax());
+						} else {
+							imgp.initializeColorTables(1);
+							imgp.setColorTable(Utils.LIFETIME_LUT, 0);
+							imgp.setChannelMinimum(0, map.getP10());
+							imgp.setChannelMaximum(0, map.getP90());
+						}
+					}
+					getUIs().show(ResultExporter.toPlaintext(map.getOption()), imgp);
+				}
+			};
+		});
+	}
+
+	/** The work of an export job */
+	@FunctionalInterface
+	private static interface ExportJob {
+		/**
+		 * Does the work off the FX thread.
+		 *
+		 * @param progress receives the fraction done
+		 * @return what to do on the FX thread when done, or <code>null</code>
+		 * @throws IOException if the export fails
+		 */
+		Runnable run(DoubleConsumer progress) throws IOException;
+	}
+
+	/**
+	 * Runs an export job on the fitting thread (so that the results do not change underneath)
+	 * while showing its progress.
+	 *
+	 * @param job the job
+	 */
+	private void runExportJob(ExportJob job) {
+		MainCtrl mainCtrl = (MainCtrl) parentCtrl;
+		exporting = true;
+		updateExportButton();
+		mainCtrl.setProgress(0.0);
+		fp.submitBackground(Priority.EXPORT, () -> {
+			Runnable onDone = null;
+			Exception failure = null;
+			try {
+				onDone = job.run(progress -> Platform.runLater(() -> {
+					if (exporting)
+						mainCtrl.setProgress(progress);
+				}));
+			} catch (IOException | RuntimeException e) {
+				failure = e;
+			}
+			final Runnable finalOnDone = onDone;
+			final Exception finalFailure = failure;
+			Platform.runLater(() -> {
+				exporting = false;
+				mainCtrl.setProgress(null);
+				updateExportButton();
+				if (finalFailure != null) {
+					Alert a = new Alert(AlertType.ERROR);
+					a.setContentText("Export failed: " + finalFailure.getMessage());
+					a.show();
+				} else if (finalOnDone != null)
+					finalOnDone.run();
+			});
+		});
+	}
+
+	/**
+	 * Enables the export button if some image is chosen and no export is running.
+	 */
+	private void updateExportButton() {
+		exportButton.setDisable(exporting || exportCBCheckModel.getCheckedIndices().isEmpty());
 	}
 }
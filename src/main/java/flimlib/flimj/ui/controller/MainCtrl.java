@@ -23,6 +23,8 @@ package flimlib.flimj.ui.controller;
 
 import flimlib.flimj.ui.FitProcessor;
 import javafx.fxml.FXML;
+import javafx.scene.Node;
+import javafx.scene.control.Label;
 import javafx.scene.control.ProgressIndicator;
 import javafx.scene.layout.BorderPane;
 
@@ -31,6 +33,19 @@ import javafx.scene.layout.BorderPane;
  */
 public class MainCtrl extends AbstractCtrl {
 
+	/** How far the dataset is loaded, see {@link MainCtrl#setReady} */
+	public static enum Readiness {
+		/** Nothing to work on yet */
+		LOADING,
+		/** The intensity image is shown */
+		INTENSITY,
+		/** The previewed pixel is fitted */
+		FITTED
+	}
+
+	@FXML
+	private Node previewTab, plotTab, settingsTab, exportTab, configTab, perfTab;
+
 	@FXML
 	private PlotCtrl plotTabController;
 
@@ -46,12 +61,18 @@ public class MainCtrl extends AbstractCtrl {
 	@FXML
 	private ConfigCtrl configTabController;
 
+	@FXML
+	private PerfCtrl perfTabController;
+
 	@FXML
 	private BorderPane windowOverlayAssembly;
 
 	@FXML
 	private ProgressIndicator busyIndicator;
 
+	@FXML
+	private Label busyLabel;
+
 	@Override
 	public void setFitProcessor(FitProcessor fp) {
 		super.setFitProcessor(fp);
@@ -65,8 +86,25 @@ public class MainCtrl extends AbstractCtrl {
 		exportTabController.setParentCtrl(this);
 		configTabController.setFitProcessor(fp);
 		configTabController.setParentCtrl(this);
-		fp.setControllers(this, plotTabController, previewTabController, settingsTabController,
-				exportTabController, configTabController);
+		perfTabController.setFitProcessor(fp);
+		perfTabController.setParentCtrl(this);
+		for (AbstractCtrl controller : new AbstractCtrl[] {this, plotTabController,
+				previewTabController, settingsTabController, exportTabController,
+				configTabController, perfTabController})
+			fp.addListener(controller);
+	}
+
+	/**
+	 * Also destroys the tab controllers, which are not registered with the fit processor if the
+	 * window closes before the dataset is loaded.
+	 */
+	@Override
+	public void destroy() {
+		for (AbstractCtrl controller : new AbstractCtrl[] {plotTabController,
+				previewTabController, settingsTabController, exportTabController,
+				configTabController, perfTabController})
+			controller.destroy();
+		super.destroy();
 	}
 
 	/**
@@ -78,10 +116,37 @@ public class MainCtrl extends AbstractCtrl {
 	 * @param progress the progress to show
 	 */
 	public void setProgress(Double progress) {
+		setProgress(progress, null);
+	}
+
+	/**
+	 * Set the state of progress overlay along with a description of the task in progress.
+	 *
+	 * @param progress the progress to show, see {@link #setProgress(Double)}
+	 * @param status   the task in progress, or <code>null</code> for none
+	 */
+	public void setProgress(Double progress, String status) {
+		busyLabel.setText(status == null ? "" : status);
 		if (progress != null) {
 			windowOverlayAssembly.setVisible(true);
 			busyIndicator.setProgress(progress);
 		} else
 			windowOverlayAssembly.setVisible(false);
 	}
+
+	/**
+	 * Enables the tabs whose data is ready and disables the others. The preview, the config and
+	 * the performance tabs only need the intensity image, the others the preview fit. Disabled tabs
+	 * stay visible, only greyed out.
+	 *
+	 * @param readiness how far the dataset is loaded
+	 */
+	public void setReady(Readiness readiness) {
+		final boolean intensity = readiness != Readiness.LOADING;
+		for (Node tab : new Node[] {previewTab, configTab, perfTab})
+			tab.setDisable(!intensity);
+		final boolean fitted = readiness == Readiness.FITTED;
+		for (Node tab : new Node[] {plotTab, settingsTab, exportTab})
+			tab.setDisable(!fitted);
+	}
 }
@@ -0,0 +1,102 @@
+/*-
+ * #%L
+ * Fluorescence lifetime analysis in ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2025 Board of Regents of the University of Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package flimlib.flimj.ui.controller;
+
+import java.io.File;
+import java.io.IOException;
+
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.fxml.FXML;
+import javafx.scene.control.Alert;
+import javafx.scene.control.Alert.AlertType;
+import javafx.scene.control.Button;
+import javafx.scene.control.TextArea;
+import javafx.scene.control.TitledPane;
+import javafx.stage.FileChooser;
+import javafx.stage.Stage;
+import javafx.util.Duration;
+
+/**
+ * The controller of the "Performance" tab, which shows the timing of the pipeline stages recorded
+ * by the {@link flimlib.flimj.ui.PerfMonitor}.
+ */
+public class PerfCtrl extends AbstractCtrl {
+
+	@FXML
+	private TitledPane perfPane;
+
+	@FXML
+	private TextArea perfTextArea;
+
+	@FXML
+	private Button perfResetButton;
+
+	@FXML
+	private Button perfDumpButton;
+
+	/** Updates the table once a second while the tab is expanded */
+	private Timeline updater;
+
+	@Override
+	public void initialize() {
+		updater = new Timeline(new KeyFrame(Duration.seconds(1), event -> update()));
+		updater.setCycleCount(Animation.INDEFINITE);
+		lifecycle.onClose(updater::stop);
+		perfPane.expandedProperty().addListener((obs, oldVal, newVal) -> {
+			if (newVal) {
+				update();
+				updater.play();
+			} else
+				updater.stop();
+		});
+
+		perfResetButton.setOnAction(event -> {
+			fp.getPerfMonitor().reset();
+			update();
+		});
+
+		final var fcStage = new Stage();
+		final var fcUI = new FileChooser();
+		fcUI.setTitle("Choose performance report save path");
+		fcUI.setInitialFileName("flimj_perf.json");
+		fcUI.getExtensionFilters().add(new FileChooser.ExtensionFilter("JSON", "*.json"));
+		perfDumpButton.setOnAction(event -> {
+			File reportPath = fcUI.showSaveDialog(fcStage);
+			if (reportPath != null) {
+				try {
+					fp.getPerfMonitor().dump(reportPath.toPath());
+				} catch (IOException e) {
+					Alert a = new Alert(AlertType.ERROR);
+					a.setContentText("Performance report saving failed: " + e.getMessage());
+					a.show();
+				}
+			}
+		});
+	}
+
+	private void update() {
+		if (fp != null)
+			perfTextArea.setText(fp.getPerfMonitor().format());
+	}
+}
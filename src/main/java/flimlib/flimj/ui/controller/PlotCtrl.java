@@ -21,7 +21,6 @@
  */
 package flimlib.flimj.ui.controller;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import javafx.application.Platform;
@@ -34,18 +33,23 @@ import javafx.fxml.FXML;
 import javafx.geometry.Rectangle2D;
 import javafx.scene.Group;
 import javafx.scene.SnapshotParameters;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.chart.LineChart;
 import javafx.scene.chart.NumberAxis;
 import javafx.scene.chart.XYChart.Data;
 import javafx.scene.chart.XYChart.Series;
+import javafx.scene.control.Button;
 import javafx.scene.control.TextField;
 import javafx.scene.control.ToggleButton;
 import javafx.scene.image.ImageView;
 import javafx.scene.image.WritableImage;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.AnchorPane;
+import javafx.scene.paint.Color;
 import javafx.scene.shape.Circle;
 import javafx.scene.shape.Line;
+import javafx.scene.text.Text;
 
 import org.controlsfx.control.HiddenSidesPane;
 import org.controlsfx.control.SegmentedButton;
@@ -54,6 +58,16 @@ import net.imglib2.type.numeric.real.FloatType;
 
 import flimlib.flimj.FitParams;
 import flimlib.flimj.FitResults;
+import flimlib.flimj.ui.FitProcessor;
+import flimlib.flimj.ui.FitProcessor.Change;
+import flimlib.flimj.ui.FitProcessor.PinSettings;
+import flimlib.flimj.ui.FitProcessor.PinnedFit;
+import flimlib.flimj.ui.FitSchedulerService.Priority;
+import flimlib.flimj.ui.PerfMonitor;
+import flimlib.flimj.ui.PerfMonitor.Stage;
+import flimlib.flimj.ui.PlotCanvas;
+import flimlib.flimj.ui.PlotCanvas.Style;
+import flimlib.flimj.ui.ResidualDiagnostics;
 import flimlib.flimj.ui.Utils;
 import flimlib.flimj.ui.VariableScaleAxis;
 import flimlib.flimj.ui.controls.NumericSpinner;
@@ -67,10 +81,18 @@ public class PlotCtrl extends AbstractCtrl {
 	private static final int FIT_IDX = 1;
 	private static final int RES_IDX = 2;
 	private static final int IRF_IDX = 3;
-	private static final int BEG_IDX = 0;
-	private static final int END_IDX = 1;
 	private static final int N_PLOTS = 4;
 
+	/** The colors of the curves (CHART_COLOR_1, 2 and 3 of modena) */
+	private static final Color FIT_COLOR = Color.web("#f3622d");
+	private static final Color TRN_COLOR = Color.web("#fba71b");
+	private static final Color IRF_COLOR = Color.web("#57b757");
+
+	/** The colors of pinned pixels (CHART_COLOR_4 to 8 of modena and beyond) */
+	private static final Color[] PIN_COLORS = {Color.web("#41a9c9"), Color.web("#4258c9"),
+			Color.web("#9a42c8"), Color.web("#c84164"), Color.web("#888888"),
+			Color.web("#2f357f"), Color.web("#860061"), Color.web("#a9e200")};
+
 	/** cursors */
 	@FXML
 	private Group lCsr, rCsr, lCsr_res, rCsr_res;
@@ -89,12 +111,16 @@ public class PlotCtrl extends AbstractCtrl {
 
 	/** cursor areas */
 	@FXML
-	private AnchorPane fitPlotAreaPane;
+	private AnchorPane fitPlotAreaPane, resPlotAreaPane;
 
 	/** plots */
 	@FXML
 	private LineChart<Number, Number> fitPlotChart, resPlotChart;
 
+	/** the curves are drawn on these, over the plot areas */
+	@FXML
+	private PlotCanvas fitPlotCanvas, resPlotCanvas;
+
 	@FXML
 	private TextField phtnCntTextField;
 
@@ -113,6 +139,21 @@ public class PlotCtrl extends AbstractCtrl {
 	@FXML
 	private ToggleButton linTB, logTB;
 
+	/** residual diagnostics of the previewed pixel */
+	@FXML
+	private Text diagChiSqText, diagRunsZText, diagAcfText;
+
+	/** residual histogram and autocorrelation plots */
+	@FXML
+	private Canvas diagHistCanvas, diagAcfCanvas;
+
+	/** the number of pinned pixels */
+	@FXML
+	private Text pinCountText;
+
+	@FXML
+	private Button clearPinsButton;
+
 	/** cursor positions */
 	private ObjectProperty<Double> lCsrPos, rCsrPos;
 
@@ -122,27 +163,30 @@ public class PlotCtrl extends AbstractCtrl {
 	/** trans.length - 1 */
 	private int nIntervals;
 
-	/** plot series */
-	private Series<Number, Number>[] plotSeries;
+	/** the curves drawn on the plot canvases */
+	private PlotCanvas.Curve[] curves;
+
+	/** the points of {@link #curves} */
+	private float[][] curveData;
 
-	/** temp lists of points */
-	private List<Data<Number, Number>>[] dataLists;
+	/** the decays and fits of pinned pixels */
+	private PlotCanvas.Curve[] pinTrnCurves, pinFitCurves;
 
-	private int cursorIdc[][];
+	/** the (min, min positive, max) of the previewed pixel's curves and of the pinned ones */
+	private float[] previewRange, pinRange;
+
+	/** invisible series whose points make the charts' y axes range over the curves */
+	private Series<Number, Number> fitRangeSeries, resRangeSeries;
+
+	/** the number of fitted points before fitStart (present when IRF is used) */
+	private int fitPrefixLen;
 
 	/** lookup table for photon count before an index */
 	private float[] prefixSum;
 
 	private boolean csrBeingDragged;
 
-	/**
-	 * additive adjustment to [lr]CsrPos values. Used to expand the plotted portion when IRF is
-	 * present
-	 */
-	private double nonIRFCursorAdj[];
-
 	@Override
-	@SuppressWarnings("unchecked")
 	public void initialize() {
 		// initialize properties with invalid values (corrected by refresh())
 		lCsrPos = new SimpleObjectProperty<>(-1.0);
@@ -180,38 +224,66 @@ public class PlotCtrl extends AbstractCtrl {
 		initCursorEventHandlers(lCsr);
 		initCursorEventHandlers(rCsr);
 
-		fitPlotAreaPane.widthProperty().addListener((obs, oldVal, newVal) -> {
-			// == 0 at init
-			if (oldVal.floatValue() != 0) {
-				FitResults rslt = getResults();
-				if (getParams().trans != null & rslt.fitted != null && rslt.residuals != null) {
-					plotFit(getParams().trans, getParams().instr, getResults().residuals,
-							getResults().fitted, getParams().xInc, 0);
-				}
-			}
+		// the canvases cover the cursor areas without taking part in their layout
+		fitPlotCanvas.setManaged(false);
+		fitPlotCanvas.widthProperty().bind(fitPlotAreaPane.widthProperty());
+		fitPlotCanvas.heightProperty().bind(fitPlotAreaPane.heightProperty());
+		resPlotCanvas.setManaged(false);
+		resPlotCanvas.widthProperty().bind(resPlotAreaPane.widthProperty());
+		resPlotCanvas.heightProperty().bind(resPlotAreaPane.heightProperty());
+		fitPlotCanvas.setYAxis(fitPlotYAxis);
+		resPlotCanvas.setYAxis((NumberAxis) resPlotChart.getYAxis());
+
+		// drawn in this order, pinned pixels below the previewed one
+		pinTrnCurves = new PlotCanvas.Curve[FitProcessor.MAX_PINS];
+		pinFitCurves = new PlotCanvas.Curve[FitProcessor.MAX_PINS];
+		for (int i = 0; i < FitProcessor.MAX_PINS; i++) {
+			pinTrnCurves[i] = fitPlotCanvas.addCurve(Style.DOTS, PIN_COLORS[i]);
+			pinFitCurves[i] = fitPlotCanvas.addCurve(Style.LINE, PIN_COLORS[i]);
+		}
+		previewRange = emptyRange();
+		pinRange = emptyRange();
+		clearPinsButton.setOnAction(event -> {
+			fp.clearPins();
 		});
 
-		plotSeries = (Series<Number, Number>[]) new Series[N_PLOTS];
-		dataLists = (ArrayList<Data<Number, Number>>[]) new ArrayList[N_PLOTS];
-		cursorIdc = new int[N_PLOTS][2];
-		nonIRFCursorAdj = new double[2];
-
-		// put series into chart
-		fitPlotChart.getData().add(plotSeries[TRN_IDX] = new Series<Number, Number>());
-		fitPlotChart.getData().add(plotSeries[FIT_IDX] = new Series<Number, Number>());
-		fitPlotChart.getData().add(plotSeries[IRF_IDX] = new Series<Number, Number>());
-		resPlotChart.getData().add(plotSeries[RES_IDX] = new Series<Number, Number>());
+		curves = new PlotCanvas.Curve[N_PLOTS];
+		curves[TRN_IDX] = fitPlotCanvas.addCurve(Style.DOTS, TRN_COLOR);
+		curves[FIT_IDX] = fitPlotCanvas.addCurve(Style.LINE, FIT_COLOR);
+		curves[IRF_IDX] = fitPlotCanvas.addCurve(Style.LINE, IRF_COLOR);
+		curves[RES_IDX] = resPlotCanvas.addCurve(Style.LINE, FIT_COLOR);
+		curveData = new float[N_PLOTS][0];
+
+		// the charts only draw axes; (min, min positive, max) and (min, max) suffice to range them
+		fitRangeSeries = new Series<>();
+		resRangeSeries = new Series<>();
+		for (int i = 0; i < 3; i++)
+			fitRangeSeries.getData().add(new Data<>(0, 0));
+		for (int i = 0; i < 2; i++)
+			resRangeSeries.getData().add(new Data<>(0, 0));
+		fitPlotChart.setCreateSymbols(false);
+		resPlotChart.setCreateSymbols(false);
+		fitPlotChart.getData().add(fitRangeSeries);
+		resPlotChart.getData().add(resRangeSeries);
 		// auto ranging prevents manual adjustment of bounds
 		fitPlotChart.getXAxis().setAutoRanging(false);
 		resPlotChart.getXAxis().setAutoRanging(false);
-		// data point lists for swapping points in/out of series
-		for (int i = 0; i < N_PLOTS; i++) {
-			dataLists[i] = new ArrayList<Data<Number, Number>>();
-		}
 
 		// dummy
 		prefixSum = new float[1];
 
+		// drop the plotted transients on close
+		lifecycle.onClose(() -> {
+			for (PlotCanvas.Curve curve : curves)
+				curve.setData(new float[0], 0, 0, 1);
+			for (int i = 0; i < FitProcessor.MAX_PINS; i++) {
+				pinTrnCurves[i].setData(new float[0], 0, 0, 1);
+				pinFitCurves[i].setData(new float[0], 0, 0, 1);
+			}
+			curveData = new float[N_PLOTS][0];
+			prefixSum = new float[1];
+		});
+
 		// frost glass effect for plot settings:
 		// https://en.it1352.com/article/f2643fc245cd47d78c0a98e13068207f.html
 		// TL;DR: Snapshot covered portion, crop to size of the pannel and set as background using
@@ -251,8 +323,11 @@ public class PlotCtrl extends AbstractCtrl {
 			// see https://stackoverflow.com/a/50667161
 			if (newVal == null)
 				oldVal.setSelected(true);
-			else if (oldVal != null)
+			else if (oldVal != null) {
+				// animate the switch, but not the data refreshes after it (see rangeFitAxis())
+				fitPlotYAxis.setAnimateRangeChanges(true);
 				fitPlotYAxis.setLogScale("log".equals(newVal.getUserData()));
+			}
 		});
 	}
 
@@ -281,6 +356,25 @@ public class PlotCtrl extends AbstractCtrl {
 		// the interval in the plot is [start, end]
 		fitEnd.set((fp.isPickingIRF() ? getIRFInfo() : params).fitEnd - 1);
 
+		// refit the pins when they or the settings (not just the previewed pixel) change (e.g. pinning
+		// only bumps PINS)
+		if (isChanged(Change.PINS, Change.BINNING, Change.IRF)
+				|| isChanged(Change.PIXEL_FIT) && !isChanged(Change.CURSOR)) {
+			final float xInc = params.xInc;
+			// the params change on this thread while the pins are fitted
+			final PinSettings pinSettings = fp.copyPinSettings();
+			fp.submitBackground(Priority.INTERACTIVE, () -> {
+				fp.fitPins(pinSettings);
+				Platform.runLater(() -> {
+					if (!lifecycle.isClosed())
+						plotPins(fp.getPinnedFits(), xInc);
+				});
+			});
+		}
+
+		// the plotted curves are those of the previewed pixel and the IRF
+		if (!isChanged(Change.CURSOR, Change.PIXEL_FIT, Change.IRF))
+			return;
 		Platform.runLater(() -> {
 			FitResults rs = fp.getResults();
 			if (rs == null || rs.param == null) {
@@ -288,11 +382,154 @@ public class PlotCtrl extends AbstractCtrl {
 			}
 
 			int irfLength = params.instr == null ? 0 : params.instr.length;
-			plotFit(params.trans, getIRFInfo().trans, rs.residuals, rs.fitted, params.xInc,
-					irfLength);
+			try (PerfMonitor.Span span = fp.getPerfMonitor().begin(Stage.PLOT)) {
+				plotFit(params.trans, getIRFInfo().trans, rs.residuals, rs.fitted, params.xInc,
+						irfLength);
+			}
 			phtnCntTextField.setText(getphtnCnt());
 		});
 
+		if (isChanged(Change.PIXEL_FIT))
+			submitDiagnostics(params);
+	}
+
+	/**
+	 * Plots the decays and fits of pinned pixels over the previewed pixel's.
+	 *
+	 * @param fits the pinned fits
+	 * @param xInc the x (time) increment
+	 */
+	private void plotPins(List<PinnedFit> fits, float xInc) {
+		final FitParams<FloatType> params = getParams();
+		pinRange = emptyRange();
+		for (int p = 0; p < FitProcessor.MAX_PINS; p++) {
+			if (p >= fits.size()) {
+				pinTrnCurves[p].setData(new float[0], 0, 0, xInc);
+				pinFitCurves[p].setData(new float[0], 0, 0, xInc);
+				continue;
+			}
+			final float[] trans = fits.get(p).getTrans();
+			final float[] fitted = fits.get(p).getFitted();
+			// lay out the fit like the previewed one
+			final float[] fitY = new float[trans.length];
+			for (int i = 0; i < trans.length; i++) {
+				final int idx = i - params.fitStart + fitPrefixLen;
+				final float y = idx >= 0 && idx < fitted.length ? fitted[idx] : 0;
+				fitY[i] = Float.isFinite(y) ? y : 0;
+			}
+			pinTrnCurves[p].setData(trans, trans.length, 0, xInc);
+			pinFitCurves[p].setData(fitY, trans.length, 0, xInc);
+			extendRange(pinRange, trans, 0, trans.length);
+			extendRange(pinRange, fitY, params.fitStart - fitPrefixLen, params.fitEnd);
+		}
+		pinCountText.setText(String.valueOf(fits.size()));
+		adjustPlottedPortion();
+		rangeFitAxis();
+	}
+
+	/**
+	 * Ranges the y axis of the fit plot over the previewed and pinned curves.
+	 */
+	private void rangeFitAxis() {
+		// data changes don't work well with animations, and the axis ranges itself at the next
+		// layout, after the chart is animated again
+		fitPlotChart.setAnimated(false);
+		fitPlotYAxis.setAnimateRangeChanges(false);
+		float[] range = emptyRange();
+		for (float[] r : new float[][] {previewRange, pinRange}) {
+			range[0] = Math.min(range[0], r[0]);
+			range[1] = Math.min(range[1], r[1]);
+			range[2] = Math.max(range[2], r[2]);
+		}
+		setRange(fitRangeSeries, range);
+		fitPlotChart.setAnimated(true);
+	}
+
+	/**
+	 * Computes the residual diagnostics of the previewed pixel on the fitting thread and shows them
+	 * when done, unless the pixel has been refitted in the meantime.
+	 *
+	 * @param params the params of the pixel fit
+	 */
+	private void submitDiagnostics(FitParams<FloatType> params) {
+		FitResults rs = fp.getResults();
+		if (rs == null || rs.residuals == null || rs.fitted == null)
+			return;
+		// a new fit replaces (rather than overwrites) these arrays
+		final float[] residuals = rs.residuals, fitted = rs.fitted;
+		final int beg = ResidualDiagnostics.getFitOffset(params);
+		final int end = Math.min(beg + params.fitEnd - params.fitStart,
+				Math.min(residuals.length, fitted.length));
+		final int nParam = fp.getNParam();
+		final long version = fp.getVersion(Change.PIXEL_FIT);
+
+		fp.submitBackground(Priority.INTERACTIVE, () -> {
+			ResidualDiagnostics diag =
+					ResidualDiagnostics.compute(residuals, fitted, beg, end, nParam);
+			Platform.runLater(() -> {
+				if (!lifecycle.isClosed() && version == fp.getVersion(Change.PIXEL_FIT))
+					dispDiagnostics(diag, end - beg);
+			});
+		});
+	}
+
+	/**
+	 * Shows the residual diagnostics in the side pane.
+	 *
+	 * @param diag    the diagnostics
+	 * @param nPoints the number of residuals in the fit range
+	 */
+	private void dispDiagnostics(ResidualDiagnostics diag, int nPoints) {
+		float[] acf = diag.getAutocorrelation();
+		diagChiSqText.setText(Utils.prettyFmt(diag.getReducedChiSq()));
+		diagRunsZText.setText(Utils.prettyFmt(diag.getRunsZ()));
+		diagAcfText.setText(Utils.prettyFmt(acf[1]));
+
+		// histogram of weighted residuals against the standard normal density
+		GraphicsContext gc = diagHistCanvas.getGraphicsContext2D();
+		double w = diagHistCanvas.getWidth(), h = diagHistCanvas.getHeight();
+		float[] hist = diag.getHistogram();
+		int nBins = hist.length;
+		double binWidth = 2 * ResidualDiagnostics.HIST_RANGE / nBins;
+		// the normal peak (at ~0.4 * binWidth) takes 3/4 of the height
+		double yScale = h * 0.75 / (0.4 * binWidth);
+		gc.clearRect(0, 0, w, h);
+		gc.setFill(FIT_COLOR);
+		for (int b = 0; b < nBins; b++) {
+			double barH = Math.min(hist[b] * yScale, h);
+			gc.fillRect(b * w / nBins, h - barH, w / nBins - 1, barH);
+		}
+		gc.setStroke(Color.GRAY);
+		gc.beginPath();
+		for (int px = 0; px <= w; px += 2) {
+			double z = (px / w * 2 - 1) * ResidualDiagnostics.HIST_RANGE;
+			double y = h - Math.exp(-z * z / 2) / Math.sqrt(2 * Math.PI) * binWidth * yScale;
+			if (px == 0)
+				gc.moveTo(px, y);
+			else
+				gc.lineTo(px, y);
+		}
+		gc.stroke();
+
+		// autocorrelation stems with the 95% band of white noise
+		gc = diagAcfCanvas.getGraphicsContext2D();
+		w = diagAcfCanvas.getWidth();
+		h = diagAcfCanvas.getHeight();
+		double mid = h / 2, band = 2 / Math.sqrt(Math.max(nPoints, 1)) * mid;
+		gc.clearRect(0, 0, w, h);
+		gc.setFill(Color.gray(0.5, 0.2));
+		gc.fillRect(0, mid - band, w, band * 2);
+		gc.setStroke(Color.GRAY);
+		gc.strokeLine(0, mid, w, mid);
+		gc.setStroke(FIT_COLOR);
+		gc.setLineWidth(2);
+		for (int lag = 1; lag < acf.length; lag++) {
+			if (!Float.isFinite(acf[lag]))
+				continue;
+			double x = lag * w / acf.length;
+			gc.strokeLine(x, mid, x, mid - acf[lag] * mid);
+		}
+		gc.setLineWidth(1);
 	}
 
 	/**
@@ -429,13 +666,7 @@ public class PlotCtrl extends AbstractCtrl {
 					lCsrSpinner.setMax(spinner.getNumberProperty().get());
 				}
 
-				if (fp.isPickingIRF()) {
-					adjustPlottedPortion(isLCsr, IRF_IDX, newVal);
-				} else {
-					double adj = isLCsr ? nonIRFCursorAdj[0] : nonIRFCursorAdj[1];
-					adjustPlottedPortion(isLCsr, FIT_IDX, newVal + adj);
-					adjustPlottedPortion(isLCsr, RES_IDX, newVal + adj);
-				}
+				adjustPlottedPortion();
 
 				// unblock update
 				beingChanged = false;
@@ -492,119 +723,33 @@ public class PlotCtrl extends AbstractCtrl {
 	}
 
 	/**
-	 * Updates the portion displayed for all series w.r.t. their cursors.
+	 * Updates the portion displayed for all curves w.r.t. their cursors. The curves are only
+	 * clipped, so that dragging a cursor just redraws the strip it swept.
 	 */
 	private void adjustPlottedPortion() {
-		// restore index counters
-		for (int i = 0; i < N_PLOTS; i++) {
-			if (fp.isPickingIRF() ^ i != IRF_IDX)
-				cursorIdc[i][BEG_IDX] = cursorIdc[i][END_IDX] = 0;
-		}
-
-		double lCsrPosValue = lCsrPos.get();
-		double rCsrPosValue = rCsrPos.get();
+		// continuous while dragging, snapped to indices afterwards
+		final double lPos = lCsrPos.get() * nIntervals;
+		final double rPos = rCsrPos.get() * nIntervals;
 
 		if (fp.isPickingIRF()) {
-			// zoom in to IRF if too small
-			// fitPlotChart.setAnimated(true);
-			// ((NumberAxis) fitPlotChart.getYAxis()).setAutoRanging(false);
-			// FitParams<FloatType> irf = getIRFInfo();
-			// float max = Float.NEGATIVE_INFINITY;
-			// for (int i = irf.fitStart; i < irf.fitEnd; i++)
-			// max = Math.max(irf.trans[i], max);
-			// ((NumberAxis) fitPlotChart.getYAxis()).setUpperBound(max * 1.1);
-			// ((NumberAxis) fitPlotChart.getYAxis()).setLowerBound(0);
-			// fitPlotChart.setAnimated(false);
-
-			adjustPlottedPortion(true, IRF_IDX, lCsrPosValue);
-			adjustPlottedPortion(false, IRF_IDX, rCsrPosValue);
-
-			// unchanged (just crop what it looked like last time)
-			adjustPlottedPortion(true, FIT_IDX, -1);
-			adjustPlottedPortion(false, FIT_IDX, -1);
-			adjustPlottedPortion(true, RES_IDX, -1);
-			adjustPlottedPortion(false, RES_IDX, -1);
-		} else {
-			lCsrPosValue += nonIRFCursorAdj[0];
-			rCsrPosValue += nonIRFCursorAdj[1];
-			// fitPlotChart.setAnimated(true);
-			// ((NumberAxis) fitPlotChart.getYAxis()).setAutoRanging(true);
-			// fitPlotChart.setAnimated(false);
-
-			adjustPlottedPortion(true, FIT_IDX, lCsrPosValue);
-			adjustPlottedPortion(false, FIT_IDX, rCsrPosValue);
-			adjustPlottedPortion(true, RES_IDX, lCsrPosValue);
-			adjustPlottedPortion(false, RES_IDX, rCsrPosValue);
-
-			// unchanged (just crop what it looked like last time)
-			adjustPlottedPortion(true, IRF_IDX, -1);
-			adjustPlottedPortion(false, IRF_IDX, -1);
-		}
-	}
+			curves[IRF_IDX].setClip(lPos, rPos);
 
-	/**
-	 * The one-liner for {@link #adjustPlottedPortion(boolean, Series, List, double, int)}
-	 *
-	 * @param isLCsr
-	 * @param plotIdx
-	 * @param csrPosValue
-	 */
-	private void adjustPlottedPortion(boolean isLCsr, int plotIdx, double csrPosValue) {
-		int begEnd = isLCsr ? BEG_IDX : END_IDX;
-		cursorIdc[plotIdx][begEnd] = adjustPlottedPortion(isLCsr, plotSeries[plotIdx],
-				dataLists[plotIdx], csrPosValue, cursorIdc[plotIdx][begEnd]);
-	}
-
-	/**
-	 * Adjusts the portion of the {@link Series} displayed according to the change of the cursor.
-	 *
-	 * @param isLCsr      {@code true} the cursor is {@link #lCsr}
-	 * @param series      the data series in question
-	 * @param dataList    the list of (x, y) data
-	 * @param csrPosValue the position of the cursor
-	 * @param lastIdx     last known distance to data boundaries (left cursor w.r.t. the first
-	 *                    element and right cursor the last in {@code dataList}
-	 * @return the updated distance
-	 */
-	private int adjustPlottedPortion(boolean isLCsr, Series<Number, Number> series,
-			List<Data<Number, Number>> dataList, double csrPosValue, int lastIdx) {
-		ObservableList<Data<Number, Number>> data = series.getData();
-		int sz = dataList.size();
-		if (sz == 0) {
-			return lastIdx;
-		}
-
-		int curIdx;
-		if (csrPosValue < 0 || csrPosValue > 1) {
-			// in this case, simply crop the plot
-			curIdx = lastIdx;
-			lastIdx = 0;
+			// unchanged (the fit of the sample)
+			final FitParams<FloatType> params = getParams();
+			curves[FIT_IDX].setClip(params.fitStart - fitPrefixLen, params.fitEnd - 1);
+			curves[RES_IDX].setClip(params.fitStart - fitPrefixLen, params.fitEnd - 1);
 		} else {
-			curIdx = (int) Math.round(csrPosValue * (sz - 1));
-			curIdx = isLCsr ? curIdx : sz - curIdx - 1;
-		}
+			// the normalized IRF is already cropped
+			curves[IRF_IDX].clearClip();
 
-		// determine whether to add or remove from the displaying set
-		int diff = curIdx - lastIdx;
-		if (diff < 0) {
-			if (isLCsr) {
-				data.addAll(0, dataList.subList(curIdx, lastIdx));
-			} else {
-				data.addAll(dataList.subList(sz - lastIdx, sz - curIdx));
-			}
-			lastIdx = curIdx;
-		} else if (diff > 0) {
-			// remove doesn't work well with animation
-			series.getChart().setAnimated(false);
-			if (isLCsr) {
-				data.remove(0, diff);
-			} else {
-				data.remove(data.size() - diff, data.size());
-			}
-			series.getChart().setAnimated(true);
-			lastIdx = curIdx;
+			// expand to the left to show the convolution tail
+			curves[FIT_IDX].setClip(lPos - fitPrefixLen, rPos);
+			curves[RES_IDX].setClip(lPos - fitPrefixLen, rPos);
 		}
-		return lastIdx;
+		// pinned pixels are fitted with the sample's range
+		final FitParams<FloatType> params = getParams();
+		for (PlotCanvas.Curve curve : pinFitCurves)
+			curve.setClip(params.fitStart - fitPrefixLen, params.fitEnd - 1);
 	}
 
 	/**
@@ -617,32 +762,18 @@ public class PlotCtrl extends AbstractCtrl {
 			int irfLength) {
 		final int fitStart = getParams().fitStart;
 		final float xMax = (trans.length - 1) * xInc;
-		int irfPrefixLen = Math.min(irfLength, fitStart);
-
-		nonIRFCursorAdj[0] = -irfLength * xInc / 2;
+		fitPrefixLen = Math.min(irfLength, fitStart);
 
 		instr = instr == null ? new float[0] : instr;
 		// resize
 		prefixSum = trans.length == (trans.length + 1) ? prefixSum : new float[trans.length + 1];
 
-		for (int i = 0; i < trans.length; i++) {
-			final float t = i * xInc;
-			final float data = trans[i];
-			setData(dataLists[TRN_IDX], i, t, data);
-			// used for photon count later
-			if (!fp.isPickingIRF()) {
-				prefixSum[i + 1] = prefixSum[i] + data;
-			}
-
-			final int idx = i - fitStart + irfPrefixLen;
-			float y = idx >= 0 && idx < yFit.length ? yFit[idx] : 0;
-			// NaN or Inf hangs the plotting thread
-			y = Float.isFinite(y) ? y : 0;
-			float r = idx >= 0 && idx < residuals.length ? residuals[idx] : 0;
-			r = Float.isFinite(r) ? r : 0;
-			setData(dataLists[FIT_IDX], i, t, y);
-			setData(dataLists[RES_IDX], i, t, r);
-		}
+		final float[] trnY = getCurveData(TRN_IDX, trans.length);
+		final float[] fitY = getCurveData(FIT_IDX, trans.length);
+		final float[] resY = getCurveData(RES_IDX, trans.length);
+		// the photon count of the IRF is computed below instead
+		sampleCurves(trans, yFit, residuals, fitStart - fitPrefixLen, trnY, fitY, resY,
+				!fp.isPickingIRF() ? prefixSum : null);
 
 		int irfDataOffset = !fp.isPickingIRF() ? irfDataOffset = getIRFInfo().fitStart : 0;
 
@@ -659,64 +790,134 @@ public class PlotCtrl extends AbstractCtrl {
 			if (irfNormalizer < 0 || !Float.isFinite(irfNormalizer))
 				irfNormalizer = 1;
 		}
+		final float[] irfY = getCurveData(IRF_IDX, instr.length);
 		for (int i = 0; i < instr.length; i++) {
-			// make IRF follow the start cursor
-			final float t = (i - irfDataOffset) * xInc;
-			setData(dataLists[IRF_IDX], i, t, instr[i] * irfNormalizer);
+			irfY[i] = instr[i] * irfNormalizer;
 			// display IRF intensity when picking
 			if (fp.isPickingIRF()) {
 				prefixSum[i + 1] = prefixSum[i] + instr[i];
 			}
 		}
-		dataLists[IRF_IDX].subList(instr.length, dataLists[IRF_IDX].size()).clear();
-
-		// again, remove doesn't work well with animations
-		fitPlotChart.setAnimated(false);
-		resPlotChart.setAnimated(false);
-
-		// refreshes each series
-		ObservableList<Data<Number, Number>> data;
-		data = plotSeries[TRN_IDX].getData();
-		data.clear();
-		data.addAll(dataLists[TRN_IDX]);
-
-		data = plotSeries[FIT_IDX].getData();
-		data.clear();
-		data.addAll(dataLists[FIT_IDX]);
-
-		data = plotSeries[IRF_IDX].getData();
-		data.clear();
-		data.addAll(dataLists[IRF_IDX]);
-
-		data = plotSeries[RES_IDX].getData();
-		data.clear();
-		data.addAll(dataLists[RES_IDX]);
 
+		curves[TRN_IDX].setData(trnY, trans.length, 0, xInc);
+		curves[FIT_IDX].setData(fitY, trans.length, 0, xInc);
+		curves[RES_IDX].setData(resY, trans.length, 0, xInc);
+		// make IRF follow the start cursor
+		curves[IRF_IDX].setData(irfY, instr.length, -irfDataOffset * xInc, xInc);
 		adjustPlottedPortion();
 
-		fitPlotChart.setAnimated(true);
+		// range the y axes over the curves; data changes don't work well with animations
+		resPlotChart.setAnimated(false);
+		final int fitBeg = Math.max(fitStart - fitPrefixLen, 0);
+		final int fitEnd = Math.min(getParams().fitEnd, trans.length);
+		previewRange = emptyRange();
+		extendRange(previewRange, trnY, 0, trnY.length);
+		extendRange(previewRange, fitY, fitBeg, fitEnd);
+		extendRange(previewRange, irfY, 0, irfY.length);
+		rangeFitAxis();
+		setRange(resRangeSeries, extendRange(emptyRange(), resY, fitBeg, fitEnd));
 		resPlotChart.setAnimated(true);
 
 		// make the plot fit the area
+		fitPlotCanvas.setXRange(0, xMax);
+		resPlotCanvas.setXRange(0, xMax);
 		((NumberAxis) fitPlotChart.getXAxis()).setUpperBound(xMax);
 		((NumberAxis) resPlotChart.getXAxis()).setUpperBound(xMax);
 	}
 
 	/**
-	 * Add a new data point to the chart.
+	 * Lays out the transient, fitted and residual series over the whole time axis. The fitted and
+	 * residual series are shifted to where the fit starts and zeroed elsewhere.
 	 *
-	 * @param list the series data
-	 * @param idx  the index to insert into {@code list}
-	 * @param x    the x value
-	 * @param y    the y value
+	 * @param trans     the transient series
+	 * @param yFit      the fitted series
+	 * @param residuals the residual series
+	 * @param fitOffset the index into <code>trans</code> of the first fitted point
+	 * @param trnY      the transient curve (output)
+	 * @param fitY      the fitted curve (output)
+	 * @param resY      the residual curve (output)
+	 * @param prefixSum the running sum of <code>trans</code> (output), or <code>null</code>
 	 */
-	private void setData(List<Data<Number, Number>> list, int idx, float x, float y) {
-		if (idx >= list.size()) {
-			list.add(new Data<>(x, y));
-		} else {
-			final Data<Number, Number> point = list.get(idx);
-			point.setXValue(x);
-			point.setYValue(y);
+	static void sampleCurves(float[] trans, float[] yFit, float[] residuals, int fitOffset,
+			float[] trnY, float[] fitY, float[] resY, float[] prefixSum) {
+		for (int i = 0; i < trans.length; i++) {
+			final float data = trans[i];
+			trnY[i] = data;
+			// used for photon count later
+			if (prefixSum != null) {
+				prefixSum[i + 1] = prefixSum[i] + data;
+			}
+
+			final int idx = i - fitOffset;
+			float y = idx >= 0 && idx < yFit.length ? yFit[idx] : 0;
+			// NaN or Inf hangs the plotting thread
+			y = Float.isFinite(y) ? y : 0;
+			float r = idx >= 0 && idx < residuals.length ? residuals[idx] : 0;
+			r = Float.isFinite(r) ? r : 0;
+			fitY[i] = y;
+			resY[i] = r;
 		}
 	}
+
+	/**
+	 * Retrieves the point buffer of a curve, reallocated if the size is different.
+	 *
+	 * @param plotIdx the index of the curve
+	 * @param size    the number of points
+	 * @return the buffer of length <code>size</code>
+	 */
+	private float[] getCurveData(int plotIdx, int size) {
+		if (curveData[plotIdx].length != size)
+			curveData[plotIdx] = new float[size];
+		return curveData[plotIdx];
+	}
+
+	/**
+	 * Extends the (min, min positive, max) of values by a portion of an array.
+	 *
+	 * @param range the (min, min positive, max) so far
+	 * @param arr   the values
+	 * @param beg   the first index to include
+	 * @param end   one past the last index to include
+	 * @return <code>range</code>
+	 */
+	static float[] extendRange(float[] range, float[] arr, int beg, int end) {
+		for (int i = Math.max(beg, 0); i < Math.min(end, arr.length); i++) {
+			final float v = arr[i];
+			range[0] = Math.min(range[0], v);
+			if (v > 0)
+				range[1] = Math.min(range[1], v);
+			range[2] = Math.max(range[2], v);
+		}
+		return range;
+	}
+
+	/**
+	 * Moves the points of a range series to the extrema of values, so that the chart's auto
+	 * ranging y axis covers them.
+	 *
+	 * @param series the range series, of 3 points for (min, min positive, max) or 2 for (min, max)
+	 * @param range  the (min, min positive, max) of the values
+	 */
+	private static void setRange(Series<Number, Number> series, float[] range) {
+		float min = range[0], minPos = range[1], max = range[2];
+		if (min > max)
+			min = minPos = max = 0;
+		if (minPos == Float.POSITIVE_INFINITY)
+			minPos = max;
+
+		final ObservableList<Data<Number, Number>> data = series.getData();
+		data.get(0).setYValue(min);
+		data.get(1).setYValue(max);
+		if (data.size() > 2)
+			data.get(2).setYValue(minPos);
+	}
+
+	/**
+	 * @return a new (min, min positive, max) of no value
+	 */
+	static float[] emptyRange() {
+		return new float[] {Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY,
+				Float.NEGATIVE_INFINITY};
+	}
 }
@@ -21,8 +21,10 @@
  */
 package flimlib.flimj.ui.controller;
 
+import java.io.IOException;
 import java.util.List;
 
+import javafx.animation.AnimationTimer;
 import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
 import javafx.animation.TranslateTransition;
@@ -35,6 +37,8 @@ import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Group;
 import javafx.scene.Node;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.ChoiceBox;
 import javafx.scene.control.Label;
 import javafx.scene.image.ImageView;
@@ -42,19 +46,22 @@ import javafx.scene.image.WritableImage;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.Pane;
 import javafx.scene.layout.VBox;
+import javafx.scene.paint.Color;
 import javafx.util.Duration;
 
 import net.imagej.display.ColorTables;
+import net.imagej.ops.OpService;
 import net.imagej.ops.map.MapViewRAIToRAI;
 import net.imagej.ops.special.computer.AbstractUnaryComputerOp;
+import net.imglib2.Cursor;
 import net.imglib2.IterableInterval;
-import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.converter.RealLUTConverter;
 import net.imglib2.roi.Regions;
 import net.imglib2.type.logic.BitType;
 import net.imglib2.type.numeric.ARGBType;
 import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Intervals;
 import net.imglib2.view.Views;
 
 import org.controlsfx.control.PopOver;
@@ -62,7 +69,10 @@ import org.controlsfx.control.PopOver.ArrowLocation;
 
 import flimlib.flimj.FitParams;
 import flimlib.flimj.FitResults;
+import flimlib.flimj.ui.CompositeRenderer;
 import flimlib.flimj.ui.FitProcessor;
+import flimlib.flimj.ui.FitProcessor.Change;
+import flimlib.flimj.ui.IntensityIndex;
 import flimlib.flimj.ui.PreviewImageDisplay;
 import flimlib.flimj.ui.UIException;
 import flimlib.flimj.ui.Utils;
@@ -105,9 +115,39 @@ public class PreviewCtrl extends AbstractCtrl {
 	/** The two image previews */
 	private PreviewImageDisplay intensityDisplay, resultDisplay;
 
+	/** The sorted intensity of the image currently shown in {@link #intensityDisplay} */
+	private IntensityIndex intensityIndex;
+
+	/** The LUT colored intensity image without threshold annotation (the cached base layer) */
+	private int[] intensityBase;
+
+	/** The number of lowest-intensity pixels currently annotated {@link #BELOW_THR_RED} */
+	private int nBelowThresh;
+
+	/** Blends results with {@link #intensityBase} in "Composite Color" mode */
+	private CompositeRenderer compositeRenderer;
+
 	/** The colorbar pop over controller */
 	private CBPopOverCtrl cbCtrl;
 
+	/** The display under the mouse, <code>null</code> if not hovering */
+	private PreviewImageDisplay hoverDisplay;
+
+	/** The latest mouse position over {@link #hoverDisplay} */
+	private double hoverX, hoverY;
+
+	/** True if the mouse has moved since the inspector was last updated */
+	private boolean hoverMoved;
+
+	/** The pixel currently shown by the inspector */
+	private int hoverPixX = -1, hoverPixY = -1;
+
+	/** Updates the inspector at most once per frame */
+	private AnimationTimer hoverTimer;
+
+	/** Buffers for the decay and the parameters of the hovered pixel */
+	private float[] hoverTrans, hoverParam;
+
 	/** Flags designating how the result is colorized */
 	private boolean colorizeResult, compositeResult;
 
@@ -133,8 +173,34 @@ public class PreviewCtrl extends AbstractCtrl {
 		@FXML
 		private Label cbMinValLabel, cbMaxValLabel, cbValLabel;
 
+		@FXML
+		/** The decay sparkline of the hovered pixel */
+		private Canvas decayCanvas;
+
+		@FXML
+		/** The fitted parameters of the hovered pixel */
+		private Label decayParamLabel;
+
+		/** The color of the decay (CHART_COLOR_2) */
+		private static final Color DECAY_COLOR = Color.web("#fba71b");
+
+		/** The color of the fitted model (CHART_COLOR_1) */
+		private static final Color MODEL_COLOR = Color.web("#f3622d");
+
+		/** The shade of the fit range */
+		private static final Color RANGE_COLOR = Color.gray(0.5, 0.15);
+
+		/** Subscripts of parameter names */
+		private static final String[] SUBSCRIPTS = {"₁", "₂", "₃", "ᵢ"};
+
 		private PopOver popOver;
 
+		/** Moves {@link #cbValCursor}, reused across values */
+		private TranslateTransition cbValTransition;
+
+		/** Builds the texts of {@link #cbValLabel} and {@link #decayParamLabel}, reused */
+		private final StringBuffer valueText = new StringBuffer(), paramText = new StringBuffer();
+
 		private WritableImage cbImage;
 
 		private int cbWidth;
@@ -148,6 +214,7 @@ public class PreviewCtrl extends AbstractCtrl {
 			cbWidth = (int) cbImageView.getFitWidth();
 			cbImage = new WritableImage(cbWidth, 1);
 			cbImageView.setImage(cbImage);
+			cbValTransition = new TranslateTransition(Duration.millis(250), cbValCursor);
 		}
 
 		public void setPopOver(PopOver popOver) {
@@ -178,13 +245,111 @@ public class PreviewCtrl extends AbstractCtrl {
 		 * @param value the new value
 		 */
 		public void dispValue(double value) {
-			cbValLabel.setText(String.format("%.2g", value));
+			valueText.setLength(0);
+			setTextIfChanged(cbValLabel, Utils.prettyFmt(value, valueText));
 			value = Math.min(Math.max(value, cbMin), cbMax);
 			double pos = (value - cbMin) / (cbMax - cbMin + Double.MIN_VALUE);
 			// move to position in 250ms
-			TranslateTransition tt = new TranslateTransition(Duration.millis(250), cbValCursor);
-			tt.toXProperty().set(cbWidth * (pos - 0.5));
-			tt.play();
+			cbValTransition.stop();
+			cbValTransition.setToX(cbWidth * (pos - 0.5));
+			cbValTransition.playFromStart();
+		}
+
+		/**
+		 * Draws the decay of a pixel on a log scale. If the pixel has been fitted, its
+		 * multi-exponential model (without IRF convolution) is overlaid over the fit range and the
+		 * parameters are listed.
+		 *
+		 * @param trans    the photon counts
+		 * @param nTime    the number of time bins in <code>trans</code>
+		 * @param param    the fitted parameters (z, A₁, τ₁, ...)
+		 * @param nParam   the number of parameters in <code>param</code>, 0 if not fitted
+		 * @param xInc     the time increment
+		 * @param fitStart the start of the fit range
+		 * @param fitEnd   the end (exclusive) of the fit range
+		 */
+		public void dispDecay(float[] trans, int nTime, float[] param, int nParam, double xInc,
+				int fitStart, int fitEnd) {
+			final GraphicsContext gc = decayCanvas.getGraphicsContext2D();
+			final double w = decayCanvas.getWidth();
+			final double h = decayCanvas.getHeight();
+			gc.clearRect(0, 0, w, h);
+			if (nTime < 2)
+				return;
+
+			float peak = 1;
+			for (int t = 0; t < nTime; t++)
+				peak = Math.max(peak, trans[t]);
+			final double xScale = w / (nTime - 1);
+			final double yScale = (h - 1) / Math.log1p(peak);
+
+			fitStart = Math.max(fitStart, 0);
+			fitEnd = Math.min(fitEnd, nTime);
+			gc.setFill(RANGE_COLOR);
+			gc.fillRect(fitStart * xScale, 0, (fitEnd - 1 - fitStart) * xScale, h);
+
+			gc.setLineWidth(1);
+			gc.setStroke(DECAY_COLOR);
+			gc.beginPath();
+			for (int t = 0; t < nTime; t++) {
+				final double y = h - Math.log1p(Math.max(trans[t], 0)) * yScale;
+				if (t == 0)
+					gc.moveTo(0, y);
+				else
+					gc.lineTo(t * xScale, y);
+			}
+			gc.stroke();
+
+			if (nParam == 0) {
+				decayParamLabel.setVisible(false);
+				decayParamLabel.setManaged(false);
+				return;
+			}
+
+			// z + sum[a_i * exp(-t / tau_i)], t = 0 at fitStart
+			gc.setStroke(MODEL_COLOR);
+			gc.beginPath();
+			for (int t = fitStart; t < fitEnd; t++) {
+				double v = param[0];
+				for (int i = 1; i < nParam - 1; i += 2)
+					v += param[i] * Math.exp(-(t - fitStart) * xInc / param[i + 1]);
+				final double y = h - Math.log1p(Double.isFinite(v) ? Math.max(v, 0) : 0) * yScale;
+				if (t == fitStart)
+					gc.moveTo(t * xScale, y);
+				else
+					gc.lineTo(t * xScale, y);
+			}
+			gc.stroke();
+
+			paramText.setLength(0);
+			for (int i = 0; i < nParam; i++) {
+				if (i > 0)
+					paramText.append(i % 2 == 1 ? "\n" : "  ");
+				if (i == 0)
+					paramText.append('z');
+				else {
+					paramText.append(i % 2 == 1 ? 'A' : 'τ');
+					// single component parameters go without subscripts
+					if (nParam > 3)
+						paramText.append(SUBSCRIPTS[Math.min((i - 1) / 2, SUBSCRIPTS.length - 1)]);
+				}
+				Utils.prettyFmt(param[i], paramText.append(" = "));
+			}
+			setTextIfChanged(decayParamLabel, paramText);
+			decayParamLabel.setVisible(true);
+			decayParamLabel.setManaged(true);
+		}
+
+		/**
+		 * Sets the text of a label unless it already shows it, so that hovering over pixels of
+		 * the same values does not allocate.
+		 *
+		 * @param label the label
+		 * @param text  the text
+		 */
+		private static void setTextIfChanged(Label label, StringBuffer text) {
+			if (label.getText() == null || !label.getText().contentEquals(text))
+				label.setText(text.toString());
 		}
 
 		/**
@@ -213,8 +378,11 @@ public class PreviewCtrl extends AbstractCtrl {
 	public void initialize() {
 		intensityDisplay = new PreviewImageDisplay(lClickPane, lCsr, intensityImageView);
 		resultDisplay = new PreviewImageDisplay(rClickPane, rCsr, resultImageView);
+		lifecycle.onClose(intensityDisplay::destroy);
+		lifecycle.onClose(resultDisplay::destroy);
 
 		pickingIRF = new SimpleObjectProperty<>(false);
+		compositeRenderer = new CompositeRenderer();
 
 		// make two int spinners
 		csrXSpinner.setMin(0);
@@ -242,13 +410,32 @@ public class PreviewCtrl extends AbstractCtrl {
 			if (!clickUpdate)
 				updateCoords(intensityDisplayX, intensityDisplayY, false);
 		};
-		csrSpinnerX.addListener(spinnerChangeListener);
-		csrSpinnerY.addListener(spinnerChangeListener);
+		lifecycle.listen(csrSpinnerX, spinnerChangeListener);
+		lifecycle.listen(csrSpinnerY, spinnerChangeListener);
 
 		// handle pane click event
 		EventHandler<? super MouseEvent> lClickHandlerOld = lClickPane.getOnMouseClicked();
 		EventHandler<? super MouseEvent> rClickHandlerOld = rClickPane.getOnMouseClicked();
+		// where a shift-drag started
+		final double[] pressPos = new double[2];
+		EventHandler<MouseEvent> panePressHandler = event -> {
+			pressPos[0] = event.getX();
+			pressPos[1] = event.getY();
+		};
 		EventHandler<MouseEvent> paneClickHandler = event -> {
+			// shift-click pins (or unpins) a pixel for comparison in the plot, shift-drag a region
+			if (event.isShiftDown() && !pickingIRF.get()) {
+				PreviewImageDisplay display =
+						event.getSource().equals(lClickPane) ? intensityDisplay : resultDisplay;
+				int x = display.getPixelXUnderMouse(event.getX());
+				int y = display.getPixelYUnderMouse(event.getY());
+				if (event.isStillSincePress())
+					fp.togglePin(x, y);
+				else
+					fp.togglePin(display.getPixelXUnderMouse(pressPos[0]),
+							display.getPixelYUnderMouse(pressPos[1]), x, y);
+				return;
+			}
 			// disable x, y property change handling
 			clickUpdate = true;
 			// move cursor, update x, y property, etc.
@@ -262,6 +449,8 @@ public class PreviewCtrl extends AbstractCtrl {
 			}
 			clickUpdate = false;
 		};
+		lClickPane.setOnMousePressed(panePressHandler);
+		rClickPane.setOnMousePressed(panePressHandler);
 		lClickPane.setOnMouseClicked(paneClickHandler);
 		rClickPane.setOnMouseClicked(paneClickHandler);
 
@@ -272,18 +461,27 @@ public class PreviewCtrl extends AbstractCtrl {
 			popOver.setArrowLocation(ArrowLocation.TOP_CENTER);
 			cbCtrl = loader.<CBPopOverCtrl>getController();
 			cbCtrl.setPopOver(popOver);
+			// a showing pop over is a window, which outlives ours
+			lifecycle.onClose(popOver::hide);
 		} catch (Exception e) {
 			throw new UIException(e);
 		}
 
-		// make cbCtrl display the value under cursor
+		// make cbCtrl display the value and decay under cursor, sampled once per frame
+		hoverTimer = new AnimationTimer() {
+			@Override
+			public void handle(long now) {
+				if (hoverMoved)
+					updateInspector();
+			}
+		};
+		// a running timer is referenced by the toolkit
+		lifecycle.onClose(hoverTimer::stop);
 		EventHandler<MouseEvent> cbUpdateHandler = event -> {
-			PreviewImageDisplay display =
-					event.getSource() == lClickPane ? intensityDisplay : resultDisplay;
-
-			double dispVal =
-					display == null ? 0.0 : display.getValueUnderMouse(event.getX(), event.getY());
-			cbCtrl.dispValue(dispVal);
+			hoverDisplay = event.getSource() == lClickPane ? intensityDisplay : resultDisplay;
+			hoverX = event.getX();
+			hoverY = event.getY();
+			hoverMoved = true;
 		};
 		// attach cb to the pane and display the corresponding bar
 		EventHandler<MouseEvent> cbShowHandler = event -> {
@@ -294,9 +492,16 @@ public class PreviewCtrl extends AbstractCtrl {
 				cbCtrl.setCB(RESULTS_CNVTR);
 				cbCtrl.setOwner(rClickPane);
 			}
+			hoverPixX = hoverPixY = -1;
+			cbUpdateHandler.handle(event);
+			hoverTimer.start();
 		};
 		// hide cb
-		EventHandler<MouseEvent> cbHideHandler = event -> cbCtrl.setOwner(null);
+		EventHandler<MouseEvent> cbHideHandler = event -> {
+			hoverTimer.stop();
+			hoverDisplay = null;
+			cbCtrl.setOwner(null);
+		};
 
 		lClickPane.setOnMouseMoved(cbUpdateHandler);
 		rClickPane.setOnMouseMoved(cbUpdateHandler);
@@ -378,7 +583,11 @@ public class PreviewCtrl extends AbstractCtrl {
 					resultDisplayX.set((double) savedIRFX);
 					resultDisplayY.set((double) savedIRFY);
 
-					fp.setPreviewPos(savedIRFX, savedIRFY, true);
+					try {
+						fp.setPreviewPos(savedIRFX, savedIRFY, true);
+					} catch (IOException e) {
+						showIRFReloadError(e);
+					}
 					return;
 				} else {
 					savedIRFX = resultDisplayX.get().intValue();
@@ -396,6 +605,13 @@ public class PreviewCtrl extends AbstractCtrl {
 		colorizeResult = compositeResult = true;
 	}
 
+	@Override
+	public void setFitProcessor(FitProcessor fp) {
+		super.setFitProcessor(fp);
+		intensityDisplay.setPerfMonitor(fp.getPerfMonitor());
+		resultDisplay.setPerfMonitor(fp.getPerfMonitor());
+	}
+
 	@Override
 	protected void refresh(FitParams<FloatType> params, FitResults results) {
 		long[] permutedCoordinates =
@@ -406,29 +622,70 @@ public class PreviewCtrl extends AbstractCtrl {
 		csrXSpinner.setMax(w - 1);
 		csrYSpinner.setMax(h - 1);
 
-		loadAnotatedIntensityImage(fp.getPreviewImg("Intensity"), params.iThresh);
+		// the base layer changes only with binning, the overlay only with threshold
+		final IntensityIndex index = fp.getIntensityIndex();
+		if (index != intensityIndex)
+			loadIntensityImage(index);
+		loadThresholdOverlay(params.iThresh);
 
 		// load new options
-		showChoiceBox.getItems().setAll(fp.getPreviewOptions());
-		// HACK: If the selected value is removed from the list, {@link ChoiceBox#valueProperty()}
-		// will retain the removed value and so no change event will be fired. Rather, {@link
-		// ChoiceBox#selectionModelProperty()} will set its selected index to -1. When this happens,
-		// the default behavior is to clear the #showChoiceBox selection and display the default
-		// image placeholder.
-		if (showChoiceBox.getSelectionModel().getSelectedIndex() == -1)
-			showChoiceBox.setValue(null);
+		if (isChanged(Change.PREVIEW_OPTIONS)) {
+			showChoiceBox.getItems().setAll(fp.getPreviewOptions());
+			// HACK: If the selected value is removed from the list, {@link ChoiceBox#valueProperty()}
+			// will retain the removed value and so no change event will be fired. Rather, {@link
+			// ChoiceBox#selectionModelProperty()} will set its selected index to -1. When this
+			// happens, the default behavior is to clear the #showChoiceBox selection and display the
+			// default image placeholder.
+			if (showChoiceBox.getSelectionModel().getSelectedIndex() == -1)
+				showChoiceBox.setValue(null);
+		}
 
-		refreshResultImage();
+		// previewing a single pixel does not change any of the result images
+		if (isChanged(Change.DATASET_FIT, Change.BINNING, Change.IRF, Change.PREVIEW_OPTIONS))
+			refreshResultImage();
 
 		pickingIRF.set(fp.isPickingIRF());
+
+		// the hovered pixel may have new data
+		hoverPixX = hoverPixY = -1;
+		hoverMoved = hoverDisplay != null;
 	}
 
 	@Override
 	public void destroy() {
-		intensityDisplay.destroy();
-		resultDisplay.destroy();
-		intensityDisplay = resultDisplay = null;
 		super.destroy();
+		hoverDisplay = null;
+		intensityDisplay = resultDisplay = null;
+	}
+
+	/**
+	 * Shows the value, decay and fitted parameters of the pixel under the mouse in the colorbar pop
+	 * over. Does nothing if the mouse stays within the same pixel.
+	 */
+	private void updateInspector() {
+		hoverMoved = false;
+		if (hoverDisplay == null || fp == null)
+			return;
+
+		final int x = hoverDisplay.getPixelXUnderMouse(hoverX);
+		final int y = hoverDisplay.getPixelYUnderMouse(hoverY);
+		if (x == hoverPixX && y == hoverPixY)
+			return;
+		hoverPixX = x;
+		hoverPixY = y;
+		cbCtrl.dispValue(hoverDisplay.getValueUnderMouse(hoverX, hoverY));
+
+		final FitParams<FloatType> params = fp.getParams();
+		// (re)allocated only when the sizes change
+		if (hoverTrans == null || hoverTrans.length != params.trans.length)
+			hoverTrans = new float[params.trans.length];
+		if (hoverParam == null || hoverParam.length < fp.getNParam())
+			hoverParam = new float[fp.getNParam()];
+
+		fp.readPixelTrans(x, y, hoverTrans);
+		final int nParam = fp.readPixelParams(x, y, hoverParam);
+		cbCtrl.dispDecay(hoverTrans, hoverTrans.length, hoverParam, nParam, params.xInc,
+				params.fitStart, params.fitEnd);
 	}
 
 	/**
@@ -445,19 +702,50 @@ public class PreviewCtrl extends AbstractCtrl {
 	}
 
 	/**
-	 * Annotates the intensity image and load to the on-screen Image. Intensity below threshold is
-	 * colored {@link #BELOW_THR_RED}.
+	 * Renders the intensity image into the base layer and loads it to the on-screen Image without
+	 * threshold annotation.
 	 *
-	 * @param intensity the intensity data
-	 * @param thresh    the threshold
+	 * @param index the sorted intensity data
 	 */
-	private void loadAnotatedIntensityImage(final RandomAccessibleInterval<FloatType> intensity,
-			final float thresh) {
-		IterableInterval<FloatType> itr = Views.iterable(intensity);
-		INTENSITY_CONV.setMax(getOps().stats().max(itr).getRealDouble());
+	private void loadIntensityImage(final IntensityIndex index) {
+		intensityIndex = index;
+		INTENSITY_CONV.setMax(index.getMax());
+
+		final int n = index.size();
+		if (intensityBase == null || intensityBase.length != n)
+			intensityBase = new int[n];
+		final FloatType value = new FloatType();
+		final ARGBType color = new ARGBType();
+		for (int i = 0; i < n; i++) {
+			value.set(index.getValue(i));
+			INTENSITY_CONV.convert(value, color);
+			intensityBase[i] = color.get();
+		}
+		compositeRenderer.setShade(intensityBase);
+
+		intensityDisplay.setImage(fp.getPreviewImg("Intensity"), intensityBase);
+		nBelowThresh = 0;
+	}
 
-		intensityDisplay.setImage(intensity, INTENSITY_CONV,
-				(srcRA, lutedRA) -> srcRA.get().get() < thresh ? BELOW_THR_RED : lutedRA.get());
+	/**
+	 * Updates the threshold overlay on the intensity image. Intensity below threshold is colored
+	 * {@link #BELOW_THR_RED}. Only the pixels that cross the threshold since the last call are
+	 * redrawn.
+	 *
+	 * @param thresh the threshold
+	 */
+	private void loadThresholdOverlay(final float thresh) {
+		final int cut = intensityIndex.countBelow(thresh);
+		final int red = BELOW_THR_RED.get();
+		// threshold raised: paint the newly excluded pixels
+		for (int r = nBelowThresh; r < cut; r++)
+			intensityDisplay.setPixel(intensityIndex.getPixel(r), red);
+		// threshold lowered: restore the newly included pixels
+		for (int r = cut; r < nBelowThresh; r++) {
+			final int i = intensityIndex.getPixel(r);
+			intensityDisplay.setPixel(i, intensityBase[i]);
+		}
+		nBelowThresh = cut;
 	}
 
 	/**
@@ -465,18 +753,54 @@ public class PreviewCtrl extends AbstractCtrl {
 	 *
 	 * @param result the result data
 	 */
-	@SuppressWarnings("unchecked")
 	private void loadAnotatedResultsImage(RandomAccessibleInterval<FloatType> result) {
-		final RandomAccessibleInterval<FloatType> fitStatus = fp.getPreviewImg("Fit Status");
-		final RandomAccess<FloatType> fitStatusRA =
-				fitStatus != null ? fitStatus.randomAccess() : null;
+		final int n = (int) Intervals.numElements(result);
+		RandomAccessibleInterval<FloatType> fitStatus = fp.getPreviewImg("Fit Status");
+		// e.g. the IRF dataset may be of a different size
+		if (fitStatus != null && Intervals.numElements(fitStatus) != n)
+			fitStatus = null;
+
+		final double[] contrast = getContrastRange(getOps(), result, fitStatus);
+		RESULTS_CNVTR.setMin(contrast[0]);
+		RESULTS_CNVTR.setMax(contrast[1]);
+		RESULTS_CNVTR.setLUT(colorizeResult ? Utils.LIFETIME_LUT : ColorTables.GRAYS);
 
+		// regular convertion, with below-thresh pixels blacked out
+		final int[] colors = compositeRenderer.getColors(n);
+		final Cursor<FloatType> valCsr = Views.flatIterable(result).cursor();
+		final Cursor<FloatType> statusCsr =
+				fitStatus != null ? Views.flatIterable(fitStatus).cursor() : null;
+		final ARGBType color = new ARGBType();
+		final int black = BELOW_THR_BLK.get();
+		for (int i = 0; i < n; i++) {
+			RESULTS_CNVTR.convert(valCsr.next(), color);
+			colors[i] = statusCsr != null && (int) statusCsr.next()
+					.get() == FitResults.RET_INTENSITY_BELOW_THRESH ? black : color.get();
+		}
+
+		// multiply by brightness from intensity
+		final boolean composite = compositeResult && compositeRenderer.canBlend(n);
+		resultDisplay.setImage(result, composite ? compositeRenderer.blend() : colors);
+	}
+
+	/**
+	 * Computes the 5th and 95th percentiles of a result map, over the successfully fitted pixels
+	 * only if the fit status is known.
+	 *
+	 * @param ops       the op service
+	 * @param result    the result map
+	 * @param fitStatus the fit status map of the same size, or <code>null</code>
+	 * @return the (min, max) of the display range
+	 */
+	@SuppressWarnings("unchecked")
+	static double[] getContrastRange(OpService ops, RandomAccessibleInterval<FloatType> result,
+			RandomAccessibleInterval<FloatType> fitStatus) {
 		IterableInterval<FloatType> itr = null;
 		if (fitStatus != null) {
 			// iterate over good fits only
 			RandomAccessibleInterval<BitType> mask =
-					(RandomAccessibleInterval<BitType>) getOps().run(MapViewRAIToRAI.class,
-							fitStatus, new AbstractUnaryComputerOp<FloatType, BitType>() {
+					(RandomAccessibleInterval<BitType>) ops.run(MapViewRAIToRAI.class, fitStatus,
+							new AbstractUnaryComputerOp<FloatType, BitType>() {
 								@Override
 								public void compute(FloatType input, BitType output) {
 									output.set(input.get() == 0);
@@ -486,38 +810,8 @@ public class PreviewCtrl extends AbstractCtrl {
 		} else
 			itr = Views.iterable(result);
 
-		RESULTS_CNVTR.setMin(getOps().stats().percentile(itr, 5).getRealDouble());
-		RESULTS_CNVTR.setMax(getOps().stats().percentile(itr, 95).getRealDouble());
-		RESULTS_CNVTR.setLUT(colorizeResult ? Utils.LIFETIME_LUT : ColorTables.GRAYS);
-
-		final RandomAccess<ARGBType> coloredIntensityRA =
-				compositeResult ? intensityDisplay.getColorImage().randomAccess() : null;
-		resultDisplay.setImage(result, RESULTS_CNVTR, (srcRA, lutedRA) -> {
-			// regular convertion
-			ARGBType output = lutedRA.get();
-
-			int status = FitResults.RET_UNKNOWN;
-			if (fitStatusRA != null)
-				status = (int) fitStatusRA.setPositionAndGet(srcRA).get();
-
-			// below-thresh pixels
-			if (status == FitResults.RET_INTENSITY_BELOW_THRESH)
-				output.set(BELOW_THR_BLK);
-
-			// multiply by brightness from intensity
-			if (coloredIntensityRA != null) {
-				int l = coloredIntensityRA.setPositionAndGet(srcRA).get();
-				int h = output.get();
-
-				output.set(ARGBType.rgba( //
-						(int) (ARGBType.red(h) / 255.0 * ARGBType.red(l)),
-						(int) (ARGBType.green(h) / 255.0 * ARGBType.green(l)),
-						(int) (ARGBType.blue(h) / 255.0 * ARGBType.blue(l)),
-						(int) (ARGBType.alpha(h) / 255.0 * ARGBType.alpha(l))));
-			}
-
-			return output;
-		});
+		return new double[] {ops.stats().percentile(itr, 5).getRealDouble(),
+				ops.stats().percentile(itr, 95).getRealDouble()};
 	}
 
 	/**
@@ -532,7 +826,12 @@ public class PreviewCtrl extends AbstractCtrl {
 		final int x = xProperty.get().intValue();
 		final int y = yProperty.get().intValue();
 
-		fp.setPreviewPos(x, y, irf);
+		try {
+			fp.setPreviewPos(x, y, irf);
+		} catch (IOException e) {
+			showIRFReloadError(e);
+			return;
+		}
 		requestUpdate();
 	}
 }
@@ -27,11 +27,13 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Scanner;
+import java.nio.file.Paths;
 
 import net.imagej.Dataset;
 import net.imglib2.Localizable;
 import net.imglib2.Point;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
 import net.imglib2.img.array.ArrayImgs;
 import net.imglib2.type.numeric.real.FloatType;
 import net.imglib2.util.Intervals;
@@ -45,7 +47,11 @@ import flimlib.flimj.FitParams;
 import flimlib.flimj.FitResults;
 import flimlib.flimj.ui.FitParamsPrompter;
 import flimlib.flimj.ui.FitProcessor;
+import flimlib.flimj.ui.FitProcessor.Change;
 import flimlib.flimj.ui.FitProcessor.FitType;
+import flimlib.flimj.ui.FitSchedulerService.Priority;
+import flimlib.flimj.ui.IRFCache;
+import flimlib.flimj.ui.NumericTextReader;
 import flimlib.flimj.ui.Utils;
 import flimlib.flimj.ui.controls.NumericSpinner;
 import flimlib.flimj.ui.controls.NumericTextField;
@@ -119,8 +125,14 @@ public class SettingsCtrl extends AbstractCtrl {
 
 	private double threshBinZero;
 
-	/** The list of dataset present under the current context */
-	private HashMap<String, FitParams<FloatType>> presentDatasets;
+	/** The IRF datasets opened so far, by file name */
+	private IRFCache irfCache;
+
+	/** Shows "Done" for a brief moment after the dataset fit */
+	private final Timeline fittingBusyAnimTL = new Timeline();
+
+	/** Set while a dataset fit started here is running, whose progress is shown */
+	private volatile boolean fitting;
 
 	@Override
 	public void initialize() {
@@ -129,7 +141,13 @@ public class SettingsCtrl extends AbstractCtrl {
 		paramValues = new ArrayList<>();
 		paramFixed = new ArrayList<>();
 		paramIndices = new ArrayList<>();
-		presentDatasets = new HashMap<>();
+		irfCache = new IRFCache(this::IRFDatasetFromFile, IRFCache.DEFAULT_BUDGET);
+		lifecycle.onClose(irfCache::clear);
+		// e.g. if the window closes mid-fit; the key frames refer to the main controller
+		lifecycle.onClose(() -> {
+			fittingBusyAnimTL.stop();
+			fittingBusyAnimTL.getKeyFrames().clear();
+		});
 
 		// initialize file chooser
 		final var fcStage = new Stage();
@@ -143,15 +161,13 @@ public class SettingsCtrl extends AbstractCtrl {
 		iThreshSpinner.setStepSize(1.0);
 		iThreshSpinner.getNumberProperty().addListener((obs, oldVal, newVal) -> {
 			FitParams<FloatType> params = getParams();
-			params.iThresh = newVal.floatValue();
+			fp.setIThresh(newVal.floatValue());
 
 			ObjectProperty<Double> binSizeProperty = binSizeSpinner.getNumberProperty();
 			if (binSizeProperty.get() == 0.0) {
 				threshBinZero = newVal.floatValue();
 			}
 
-			// recalculate global trans for pixels above threshold
-			fp.invalidateGlobalTrans();
 			// turn off estimate based on percentage
 			// otherwise user's setting iThresh = 0 triggers that
 			params.iThreshPercent = params.iThresh >= 0 ? -1 : 5;
@@ -173,7 +189,7 @@ public class SettingsCtrl extends AbstractCtrl {
 
 			// binning will freeze the JFX thread and not allow the +/- event to be consumed
 			// which causes indefinite +/- and resulting calls to setBinning()
-			fp.submitRunnable(() -> {
+			fp.submitRunnable(Priority.INTERACTIVE, () -> {
 				fp.setBinning(newVal.intValue());
 
 				// update of UI components should be run from JFX thread
@@ -251,9 +267,7 @@ public class SettingsCtrl extends AbstractCtrl {
 		ChangeListener<Object> paramPaneUpdateHandler = (obs, oldVal, newVal) -> {
 			final Integer nComp = nCompChoiceBox.getValue();
 			final FitType algo = algoChoiceBox.getValue();
-			FitParams<FloatType> params = getParams();
-			params.nComp = nComp;
-			fp.setAlgo(algo);
+			fp.setAlgo(algo, nComp);
 			setupParams(algo, nComp);
 
 			// https://github.com/flimlib/flimj-ui/issues/8
@@ -267,16 +281,6 @@ public class SettingsCtrl extends AbstractCtrl {
 				noiseChoiceBox.setDisable(false);
 			}
 
-			// resize and initialize the two arrays
-			int nParam = fp.getNParam();
-			int fillStart = params.paramFree.length;
-			params.param = Arrays.copyOf(params.param, nParam);
-			params.paramMap = ArrayImgs.floats(params.param,
-					FitProcessor.swapInLtAxis(new long[] {1, 1, nParam}, params.ltAxis));
-			params.paramFree = Arrays.copyOf(params.paramFree, nParam);
-			for (int i = fillStart; i < params.paramFree.length; i++)
-				params.paramFree[i] = true;
-
 			requestUpdate();
 		};
 		algoChoiceBox.valueProperty().addListener(paramPaneUpdateHandler);
@@ -300,7 +304,7 @@ public class SettingsCtrl extends AbstractCtrl {
 				return;
 			}
 
-			FitParams<FloatType> chosenIRF;
+			IRFCache.Entry chosenIRF;
 			if ("From file".equals(newVal)) {
 				// the name of selected dataset
 				String currentSelection = oldVal;
@@ -310,20 +314,19 @@ public class SettingsCtrl extends AbstractCtrl {
 				if (irfFile != null) {
 					// not cancelled
 					String irfPath = irfFile.getPath();
-					if (irfPath.endsWith("asc") || getDss().canOpen(irfPath)) {
+					if (irfPath.endsWith("asc") || irfPath.endsWith(".csv")
+							|| irfPath.endsWith(".txt") || getDss().canOpen(irfPath)) {
 						try {
-							chosenIRF = IRFDatasetFromFile(irfPath);
-							// throw away if canceled by user
-							if (chosenIRF != null) {
-								// use file name as irf name
-								currentSelection =
-										irfPath.substring(irfPath.lastIndexOf(File.separator) + 1);
+							// use file name as irf name
+							String irfName =
+									irfPath.substring(irfPath.lastIndexOf(File.separator) + 1);
+							boolean isNew = !irfCache.contains(irfName);
+							// remember/update IRF, or throw away if canceled by user
+							if (irfCache.load(irfName, irfPath) != null) {
+								currentSelection = irfName;
 								// add to options if not present ([0] = "None")
-								if (!presentDatasets.containsKey(currentSelection)) {
+								if (isNew)
 									irfChoiceBox.getItems().add(1, currentSelection);
-								}
-								// remember/update IRF
-								presentDatasets.put(currentSelection, chosenIRF);
 							}
 						} catch (Exception e) {
 							getUIs().showDialog(
@@ -346,32 +349,48 @@ public class SettingsCtrl extends AbstractCtrl {
 				return;
 			} else if (!"None".equals(newVal)) {
 				// locate the chosen dataset
-				chosenIRF = presentDatasets.get(newVal);
+				chosenIRF = irfCache.get(newVal);
 			} else
 				chosenIRF = null;
 
 			// update IRF information and notify fp
-			fp.setIRF(chosenIRF);
+			try {
+				fp.setIRF(chosenIRF);
+			} catch (IOException e) {
+				showIRFReloadError(e);
+				irfChoiceBox.setValue(oldVal);
+				return;
+			}
 			requestUpdate();
 		});
 
 		fitButton.setOnAction(event -> {
+			if (!confirmMemory(fp.planDatasetFit()))
+				return;
 			MainCtrl mainCtrl = (MainCtrl) parentCtrl;
-			// check fit status every 0.1s untill stopped
-			Timeline fittingBusyAnimTL = new Timeline(new KeyFrame(Duration.seconds(0.1),
-					e -> mainCtrl.setProgress(fp.getFitProgress())));
-			fittingBusyAnimTL.setCycleCount(Timeline.INDEFINITE);
-
-			// do heavy lifting on a separate thread
-			fp.submitRunnable(() -> {
-				fittingBusyAnimTL.play();
-
-				fp.fitDataset();
+			fittingBusyAnimTL.stop();
+
+			// do heavy lifting on the scheduler without blocking the JFX thread shared with other
+			// windows; the overlay keeps this one from changing the params meanwhile. The progress
+			// is reported through fitProgress().
+			mainCtrl.setProgress(0.0);
+			fitting = true;
+			fp.submitBackground(Priority.FULL_FIT, () -> {
+				try {
+					fp.fitDataset();
+				} catch (RuntimeException e) {
+					Platform.runLater(() -> mainCtrl.setProgress(null));
+					throw e;
+				} finally {
+					fitting = false;
+				}
 
 				// update UI when done
 				Platform.runLater(() -> {
+					if (lifecycle.isClosed())
+						return;
 					// show "Done" for a brief moment
-					fittingBusyAnimTL.stop();
+					mainCtrl.setProgress(1.0);
 					fittingBusyAnimTL.getKeyFrames()
 							.setAll(new KeyFrame(Duration.seconds(0.1), e -> mainCtrl.setProgress(null)));
 					fittingBusyAnimTL.setCycleCount(1);
@@ -382,6 +401,7 @@ public class SettingsCtrl extends AbstractCtrl {
 					for (Text label : paramLabels)
 						previewOptions.add(label.getText());
 					previewOptions.add("τₘ");
+					previewOptions.addAll(fp.getResidualOptions());
 					fp.setPreviewOptions(previewOptions);
 
 					requestUpdate();
@@ -390,9 +410,22 @@ public class SettingsCtrl extends AbstractCtrl {
 		});
 	}
 
+	@Override
+	public void fitProgress(double progress) {
+		// "Done" is shown once the results are in
+		if (!fitting || progress >= 1)
+			return;
+		Platform.runLater(() -> {
+			if (fitting && !lifecycle.isClosed())
+				((MainCtrl) parentCtrl).setProgress(progress);
+		});
+	}
+
 	@Override
 	public void refresh(FitParams<FloatType> params, FitResults results) {
-		iThreshSpinner.setMax(getOps().stats().max(results.intensityMap).getRealDouble());
+		// the intensity image only changes with binning
+		if (isChanged(Change.BINNING))
+			iThreshSpinner.setMax(fp.getIntensityIndex().getMax());
 		iThreshSpinner.getNumberProperty().setValue((double) params.iThresh);
 		binSizeSpinner.getNumberProperty().setValue((double) fp.getBinRadius());
 		if (fp.getAlgo() != null){
@@ -400,6 +433,8 @@ public class SettingsCtrl extends AbstractCtrl {
 		}
 		noiseChoiceBox.setValue(params.noise);
 		nCompChoiceBox.setValue(params.nComp);
+		if (!isChanged(Change.PIXEL_FIT))
+			return;
 		chisqTextField.setText(Utils.prettyFmt(results.chisq));
 
 		if (results.param != null) {
@@ -598,47 +633,91 @@ public class SettingsCtrl extends AbstractCtrl {
 			paramPane.addRow(rowIndex, paramNameText, paramTF);
 	}
 
-	private FitParams<FloatType> IRFDatasetFromFile(String irfPath) throws IOException {
+	/**
+	 * Loads an IRF dataset from an ASCII table or any format SCIFIO can open.
+	 *
+	 * @param irfPath  the path
+	 * @param settings the dataset's lifetime axis and time bin, confirmed with the user and
+	 *                 stored here if <code>ltAxis</code> is -1
+	 * @return the IRF, <code>null</code> if cancelled
+	 * @throws IOException if loading fails
+	 */
+	private FitParams<FloatType> IRFDatasetFromFile(String irfPath, FitParams<FloatType> settings)
+			throws IOException {
 		FitParams<FloatType> irfParams = new FitParams<>();
-		if (irfPath.endsWith(".asc")) {
-			// read whitespace separated data
-			ArrayList<Float> irfTrans = new ArrayList<>();
-			Scanner sc = new Scanner(new File(irfPath));
-			while (sc.hasNextBigDecimal())
-				irfTrans.add(sc.nextBigDecimal().floatValue());
-			sc.close();
+		if (irfPath.endsWith(".asc") || irfPath.endsWith(".csv") || irfPath.endsWith(".txt")) {
+			// read whitespace or comma separated data, one curve per column
+			float[][] columns = NumericTextReader.readColumns(Paths.get(irfPath));
+			// drop the time column of exported tables
+			if (columns.length > 1 && isEvenlyIncreasing(columns[0]))
+				columns = Arrays.copyOfRange(columns, 1, columns.length);
+			if (columns.length == 0)
+				throw new IOException("No data found in " + irfPath);
 
 			// get origTrans' size and ltAxis
 			int ltAxis = fp.getParams().ltAxis;
 			long[] transDim = new long[3];
 			fp.getOrigTrans().dimensions(transDim);
 
-			float[] irfTransArr = new float[(int) transDim[ltAxis]];
-			// place the data at the end so that the leading 0's can be used for shifting
-			for (int i = Math.max(irfTransArr.length - irfTrans.size(), 0), j =
-					0; i < irfTransArr.length; i++, j++)
-				irfTransArr[i] = irfTrans.get(j);
+			// lay the curves out along the first spatial axis so that each can be picked as a pixel
+			int nTime = (int) transDim[ltAxis];
+			int xAxis = (int) FitProcessor.swapOutLtAxis(new long[] {0, 1, 2}, ltAxis)[0];
+			Img<FloatType> irfTrans = ArrayImgs.floats(
+					FitProcessor.swapInLtAxis(new long[] {columns.length, 1, nTime}, ltAxis));
+			RandomAccess<FloatType> ra = irfTrans.randomAccess();
+			for (int c = 0; c < columns.length; c++) {
+				float[] curve = columns[c];
+				// place the data at the end so that the leading 0's can be used for shifting
+				int from = Math.max(curve.length - nTime, 0);
+				ra.setPosition(c, xAxis);
+				ra.setPosition(Math.max(nTime - curve.length, 0), ltAxis);
+				for (int t = from; t < curve.length; t++, ra.fwd(ltAxis))
+					ra.get().set(curve[t]);
+			}
 
-			// create a fake image out of a single array along the ltAxis
+			// create a fake image out of the curves along the ltAxis, repeated over the rest
 			irfParams.transMap = Views.interval(
-					Views.extendBorder(
-							ArrayImgs.floats(irfTransArr, new long[] {1, 1, irfTransArr.length})),
+					Views.extendBorder(irfTrans),
 					new long[] {0, 0, 0},
 					new long[] {transDim[0] - 1, transDim[1] - 1, transDim[2] - 1});
 			irfParams.ltAxis = ltAxis;
+			settings.ltAxis = ltAxis;
 		} else if (getDss().canOpen(irfPath)) {
 			final Dataset dataset = getDss().open(irfPath);
 			final Localizable pos = new Point(Intervals.minAsLongArray(dataset));
-			if (!FitParamsPrompter.populate(irfParams, dataset, pos))
-				irfParams = null;
+			if (settings.ltAxis < 0) {
+				if (!FitParamsPrompter.prompt(settings, dataset, true))
+					return null;
+			} else if (settings.ltAxis >= dataset.numDimensions())
+				throw new IOException(irfPath + " has changed since it was opened");
+			// NB: load() slices to 3D and adjusts ltAxis, so keep the settings for reloading
+			irfParams.ltAxis = settings.ltAxis;
+			irfParams.xInc = settings.xInc;
+			FitParamsPrompter.load(irfParams, dataset, pos);
 		}
 
 		return irfParams;
 	}
 
+	/**
+	 * @param values the values
+	 * @return true if the values increase in equal steps (within 0.1%), e.g. a time axis
+	 */
+	private static boolean isEvenlyIncreasing(float[] values) {
+		if (values.length < 2)
+			return false;
+		float step = values[1] - values[0];
+		if (!(step > 0))
+			return false;
+		for (int i = 2; i < values.length; i++)
+			if (Math.abs(values[i] - values[i - 1] - step) > step * 1e-3)
+				return false;
+		return true;
+	}
+
 	@Override
 	public void destroy() {
 		super.destroy();
-		presentDatasets = null;
+		irfCache = null;
 	}
 }
@@ -26,7 +26,10 @@ import java.util.HashMap;
 import javafx.application.Platform;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.SimpleObjectProperty;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
 import javafx.event.ActionEvent;
+import javafx.scene.Scene;
 import javafx.scene.control.Control;
 import javafx.scene.control.Spinner;
 import javafx.scene.control.TextField;
@@ -59,7 +62,12 @@ public class NumericHelper {
 
 	private double min = Double.NEGATIVE_INFINITY, max = Double.POSITIVE_INFINITY;
 
-	private static ValidationSupport vs;
+	/**
+	 * The key of the {@link ValidationSupport} of a window in the properties of its scene. One per
+	 * window: a shared (static) one would keep every control ever validated, and with it every
+	 * closed window, reachable, as controls cannot be deregistered.
+	 */
+	private static final String VALIDATION_KEY = NumericHelper.class.getName() + ".validation";
 	private static boolean isValidationInitialized = false;
 
 	/**
@@ -74,11 +82,7 @@ public class NumericHelper {
 			HashMap<String, Double> kwMap) {
 		this.kwMap = kwMap == null ? new HashMap<>() : kwMap;
 
-		// initialize validation support only if needed
-		if (vs == null) {
-			vs = new ValidationSupport();
-			initValidationSupport();
-		}
+		initValidationSupport();
 
 		this.editor = editor;
 		this.control = control;
@@ -170,22 +174,52 @@ public class NumericHelper {
 
 		// skip validation support registration if running in SceneBuilder
 		if (!isRunningInSceneBuilder()) {
-			vs.registerValidator(control, Validator.<String>createPredicateValidator(
-					s -> Utils.matchesNumber(s) || this.kwMap.containsKey(s.toUpperCase()), ""));
+			// the control joins the scene of its window after loading
+			if (control.getScene() != null)
+				registerValidator(control.getScene());
+			else
+				control.sceneProperty().addListener(new ChangeListener<Scene>() {
+					@Override
+					public void changed(ObservableValue<? extends Scene> obs, Scene oldVal,
+							Scene newVal) {
+						if (newVal == null)
+							return;
+						obs.removeListener(this);
+						registerValidator(newVal);
+					}
+				});
 		}
 	}
 
-	private void initValidationSupport() {
-		// do not initialize if already initialized
-		if (isValidationInitialized) {
-			return;
+	/**
+	 * Registers the validator of the control with the validation support of its window, created
+	 * with the first numeric control of the window.
+	 *
+	 * @param scene the scene of the control
+	 */
+	private void registerValidator(Scene scene) {
+		ValidationSupport vs = (ValidationSupport) scene.getProperties().get(VALIDATION_KEY);
+		if (vs == null) {
+			vs = new ValidationSupport();
+			vs.setValidationDecorator(new StyleClassValidationDecoration("error-highlight", null));
+			scene.getProperties().put(VALIDATION_KEY, vs);
 		}
+		vs.registerValidator(control, Validator.<String>createPredicateValidator(
+				s -> Utils.matchesNumber(s) || this.kwMap.containsKey(s.toUpperCase()), ""));
+	}
 
-		// support for spinner's textfield
-		ValueExtractor.addObservableValueExtractor(o -> o instanceof Spinner,
-				s -> ((Spinner<?>) s).getEditor().textProperty());
-		vs.setValidationDecorator(new StyleClassValidationDecoration("error-highlight", null));
-		isValidationInitialized = true;
+	private void initValidationSupport() {
+		// register the extractor only once
+		synchronized (NumericHelper.class) {
+			if (isValidationInitialized) {
+				return;
+			}
+
+			// support for spinner's textfield
+			ValueExtractor.addObservableValueExtractor(o -> o instanceof Spinner,
+					s -> ((Spinner<?>) s).getEditor().textProperty());
+			isValidationInitialized = true;
+		}
 	}
 
 	/**
@@ -0,0 +1,229 @@
+/*-
+ * #%L
+ * Fluorescence lifetime analysis in ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2025 Board of Regents of the University of Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package flimlib.flimj.ui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import flimlib.flimj.ui.FitSchedulerService.Priority;
+import flimlib.flimj.ui.FitSchedulerService.Session;
+
+/**
+ * Tests the order in which the scheduler runs the tasks of several sessions.
+ */
+public class DefaultFitSchedulerServiceTest {
+
+	private static final long TIMEOUT = 10;
+
+	private DefaultFitSchedulerService scheduler;
+
+	/** The names of the tasks run, in order */
+	private final List<String> log = Collections.synchronizedList(new ArrayList<>());
+
+	/** Opened when the blocking task has started */
+	private final CountDownLatch blocked = new CountDownLatch(1);
+
+	/** Opened to let the blocking task finish */
+	private final CountDownLatch gate = new CountDownLatch(1);
+
+	@Before
+	public void createScheduler() {
+		// one general thread, plus the interactive one
+		final String old = System.setProperty(FitSchedulerService.THREADS_PROPERTY, "1");
+		try {
+			scheduler = new DefaultFitSchedulerService();
+			scheduler.initialize();
+		} finally {
+			if (old == null)
+				System.clearProperty(FitSchedulerService.THREADS_PROPERTY);
+			else
+				System.setProperty(FitSchedulerService.THREADS_PROPERTY, old);
+		}
+		assertEquals(1, scheduler.getParallelism());
+	}
+
+	@After
+	public void disposeScheduler() {
+		gate.countDown();
+		scheduler.dispose();
+	}
+
+	@Test
+	public void testPriorityOrder() throws Exception {
+		final Session blocker = block();
+		final Session exporting = scheduler.openSession();
+		final Session fitting = scheduler.openSession();
+		final Future<?> export = exporting.submit(Priority.EXPORT, logging("export"));
+		final Future<?> fit = fitting.submit(Priority.FULL_FIT, logging("fit"));
+
+		// interactive tasks have a thread of their own
+		final Session previewing = scheduler.openSession();
+		previewing.submit(Priority.INTERACTIVE, logging("preview")).get(TIMEOUT, TimeUnit.SECONDS);
+		assertEquals(List.of("preview"), log);
+
+		gate.countDown();
+		export.get(TIMEOUT, TimeUnit.SECONDS);
+		fit.get(TIMEOUT, TimeUnit.SECONDS);
+		assertEquals(List.of("preview", "fit", "export"), log);
+		blocker.close();
+	}
+
+	@Test
+	public void testRoundRobin() throws Exception {
+		final Session blocker = block();
+		final Session a = scheduler.openSession();
+		final Session b = scheduler.openSession();
+		final List<Future<?>> futures = new ArrayList<>();
+		for (int i = 1; i <= 3; i++)
+			futures.add(a.submit(Priority.FULL_FIT, logging("a" + i)));
+		for (int i = 1; i <= 3; i++)
+			futures.add(b.submit(Priority.FULL_FIT, logging("b" + i)));
+
+		gate.countDown();
+		for (Future<?> future : futures)
+			future.get(TIMEOUT, TimeUnit.SECONDS);
+		assertEquals(List.of("a1", "b1", "a2", "b2", "a3", "b3"), log);
+		blocker.close();
+	}
+
+	@Test
+	public void testInvokeAllFromTask() throws Exception {
+		// the only general thread runs the caller, which must run the parts itself
+		final Session session = scheduler.openSession();
+		final Future<Integer> sum = session.submit(Priority.FULL_FIT, () -> {
+			final List<Callable<Integer>> parts = new ArrayList<>();
+			for (int i = 1; i <= 4; i++) {
+				final int part = i;
+				parts.add(() -> part);
+			}
+			int total = 0;
+			for (Future<Integer> future : session.invokeAll(Priority.FULL_FIT, parts))
+				total += future.get();
+			return total;
+		});
+		assertEquals(10, (int) sum.get(TIMEOUT, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testInvokeAllTakesTurns() throws Exception {
+		// a split task and the tasks of another session share the only general thread
+		final Session blocker = block();
+		final Session splitting = scheduler.openSession();
+		final Session other = scheduler.openSession();
+		final Future<?> split = splitting.submit(Priority.FULL_FIT, () -> {
+			final List<Callable<Object>> parts = new ArrayList<>();
+			for (int i = 1; i <= 3; i++)
+				parts.add(Executors.callable(logging("part" + i)));
+			splitting.invokeAll(Priority.FULL_FIT, parts);
+			return null;
+		});
+		final List<Future<?>> futures = new ArrayList<>();
+		for (int i = 1; i <= 3; i++)
+			futures.add(other.submit(Priority.FULL_FIT, logging("other" + i)));
+
+		gate.countDown();
+		split.get(TIMEOUT, TimeUnit.SECONDS);
+		for (Future<?> future : futures)
+			future.get(TIMEOUT, TimeUnit.SECONDS);
+		assertEquals(List.of("other1", "part1", "other2", "part2", "other3", "part3"), log);
+		blocker.close();
+	}
+
+	@Test
+	public void testCloseSparesOtherSession() throws Exception {
+		// the caller of invokeAll runs a task of another session when its own session is closed
+		final Session closing = scheduler.openSession();
+		final Session other = scheduler.openSession();
+		final CountDownLatch go = new CountDownLatch(1);
+		final Future<?> split = closing.submit(Priority.FULL_FIT, () -> {
+			go.await();
+			closing.invokeAll(Priority.FULL_FIT,
+					List.of(Executors.callable(logging("part"))));
+			return null;
+		});
+		final CountDownLatch closed = new CountDownLatch(1);
+		final Future<?> spared = other.submit(Priority.FULL_FIT, () -> {
+			blocked.countDown();
+			// fails if interrupted
+			closed.await();
+			log.add("spared");
+			return null;
+		});
+		go.countDown();
+		assertTrue(blocked.await(TIMEOUT, TimeUnit.SECONDS));
+
+		closing.close();
+		closed.countDown();
+		spared.get(TIMEOUT, TimeUnit.SECONDS);
+		assertTrue(split.isCancelled());
+		// the thread carries no interrupt into later tasks
+		other.submit(Priority.FULL_FIT, logging("after")).get(TIMEOUT, TimeUnit.SECONDS);
+		assertEquals(List.of("spared", "after"), log);
+	}
+
+	@Test
+	public void testCloseCancelsQueued() throws Exception {
+		final Session blocker = block();
+		final Session session = scheduler.openSession();
+		final Future<?> queued = session.submit(Priority.FULL_FIT, logging("queued"));
+		session.close();
+		assertTrue(queued.isCancelled());
+
+		gate.countDown();
+		blocker.submit(Priority.FULL_FIT, logging("after")).get(TIMEOUT, TimeUnit.SECONDS);
+		assertFalse(log.contains("queued"));
+	}
+
+	/**
+	 * Occupies the general thread until {@link #gate} opens.
+	 *
+	 * @return the session of the blocking task
+	 */
+	private Session block() throws InterruptedException {
+		final Session blocker = scheduler.openSession();
+		blocker.submit(Priority.FULL_FIT, () -> {
+			blocked.countDown();
+			gate.await();
+			return null;
+		});
+		assertTrue(blocked.await(TIMEOUT, TimeUnit.SECONDS));
+		return blocker;
+	}
+
+	private Runnable logging(final String name) {
+		return () -> log.add(name);
+	}
+}
@@ -0,0 +1,136 @@
+/*-
+ * #%L
+ * Fluorescence lifetime analysis in ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2025 Board of Regents of the University of Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package flimlib.flimj.ui;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests reading numeric tables, e.g. ASCII IRFs exported by instruments.
+ */
+public class NumericTextReaderTest {
+
+	private Path file;
+
+	@Before
+	public void createFile() throws IOException {
+		file = Files.createTempFile("flimj-table-test", ".asc");
+	}
+
+	@After
+	public void deleteFile() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	@Test
+	public void testCRLFWithHeader() throws IOException {
+		final float[][] columns = read("time;irf\r\n# exported\r\n0;1\r\n\r\n0.5;2\r\n1;3\r\n");
+		assertArrayEquals(new float[] {0, 0.5f, 1}, columns[0], 0);
+		assertArrayEquals(new float[] {1, 2, 3}, columns[1], 0);
+	}
+
+	@Test
+	public void testCRLFLineNumbers() throws IOException {
+		try {
+			read("time irf\r\n0 1\r\n1 2 3\r\n");
+			fail("Read a row of a different length");
+		} catch (IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().startsWith("Line 3 "));
+		}
+	}
+
+	@Test
+	public void testColumnMismatch() throws IOException {
+		try {
+			read("1,2\n3\n");
+			fail("Read a row of a different length");
+		} catch (IOException e) {
+			assertEquals("Line 2 has 1 values, expected 2", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testNonNumberAfterFirstRow() throws IOException {
+		// e.g. a mistyped value, which must not shift the rest of the data by a row
+		try {
+			read("time irf\n0 1\n1 2x\n2 3\n");
+			fail("Skipped a mistyped value");
+		} catch (IOException e) {
+			assertEquals("Line 3 has a value that is not a number: 2x", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testExponents() throws IOException {
+		final float[][] columns = read("1e3 -2.5E-2 +4e+1 .5 1.25e-40 3.4028235e38\n");
+		final float[] expected = {1e3f, -2.5e-2f, 4e1f, .5f, 1.25e-40f, 3.4028235e38f};
+		for (int c = 0; c < expected.length; c++)
+			assertEquals(expected[c], columns[c][0], 0);
+	}
+
+	@Test
+	public void testRoundsOnce() throws IOException {
+		// rounded to a double, these are float midpoints, which then round to the even neighbor
+		final String[] values = {"215549797107499e3", "267780052580565e3", "1.2345678", "16777217",
+				"0.1", "-7.0000005e-10"};
+		final float[][] columns = read(String.join(" ", values) + "\n");
+		for (int c = 0; c < values.length; c++)
+			assertEquals(values[c], Float.parseFloat(values[c]), columns[c][0], 0);
+	}
+
+	@Test
+	public void testNaNAndInfinity() throws IOException {
+		final float[][] columns = read("NaN nan Infinity -Infinity\n");
+		assertTrue(Float.isNaN(columns[0][0]));
+		assertTrue(Float.isNaN(columns[1][0]));
+		assertEquals(Float.POSITIVE_INFINITY, columns[2][0], 0);
+		assertEquals(Float.NEGATIVE_INFINITY, columns[3][0], 0);
+	}
+
+	@Test
+	public void testLastLineWithoutLineBreak() throws IOException {
+		final float[][] columns = read("1\t2\n3\t4");
+		assertArrayEquals(new float[] {1, 3}, columns[0], 0);
+		assertArrayEquals(new float[] {2, 4}, columns[1], 0);
+	}
+
+	@Test
+	public void testNoRows() throws IOException {
+		assertEquals(0, read("header only\r\n").length);
+	}
+
+	private float[][] read(final String text) throws IOException {
+		Files.write(file, text.getBytes(StandardCharsets.US_ASCII));
+		return NumericTextReader.readColumns(file);
+	}
+}
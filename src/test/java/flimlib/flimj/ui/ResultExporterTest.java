@@ -0,0 +1,111 @@
+/*-
+ * #%L
+ * Fluorescence lifetime analysis in ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2025 Board of Regents of the University of Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package flimlib.flimj.ui;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import net.imglib2.img.array.ArrayImgs;
+
+import org.junit.Test;
+
+import flimlib.flimj.ui.ResultExporter.ExportedMap;
+
+/**
+ * Tests the statistics exported maps are colored by.
+ */
+public class ResultExporterTest {
+
+	@Test
+	public void testPercentiles() {
+		final float[] data = new float[101];
+		for (int i = 0; i < data.length; i++)
+			data[i] = 100 - i;
+		final ExportedMap map = ExportedMap.copyOf("τ", ArrayImgs.floats(data, 101, 1));
+		assertEquals(10, map.getP10(), 0);
+		assertEquals(90, map.getP90(), 0);
+		assertEquals(100, map.getMax(), 0);
+	}
+
+	@Test
+	public void testPercentilesWithOutliers() {
+		// lifetimes around 2 ns, with failed fits far off on both sides and NaN/Inf
+		final Random rng = new Random(42);
+		final float[] data = new float[64 * 64];
+		for (int i = 0; i < data.length; i++) {
+			if (i % 20 == 0)
+				data[i] = 1e9f;
+			else if (i % 33 == 0)
+				data[i] = -1e9f;
+			else if (i % 47 == 0)
+				data[i] = i % 2 == 0 ? Float.NaN : Float.POSITIVE_INFINITY;
+			else
+				data[i] = (float) (2 + 0.25 * rng.nextGaussian());
+		}
+		final ExportedMap map = ExportedMap.copyOf("τ", ArrayImgs.floats(data, 64, 64));
+
+		final float[] finite = finiteSorted(data);
+		final int n = finite.length;
+		assertEquals(finite[(int) Math.round(0.1 * (n - 1))], map.getP10(), 0);
+		assertEquals(finite[(int) Math.round(0.9 * (n - 1))], map.getP90(), 0);
+		assertEquals(1e9f, map.getMax(), 0);
+	}
+
+	@Test
+	public void testPercentilesOfNarrowRange() {
+		// many distinct values within one bin of the histogram
+		final float[] data = new float[1000];
+		for (int i = 0; i < data.length; i++)
+			data[i] = 2 + i * 1e-6f;
+		data[0] = 1e30f;
+		final ExportedMap map = ExportedMap.copyOf("τ", ArrayImgs.floats(data, 1000, 1));
+
+		final float[] finite = finiteSorted(data);
+		assertEquals(finite[100], map.getP10(), 0);
+		assertEquals(finite[899], map.getP90(), 0);
+	}
+
+	@Test
+	public void testNoFiniteValues() {
+		final float[] data = { Float.NaN, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY };
+		final ExportedMap map = ExportedMap.copyOf("τ", ArrayImgs.floats(data, 3, 1));
+		assertEquals(0, map.getP10(), 0);
+		assertEquals(0, map.getP90(), 0);
+		assertEquals(0, map.getMax(), 0);
+	}
+
+	/**
+	 * @return the finite values, sorted
+	 */
+	private static float[] finiteSorted(final float[] data) {
+		final float[] finite = new float[data.length];
+		int n = 0;
+		for (float v : data)
+			if (Float.isFinite(v))
+				finite[n++] = v;
+		final float[] sorted = Arrays.copyOf(finite, n);
+		Arrays.sort(sorted);
+		return sorted;
+	}
+}
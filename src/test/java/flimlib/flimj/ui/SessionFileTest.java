@@ -0,0 +1,209 @@
+/*-
+ * #%L
+ * Fluorescence lifetime analysis in ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2025 Board of Regents of the University of Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package flimlib.flimj.ui;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.gson.JsonObject;
+
+/**
+ * Tests that sessions read back what was written.
+ */
+public class SessionFileTest {
+
+	private Path dir;
+
+	@Before
+	public void createDir() throws IOException {
+		dir = Files.createTempDirectory("flimj-session-test");
+	}
+
+	@After
+	public void deleteDir() throws IOException {
+		try (Stream<Path> files = Files.list(dir)) {
+			for (Path file : (Iterable<Path>) files::iterator)
+				Files.delete(file);
+		}
+		Files.delete(dir);
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		// a param map with the lifetime (parameter) axis first, as with ltAxis = 0
+		final Img<FloatType> params = ramp(5, 4, 3);
+		// odd sized, so the next block starts after padding
+		final Img<FloatType> status = ramp(3, 1);
+		final Map<String, RandomAccessibleInterval<FloatType>> blocks = new LinkedHashMap<>();
+		blocks.put("params", params);
+		blocks.put("status", Views.interval(status, status));
+		final JsonObject meta = new JsonObject();
+		meta.addProperty("ltAxis", 0);
+		final Path path = dir.resolve("session.flimj");
+		SessionFile.write(path, meta, blocks);
+
+		final SessionFile session = SessionFile.open(path);
+		assertEquals(0, session.getMeta().get("ltAxis").getAsInt());
+		assertTrue(session.hasBlock("params"));
+		assertEqualImages(params, session.getBlock("params"));
+		assertEqualImages(status, session.getBlock("status"));
+
+		// absent blocks are not an error
+		assertFalse(session.hasBlock("chisq_r"));
+		assertNull(session.getBlock("chisq_r"));
+	}
+
+	@Test
+	public void testOverwriteWithOwnBlocks() throws IOException {
+		final Img<FloatType> params = ramp(6, 7, 2);
+		final Map<String, RandomAccessibleInterval<FloatType>> blocks = new LinkedHashMap<>();
+		blocks.put("params", params);
+		final Path path = dir.resolve("session.flimj");
+		SessionFile.write(path, new JsonObject(), blocks);
+
+		// save a loaded session back to the same file
+		blocks.put("params", SessionFile.open(path).getBlock("params"));
+		SessionFile.write(path, new JsonObject(), blocks);
+		assertEqualImages(params, SessionFile.open(path).getBlock("params"));
+	}
+
+	@Test
+	public void testRejectsBlocksOver2GiB() throws IOException {
+		// a header announcing a 4 GiB block, without the data
+		final String header = "{\"meta\":{},\"blocks\":[{\"name\":\"params\","
+				+ "\"dims\":[1048576,1024],\"offset\":64}]}";
+		final byte[] headerBytes = header.getBytes(StandardCharsets.UTF_8);
+		final Path path = writeRaw("huge.flimj", headerBytes.length, headerBytes);
+
+		try {
+			SessionFile.open(path);
+			fail("Opened a block too large to read");
+		} catch (IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("too large"));
+		}
+	}
+
+	@Test
+	public void testRejectsBadHeaderLength() throws IOException {
+		final byte[] headerBytes = "{}".getBytes(StandardCharsets.UTF_8);
+		assertCorrupt(writeRaw("negative.flimj", -1, headerBytes));
+		assertCorrupt(writeRaw("past-end.flimj", 1 << 20, headerBytes));
+	}
+
+	@Test
+	public void testRejectsCorruptHeader() throws IOException {
+		final String[] headers = { //
+			"{\"meta\":{},\"blocks\":[{\"name\":\"params\"", // truncated JSON
+			"{\"meta\":{}}", // no block list
+			"{\"blocks\":[]}", // no metadata
+			"[1, 2, 3]", // not an object
+			"{\"meta\":{},\"blocks\":[{\"name\":\"params\",\"dims\":\"4x4\",\"offset\":64}]}",
+			"{\"meta\":{},\"blocks\":[{\"name\":\"params\",\"dims\":[4,4],\"offset\":\"x\"}]}",
+			"{\"meta\":{},\"blocks\":[{\"name\":\"params\",\"dims\":[-4,4],\"offset\":64}]}",
+			"{\"meta\":{},\"blocks\":[{\"name\":\"params\",\"dims\":[1],\"offset\":-8}]}", };
+		for (int i = 0; i < headers.length; i++) {
+			final byte[] headerBytes = headers[i].getBytes(StandardCharsets.UTF_8);
+			assertCorrupt(writeRaw("corrupt" + i + ".flimj", headerBytes.length, headerBytes));
+		}
+	}
+
+	@Test
+	public void testRejectsOtherFiles() throws IOException {
+		final Path path = dir.resolve("other.flimj");
+		Files.write(path, "not a session file".getBytes(StandardCharsets.US_ASCII));
+		try {
+			SessionFile.open(path);
+			fail("Opened a file that is not a session");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * @return a file with the session prefix, the given header length and header bytes
+	 */
+	private Path writeRaw(final String name, final int headerLength, final byte[] headerBytes)
+			throws IOException {
+		final ByteBuffer buf =
+				ByteBuffer.allocate(16 + headerBytes.length).order(ByteOrder.LITTLE_ENDIAN);
+		buf.put("FLIMJSES".getBytes(StandardCharsets.US_ASCII)).putInt(1).putInt(headerLength)
+				.put(headerBytes);
+		final Path path = dir.resolve(name);
+		Files.write(path, buf.array());
+		return path;
+	}
+
+	private static void assertCorrupt(final Path path) {
+		try {
+			SessionFile.open(path);
+			fail("Opened corrupt session file " + path.getFileName());
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * @return an image whose values are their flat indices
+	 */
+	private static Img<FloatType> ramp(final long... dims) {
+		final float[] data = new float[(int) Intervals.numElements(dims)];
+		for (int i = 0; i < data.length; i++)
+			data[i] = i;
+		return ArrayImgs.floats(data, dims);
+	}
+
+	private static void assertEqualImages(final RandomAccessibleInterval<FloatType> expected,
+			final RandomAccessibleInterval<FloatType> actual) {
+		assertArrayEquals(Intervals.dimensionsAsLongArray(expected),
+				Intervals.dimensionsAsLongArray(actual));
+		final Cursor<FloatType> e = Views.flatIterable(expected).cursor();
+		final Cursor<FloatType> a = Views.flatIterable(actual).cursor();
+		while (e.hasNext())
+			assertEquals(e.next().get(), a.next().get(), 0f);
+	}
+}
@@ -0,0 +1,155 @@
+/*-
+ * #%L
+ * Fluorescence lifetime analysis in ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2025 Board of Regents of the University of Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package flimlib.flimj.ui;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.lang.ref.WeakReference;
+
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleObjectProperty;
+
+import net.imagej.ops.OpService;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.scijava.Context;
+import org.scijava.log.LogService;
+
+/**
+ * Tests that closing a window leaves nothing large reachable, even through a listener or a
+ * reference that outlives it.
+ */
+public class TeardownTest {
+
+	/** The number of collections to wait for a buffer to be reclaimed */
+	private static final int GC_ATTEMPTS = 20;
+
+	/** The cache size set before this test, restored afterwards */
+	private static String cacheSize;
+
+	@BeforeClass
+	public static void disableResultCache() {
+		cacheSize = System.setProperty(ResultCache.SIZE_PROPERTY, "0");
+	}
+
+	@AfterClass
+	public static void restoreResultCache() {
+		if (cacheSize == null)
+			System.clearProperty(ResultCache.SIZE_PROPERTY);
+		else
+			System.setProperty(ResultCache.SIZE_PROPERTY, cacheSize);
+	}
+
+	@Test
+	public void testLifecycleRemovesListeners() {
+		// e.g. a property of a shared object or another window
+		final ObjectProperty<Double> longLived = new SimpleObjectProperty<>(0.0);
+		final Lifecycle lifecycle = new Lifecycle();
+		final WeakReference<float[]> buffer = listenWithBuffer(lifecycle, longLived);
+
+		// the listener keeps the buffer as long as it is registered
+		collect(buffer);
+		assertNotNull("Buffer reclaimed while listening", buffer.get());
+
+		lifecycle.close();
+		assertReclaimed(buffer);
+		longLived.set(1.0);
+	}
+
+	@Test
+	public void testDestroyReleasesBuffers() {
+		final Context ctx = new Context(OpService.class, LogService.class, FitSchedulerService.class);
+		try {
+			final SyntheticFLIMGenerator generator = SyntheticFLIMGenerator.builder().size(128, 128)
+					.timeBins(256, 0.04f).taus(0.5f, 3f).seed(0xF11A).build();
+			// this reference stands for a leftover UI callback holding on to the processor
+			final FitProcessor fp = new FitProcessor(ctx, generator.makeParams(generator.generate()));
+			final WeakReference<Object> trans = new WeakReference<>(fp.getOrigTrans());
+			final WeakReference<Object> intensity =
+					new WeakReference<>(fp.getResults().intensityMap);
+			final WeakReference<Object> index = new WeakReference<>(fp.getIntensityIndex());
+
+			fp.destroy();
+			assertReclaimed(trans);
+			assertReclaimed(intensity);
+			assertReclaimed(index);
+			assertNull(fp.getResults());
+		} finally {
+			ctx.dispose();
+		}
+	}
+
+	@Test
+	public void testThreadsReleasePerfMonitor() {
+		// this thread outlives the monitor, like the FX and scheduler threads outlive a window
+		final WeakReference<PerfMonitor> monitor = timeOnThisThread();
+		assertReclaimed(monitor);
+	}
+
+	/**
+	 * Times a stage on this thread with a new monitor. A separate method so that no local variable
+	 * keeps the monitor.
+	 */
+	private static WeakReference<PerfMonitor> timeOnThisThread() {
+		final PerfMonitor monitor = new PerfMonitor();
+		try (PerfMonitor.Span span = monitor.begin(PerfMonitor.Stage.PLOT)) {
+			// nothing to time
+		}
+		return new WeakReference<>(monitor);
+	}
+
+	/**
+	 * Registers a listener holding a large buffer. A separate method so that no local variable
+	 * keeps the buffer.
+	 */
+	private static WeakReference<float[]> listenWithBuffer(final Lifecycle lifecycle,
+			final ObjectProperty<Double> observable) {
+		final float[] buffer = new float[1 << 22];
+		lifecycle.listen(observable, (obs, oldVal, newVal) -> buffer[0] = newVal.floatValue());
+		return new WeakReference<>(buffer);
+	}
+
+	private static void assertReclaimed(final WeakReference<?> ref) {
+		collect(ref);
+		if (ref.get() != null)
+			fail("Not reclaimed after " + GC_ATTEMPTS + " collections: " + ref.get().getClass());
+	}
+
+	/**
+	 * Runs the GC until the reference is cleared or the attempts are used up.
+	 */
+	private static void collect(final WeakReference<?> ref) {
+		for (int i = 0; i < GC_ATTEMPTS && ref.get() != null; i++) {
+			System.gc();
+			try {
+				Thread.sleep(10);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+}